@@ -0,0 +1,185 @@
+package com.talky.backend.client;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.talky.backend.config.N8nProperties;
+import com.talky.backend.dto.message.MessageRequestDto;
+import com.talky.backend.dto.summary.SummaryRequestDto;
+import com.talky.backend.dto.summary.SummaryResponseDto;
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.reactor.bulkhead.operator.BulkheadOperator;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+/**
+ * Cliente compartido para los webhooks de N8N.
+ * Reutiliza un único {@link WebClient} con pool de conexiones y timeouts,
+ * y el {@link ObjectMapper} de la aplicación para parsear las respuestas.
+ * Cada llamada va a la instancia de N8N que elige {@link N8nEndpointPool}.
+ * <p>
+ * Las llamadas del chat y de los resúmenes pasan por circuit breakers y bulkheads
+ * independientes ({@value #CHAT} y {@value #SUMMARY}, configurados con
+ * {@code resilience4j.*}): si N8N falla se corta rápido con {@code CallNotPermittedException},
+ * y si hay demasiadas llamadas en curso se rechaza con {@code BulkheadFullException}
+ * en lugar de acumular hilos esperando.
+ */
+@Component
+public class N8nClient {
+
+    public static final String CHAT = "n8nChat";
+    public static final String SUMMARY = "n8nSummary";
+
+    private final WebClient webClient;
+    private final ObjectMapper objectMapper;
+    private final N8nProperties properties;
+    private final N8nEndpointPool endpointPool;
+
+    private final CircuitBreaker chatCircuitBreaker;
+    private final CircuitBreaker summaryCircuitBreaker;
+    private final Bulkhead chatBulkhead;
+    private final Bulkhead summaryBulkhead;
+
+    public N8nClient(WebClient n8nWebClient,
+                     ObjectMapper objectMapper,
+                     N8nProperties properties,
+                     N8nEndpointPool endpointPool,
+                     CircuitBreakerRegistry circuitBreakerRegistry,
+                     BulkheadRegistry bulkheadRegistry) {
+        this.webClient = n8nWebClient;
+        this.objectMapper = objectMapper;
+        this.properties = properties;
+        this.endpointPool = endpointPool;
+        this.chatCircuitBreaker = circuitBreakerRegistry.circuitBreaker(CHAT);
+        this.summaryCircuitBreaker = circuitBreakerRegistry.circuitBreaker(SUMMARY);
+        this.chatBulkhead = bulkheadRegistry.bulkhead(CHAT);
+        this.summaryBulkhead = bulkheadRegistry.bulkhead(SUMMARY);
+    }
+
+    /**
+     * Envía el mensaje al webhook del chat y devuelve el texto de la respuesta.
+     * N8N devuelve {"respuesta":"..."}; si no viene ese campo se devuelve el cuerpo tal cual.
+     */
+    public Mono<String> chat(MessageRequestDto request) {
+        return chat(request, properties.getChatPath());
+    }
+
+    /**
+     * Igual que {@link #chat(MessageRequestDto)} pero contra el webhook de un workflow concreto.
+     */
+    public Mono<String> chat(MessageRequestDto request, String chatPath) {
+        return endpointPool.executeHedged(baseUrl -> webClient.post()
+                        .uri(baseUrl + chatPath)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .bodyValue(request)
+                        .retrieve()
+                        .bodyToMono(String.class))
+                .map(this::extractAnswer)
+                .transformDeferred(CircuitBreakerOperator.of(chatCircuitBreaker))
+                .transformDeferred(BulkheadOperator.of(chatBulkhead));
+    }
+
+    /**
+     * Envía el mensaje al webhook de streaming y emite cada fragmento de texto
+     * a medida que llega. Los eventos de control sin texto se descartan; los fragmentos
+     * de solo espacios se mantienen (separan palabras).
+     */
+    public Flux<String> chatStream(MessageRequestDto request) {
+        return chatStream(request, properties.getChatStreamPath());
+    }
+
+    /**
+     * Igual que {@link #chatStream(MessageRequestDto)} pero contra el webhook de un workflow concreto.
+     */
+    public Flux<String> chatStream(MessageRequestDto request, String chatStreamPath) {
+        return endpointPool.executeMany(baseUrl -> webClient.post()
+                        .uri(baseUrl + chatStreamPath)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .accept(MediaType.TEXT_EVENT_STREAM, MediaType.APPLICATION_NDJSON, MediaType.TEXT_PLAIN)
+                        .bodyValue(request)
+                        .retrieve()
+                        .bodyToFlux(String.class))
+                .mapNotNull(this::extractChunk)
+                .transformDeferred(CircuitBreakerOperator.of(chatCircuitBreaker))
+                .transformDeferred(BulkheadOperator.of(chatBulkhead));
+    }
+
+    /**
+     * Envía el historial al webhook de resúmenes y devuelve el resumen generado.
+     */
+    public Mono<String> summarize(SummaryRequestDto request) {
+        return endpointPool.execute(baseUrl -> webClient.post()
+                        .uri(baseUrl + properties.getSummaryPath())
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .bodyValue(request)
+                        .retrieve()
+                        .bodyToMono(SummaryResponseDto.class))
+                .mapNotNull(SummaryResponseDto::getSummary)
+                .transformDeferred(CircuitBreakerOperator.of(summaryCircuitBreaker))
+                .transformDeferred(BulkheadOperator.of(summaryBulkhead));
+    }
+
+    /**
+     * Respuesta de degradación del chat cuando N8N no está disponible.
+     */
+    public String getChatFallback() {
+        return properties.getFallback().getChat();
+    }
+
+    /**
+     * Indica si el circuito de resúmenes admite llamadas (no está abierto).
+     * Permite saltarse un resumen en segundo plano sin llegar a intentarlo.
+     */
+    public boolean isSummaryAvailable() {
+        return summaryCircuitBreaker.getState() != CircuitBreaker.State.OPEN
+                && summaryCircuitBreaker.getState() != CircuitBreaker.State.FORCED_OPEN;
+    }
+
+    private String extractAnswer(String rawResponse) {
+        try {
+            JsonNode json = objectMapper.readTree(rawResponse);
+            if (json.has("respuesta")) {
+                return json.get("respuesta").asText();
+            }
+        } catch (Exception ignored) {
+            // No es JSON: se devuelve el texto tal cual
+        }
+        return rawResponse;
+    }
+
+    /**
+     * Extrae el texto de un fragmento del stream de N8N.
+     * Soporta líneas NDJSON del nodo "Respond to Webhook" ({"type":"item","content":"..."}),
+     * el formato clásico {"respuesta":"..."} y texto plano.
+     *
+     * @return el texto, o null si el fragmento no trae texto (se descarta)
+     */
+    private String extractChunk(String rawChunk) {
+        if (rawChunk == null || rawChunk.isEmpty()) {
+            return null;
+        }
+        String trimmed = rawChunk.trim();
+        if (!trimmed.startsWith("{")) {
+            return rawChunk;
+        }
+        try {
+            JsonNode json = objectMapper.readTree(trimmed);
+            if (json.has("content")) {
+                return json.get("content").asText();
+            }
+            if (json.has("respuesta")) {
+                return json.get("respuesta").asText();
+            }
+            // Eventos de control (begin / end) no aportan texto
+            return null;
+        } catch (Exception e) {
+            return rawChunk;
+        }
+    }
+}
@@ -0,0 +1,233 @@
+package com.talky.backend.client;
+
+import com.talky.backend.config.N8nProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * Reparte las llamadas a N8N entre las instancias configuradas ({@code talky.n8n.endpoints}).
+ * <ul>
+ *   <li>Elige la instancia con menos llamadas en curso; los empates se reparten por turnos.</li>
+ *   <li>Expulsión pasiva: tras {@code eject-after-failures} fallos seguidos la instancia
+ *       sale del reparto durante {@code ejection-time}. Si todas están expulsadas se sigue
+ *       usando la que vuelve antes, para no cortar el servicio por completo.</li>
+ *   <li>Hedging opcional del chat: si la respuesta tarda más que el p95 medido, se lanza la
+ *       misma llamada a otra instancia y se queda la primera que responda (la otra se cancela).</li>
+ * </ul>
+ * Los errores 4xx son del request, no de la instancia, y no cuentan como fallo.
+ */
+@Component
+public class N8nEndpointPool {
+
+    private final N8nProperties properties;
+    private final List<Endpoint> endpoints = new ArrayList<>();
+    private final AtomicInteger nextStart = new AtomicInteger();
+
+    private final Timer chatLatency;
+    private final Counter hedges;
+    private final Counter hedgeWins;
+
+    /**
+     * Instancia de N8N con su estado de reparto.
+     */
+    static final class Endpoint {
+        final String baseUrl;
+        final AtomicInteger outstanding = new AtomicInteger();
+        final AtomicInteger consecutiveFailures = new AtomicInteger();
+        final AtomicLong ejectedUntil = new AtomicLong();
+        final Counter ejections;
+
+        Endpoint(String baseUrl, Counter ejections) {
+            this.baseUrl = baseUrl;
+            this.ejections = ejections;
+        }
+
+        boolean isEjected(long now) {
+            return ejectedUntil.get() > now;
+        }
+    }
+
+    public N8nEndpointPool(N8nProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        for (String baseUrl : properties.resolveEndpoints()) {
+            String url = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+            Endpoint endpoint = new Endpoint(url, Counter.builder("talky.n8n.endpoint.ejections")
+                    .tag("endpoint", url)
+                    .register(meterRegistry));
+            Gauge.builder("talky.n8n.endpoint.outstanding", endpoint.outstanding, AtomicInteger::get)
+                    .tag("endpoint", url)
+                    .register(meterRegistry);
+            Gauge.builder("talky.n8n.endpoint.ejected", endpoint, e -> e.isEjected(System.currentTimeMillis()) ? 1 : 0)
+                    .tag("endpoint", url)
+                    .register(meterRegistry);
+            endpoints.add(endpoint);
+        }
+        this.chatLatency = Timer.builder("talky.n8n.chat.latency")
+                .description("Latencia de las llamadas de chat a N8N (base del retraso del hedging)")
+                .publishPercentiles(properties.getHedging().getPercentile())
+                .register(meterRegistry);
+        this.hedges = Counter.builder("talky.n8n.hedge.requests").register(meterRegistry);
+        this.hedgeWins = Counter.builder("talky.n8n.hedge.wins").register(meterRegistry);
+    }
+
+    /**
+     * Ejecuta una llamada en la instancia elegida. {@code call} recibe la URL base de la instancia.
+     */
+    public <T> Mono<T> execute(Function<String, Mono<T>> call) {
+        return Mono.defer(() -> execute(choose(null), call));
+    }
+
+    /**
+     * Variante para respuestas por partes: la llamada cuenta como en curso hasta que el stream termina.
+     */
+    public <T> Flux<T> executeMany(Function<String, Flux<T>> call) {
+        return Flux.defer(() -> {
+            Endpoint endpoint = choose(null);
+            endpoint.outstanding.incrementAndGet();
+            return call.apply(endpoint.baseUrl)
+                    .doOnComplete(() -> recordSuccess(endpoint))
+                    .doOnError(e -> recordFailure(endpoint, e))
+                    .doFinally(signal -> endpoint.outstanding.decrementAndGet());
+        });
+    }
+
+    /**
+     * Llamada de chat con hedging (si está activo y hay otra instancia sana):
+     * pasado el retraso, se repite en otra instancia y gana la primera respuesta.
+     * Si la primera falla antes, la segunda hace de reintento en otra instancia.
+     */
+    public <T> Mono<T> executeHedged(Function<String, Mono<T>> call) {
+        if (!properties.getHedging().isEnabled() || endpoints.size() < 2) {
+            return timed(execute(call));
+        }
+        return Mono.defer(() -> {
+            Endpoint first = choose(null);
+            Mono<T> primary = timed(execute(first, call));
+            Mono<T> hedge = Mono.delay(hedgeDelay())
+                    .flatMap(tick -> {
+                        Endpoint second = choose(first);
+                        if (second == null) {
+                            return Mono.<T>empty();
+                        }
+                        hedges.increment();
+                        return timed(execute(second, call)).doOnNext(value -> hedgeWins.increment());
+                    });
+            return Mono.firstWithValue(primary, hedge)
+                    .onErrorMap(NoSuchElementException.class, N8nEndpointPool::firstCause);
+        });
+    }
+
+    /**
+     * Retraso antes de la segunda llamada: el percentil configurado de la latencia del chat,
+     * con {@code min-delay} como suelo y {@code default-delay} mientras no hay muestras suficientes.
+     */
+    Duration hedgeDelay() {
+        N8nProperties.Hedging hedging = properties.getHedging();
+        if (chatLatency.count() < hedging.getMinSamples()) {
+            return hedging.getDefaultDelay();
+        }
+        for (ValueAtPercentile value : chatLatency.takeSnapshot().percentileValues()) {
+            if (value.percentile() == hedging.getPercentile()) {
+                Duration p = Duration.ofNanos((long) value.value(TimeUnit.NANOSECONDS));
+                return p.compareTo(hedging.getMinDelay()) > 0 ? p : hedging.getMinDelay();
+            }
+        }
+        return hedging.getDefaultDelay();
+    }
+
+    private <T> Mono<T> execute(Endpoint endpoint, Function<String, Mono<T>> call) {
+        return Mono.defer(() -> {
+            endpoint.outstanding.incrementAndGet();
+            return call.apply(endpoint.baseUrl)
+                    .doOnSuccess(value -> recordSuccess(endpoint))
+                    .doOnError(e -> recordFailure(endpoint, e))
+                    .doFinally(signal -> endpoint.outstanding.decrementAndGet());
+        });
+    }
+
+    private <T> Mono<T> timed(Mono<T> call) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return call.doOnSuccess(value -> chatLatency.record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+        });
+    }
+
+    /**
+     * Instancia sana con menos llamadas en curso, sin contar {@code exclude}.
+     * El recorrido empieza cada vez en una instancia distinta, así que los empates
+     * se reparten por turnos. Sin {@code exclude}, si todas están expulsadas devuelve la que vuelve antes;
+     * con {@code exclude} (hedging) devuelve {@code null} si no hay otra sana.
+     */
+    Endpoint choose(Endpoint exclude) {
+        long now = System.currentTimeMillis();
+        int size = endpoints.size();
+        int start = Math.floorMod(nextStart.getAndIncrement(), size);
+        Endpoint best = null;
+        for (int i = 0; i < size; i++) {
+            Endpoint endpoint = endpoints.get((start + i) % size);
+            if (endpoint == exclude || endpoint.isEjected(now)) {
+                continue;
+            }
+            if (best == null || endpoint.outstanding.get() < best.outstanding.get()) {
+                best = endpoint;
+            }
+        }
+        if (best != null || exclude != null) {
+            return best;
+        }
+        for (Endpoint endpoint : endpoints) {
+            if (best == null || endpoint.ejectedUntil.get() < best.ejectedUntil.get()) {
+                best = endpoint;
+            }
+        }
+        return best;
+    }
+
+    private void recordSuccess(Endpoint endpoint) {
+        endpoint.consecutiveFailures.set(0);
+    }
+
+    private void recordFailure(Endpoint endpoint, Throwable error) {
+        if (error instanceof WebClientResponseException response && response.getStatusCode().is4xxClientError()) {
+            return;
+        }
+        N8nProperties.Balancer balancer = properties.getBalancer();
+        if (endpoint.consecutiveFailures.incrementAndGet() >= balancer.getEjectAfterFailures()) {
+            endpoint.consecutiveFailures.set(0);
+            endpoint.ejectedUntil.set(System.currentTimeMillis() + balancer.getEjectionTime().toMillis());
+            endpoint.ejections.increment();
+        }
+    }
+
+    /**
+     * Si fallan las dos llamadas se propaga el error de la primera, no el genérico de Reactor.
+     */
+    private static Throwable firstCause(NoSuchElementException e) {
+        if (e.getCause() == null) {
+            return e;
+        }
+        List<Throwable> causes = Exceptions.unwrapMultiple(e.getCause());
+        return causes.isEmpty() ? e : causes.get(0);
+    }
+
+    List<Endpoint> getEndpoints() {
+        return endpoints;
+    }
+}
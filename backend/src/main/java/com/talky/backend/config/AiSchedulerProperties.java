@@ -0,0 +1,66 @@
+package com.talky.backend.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Configuración del planificador de llamadas a N8N (prefijo {@code talky.ai-scheduler}).
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "talky.ai-scheduler")
+public class AiSchedulerProperties {
+
+    /**
+     * Clases de prioridad de las llamadas a la IA.
+     */
+    public enum Priority {
+        TEACHER_CHAT,
+        STUDENT_CHAT,
+        SUMMARY
+    }
+
+    /**
+     * Si está desactivado, las llamadas van directas a N8N (solo las limita el bulkhead).
+     */
+    private boolean enabled = true;
+
+    /**
+     * Llamadas simultáneas a N8N en esta instancia (chat y resúmenes).
+     * No debe superar el bulkhead de chat, que queda como límite de seguridad.
+     */
+    private int maxConcurrent = 40;
+
+    /**
+     * Llamadas simultáneas por usuario: un estudiante no puede acaparar los huecos.
+     */
+    private int maxPerUser = 2;
+
+    /**
+     * Llamadas en espera máximas; por encima se rechazan sin esperar.
+     */
+    private int maxQueued = 1000;
+
+    /**
+     * Tiempo máximo de espera en cola antes de rechazar la llamada.
+     */
+    private Duration maxWait = Duration.ofSeconds(30);
+
+    /**
+     * Peso de cada clase en el reparto de huecos libres (round robin ponderado).
+     */
+    private Map<Priority, Integer> weights = new EnumMap<>(Map.of(
+            Priority.TEACHER_CHAT, 6,
+            Priority.STUDENT_CHAT, 3,
+            Priority.SUMMARY, 1
+    ));
+
+    public int getWeight(Priority priority) {
+        return Math.max(1, weights.getOrDefault(priority, 1));
+    }
+}
@@ -0,0 +1,259 @@
+package com.talky.backend.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Configuración del flujo de chat (prefijo {@code talky.chat}).
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "talky.chat")
+public class ChatProperties {
+
+    /**
+     * Bloqueo por conversación: memory (una instancia) o postgres (advisory locks, varias instancias).
+     */
+    private String lockManager = "memory";
+
+    /**
+     * Sesiones de PostgreSQL dedicadas a los advisory locks (solo con lock-manager=postgres).
+     * Cada conversación usa siempre la misma sesión; las de sesiones distintas no se esperan entre sí.
+     */
+    private int lockSessions = 4;
+
+    private Mailbox mailbox = new Mailbox();
+
+    private AnswerCache answerCache = new AnswerCache();
+
+    private Jobs jobs = new Jobs();
+
+    private ContextCache contextCache = new ContextCache();
+
+    private PromptContext promptContext = new PromptContext();
+
+    private Routing routing = new Routing();
+
+    @Getter
+    @Setter
+    public static class Mailbox {
+
+        /**
+         * Si está activo, los mensajes concurrentes de una conversación se encolan
+         * y se procesan en orden en lugar de rechazarse.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Mensajes que pueden esperar en cola por conversación (sin contar el que está en curso).
+         */
+        private int capacity = 3;
+
+        /**
+         * Tiempo máximo que un mensaje espera su turno antes de rechazarse.
+         */
+        private Duration maxWait = Duration.ofSeconds(60);
+    }
+
+    @Getter
+    @Setter
+    public static class AnswerCache {
+
+        /**
+         * Si está activo, las preguntas repetidas dentro de un curso se responden desde caché.
+         * Solo para prompts sin contexto: con {@code prompt-context} activo, el primer mensaje de cada conversación.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Tiempo de vida de cada respuesta en caché.
+         */
+        private Duration ttl = Duration.ofHours(6);
+
+        /**
+         * Respuestas máximas por curso y modo (se descartan las menos usadas recientemente).
+         */
+        private int maxEntriesPerScope = 500;
+
+        /**
+         * Similitud mínima (0..1) para considerar dos preguntas equivalentes.
+         */
+        private double similarityThreshold = 0.85;
+
+        /**
+         * Longitud máxima de la pregunta normalizada para cachearla (las largas suelen ser únicas).
+         */
+        private int maxPromptLength = 300;
+
+        /**
+         * Tamaño de la firma MinHash.
+         */
+        private int numHashes = 64;
+
+        /**
+         * Tamaño de los shingles de caracteres.
+         */
+        private int shingleSize = 3;
+    }
+
+    @Getter
+    @Setter
+    public static class ContextCache {
+
+        /**
+         * Si está activo, los últimos mensajes y el resumen de las conversaciones activas se sirven
+         * desde memoria. Con varias instancias sin afinidad de sesión conviene desactivarlo.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Mensajes por conversación en la ventana. No debe superar los que conserva la compactación (50).
+         */
+        private int windowSize = 50;
+
+        /**
+         * Conversaciones máximas en memoria (se descartan las menos usadas).
+         */
+        private long maxConversations = 10_000;
+
+        /**
+         * Tiempo sin actividad tras el que una conversación sale de memoria.
+         */
+        private Duration idleTimeout = Duration.ofMinutes(30);
+    }
+
+    @Getter
+    @Setter
+    public static class PromptContext {
+
+        /**
+         * Si está activo, cada prompt viaja a N8N con el último resumen y los turnos recientes.
+         * Sin {@code context-cache} cada mensaje hace dos consultas más a Postgres.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Tokens estimados máximos del contexto (resumen + historial), sin contar el prompt.
+         */
+        private int maxTokens = 1500;
+
+        /**
+         * Tokens estimados máximos del resumen dentro del contexto.
+         */
+        private int summaryMaxTokens = 500;
+
+        /**
+         * Turnos (mensajes USER o AI) máximos en el historial.
+         */
+        private int maxTurns = 20;
+    }
+
+    @Getter
+    @Setter
+    public static class Jobs {
+
+        /**
+         * Trabajos de IA asíncronos que se procesan a la vez en esta instancia.
+         */
+        private int workerThreads = 8;
+
+        /**
+         * Cada cuánto se buscan trabajos pendientes (además del aviso inmediato al enviar uno).
+         */
+        private Duration pollInterval = Duration.ofSeconds(2);
+
+        /**
+         * Tiempo que un worker reserva un trabajo; si la instancia cae, otro lo retoma al vencer.
+         */
+        private Duration lease = Duration.ofMinutes(2);
+
+        /**
+         * Reservas máximas de un trabajo antes de marcarlo como FAILED.
+         */
+        private int maxAttempts = 6;
+
+        /**
+         * Espera antes del primer reintento tras un fallo; se duplica en cada intento.
+         */
+        private Duration retryBackoff = Duration.ofSeconds(10);
+
+        /**
+         * Espera máxima entre reintentos.
+         */
+        private Duration maxRetryBackoff = Duration.ofMinutes(5);
+    }
+
+    /**
+     * Enrutado de prompts a distintos workflows de N8N según una clasificación local y barata.
+     */
+    @Getter
+    @Setter
+    public static class Routing {
+
+        /**
+         * Clases de prompt, de menor a mayor coste esperado.
+         */
+        public enum PromptClass {
+            SMALL_TALK,
+            SIMPLE,
+            GLOSSARY,
+            COMPLEX
+        }
+
+        /**
+         * Si está desactivado, todo va al webhook por defecto ({@code talky.n8n.chat-path}).
+         */
+        private boolean enabled = true;
+
+        /**
+         * Prompts de hasta estos tokens (sin palabras de análisis) son charla corta.
+         */
+        private int smallTalkMaxTokens = 12;
+
+        /**
+         * A partir de estos tokens el prompt es complejo.
+         */
+        private int complexMinTokens = 150;
+
+        /**
+         * Umbral de prompt complejo en conversaciones en modo TEACHER (preparan material).
+         */
+        private int teacherComplexMinTokens = 60;
+
+        /**
+         * Palabras que indican una pregunta de análisis (explicar, comparar, corregir...).
+         */
+        private List<String> complexKeywords = List.of(
+                "por qué", "explica", "explícame", "diferencia", "compara", "corrige", "analiza",
+                "why", "explain", "difference", "compare", "correct", "analyze"
+        );
+
+        /**
+         * Tiempo que se guardan en memoria las palabras del glosario de cada usuario.
+         */
+        private Duration glossaryCacheTtl = Duration.ofMinutes(5);
+
+        /**
+         * Workflow de cada clase; las clases sin entrada usan los webhooks por defecto.
+         */
+        private Map<PromptClass, Workflow> workflows = new EnumMap<>(PromptClass.class);
+    }
+
+    /**
+     * Webhooks de N8N de un workflow (respuesta completa y por partes).
+     */
+    @Getter
+    @Setter
+    public static class Workflow {
+
+        private String chatPath;
+
+        private String chatStreamPath;
+    }
+}
@@ -0,0 +1,47 @@
+package com.talky.backend.config;
+
+import com.talky.backend.model.User;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Plazo de los envíos de mensajes (prefijo {@code talky.deadline}).
+ * Pasado el plazo el cliente ya no espera la respuesta: se deja de esperar a N8N
+ * y no se guarda nada más.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "talky.deadline")
+public class DeadlineProperties {
+
+    private boolean enabled = true;
+
+    /**
+     * Plazo por defecto según el rol, si el cliente no envía la cabecera.
+     */
+    private Map<User.Role, Duration> defaults = new EnumMap<>(Map.of(
+            User.Role.STUDENT, Duration.ofSeconds(45),
+            User.Role.TEACHER, Duration.ofSeconds(90),
+            User.Role.ADMIN, Duration.ofSeconds(90)
+    ));
+
+    /**
+     * Plazo para roles sin valor configurado.
+     */
+    private Duration defaultTimeout = Duration.ofSeconds(60);
+
+    /**
+     * Máximo que puede pedir el cliente en la cabecera.
+     */
+    private Duration maxTimeout = Duration.ofSeconds(120);
+
+    /**
+     * Tiempo restante mínimo para que merezca la pena llamar a N8N.
+     */
+    private Duration minCallBudget = Duration.ofSeconds(1);
+}
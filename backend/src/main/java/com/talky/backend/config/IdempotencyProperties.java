@@ -0,0 +1,42 @@
+package com.talky.backend.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Configuración de la cabecera {@code Idempotency-Key} (prefijo {@code talky.idempotency}).
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "talky.idempotency")
+public class IdempotencyProperties {
+
+    /**
+     * Dónde se guardan las claves: memory (por instancia) o postgres (compartidas entre instancias).
+     * Con varias réplicas y memory, un reintento que llega a otra instancia se vuelve a ejecutar.
+     */
+    private String store = "memory";
+
+    /**
+     * Tiempo durante el que se recuerda una clave y se repite su respuesta.
+     */
+    private Duration ttl = Duration.ofMinutes(10);
+
+    /**
+     * Claves máximas en memoria (se descartan las más antiguas). Solo con {@code store=memory}.
+     */
+    private long maximumSize = 100_000;
+
+    /**
+     * Longitud máxima aceptada para la clave.
+     */
+    private int maxKeyLength = 255;
+
+    /**
+     * Cuánto espera una repetición a que termine la petición original antes de responder 409.
+     */
+    private Duration inFlightWait = Duration.ofMinutes(2);
+}
@@ -0,0 +1,51 @@
+package com.talky.backend.config;
+
+import io.netty.channel.ChannelOption;
+import io.netty.handler.timeout.ReadTimeoutHandler;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Crea el {@link WebClient} compartido para hablar con N8N (todas sus instancias),
+ * con pool de conexiones y timeouts de conexión y lectura.
+ */
+@Configuration
+@EnableConfigurationProperties(N8nProperties.class)
+public class N8nClientConfig {
+
+    @Bean(destroyMethod = "dispose")
+    public ConnectionProvider n8nConnectionProvider(N8nProperties properties) {
+        N8nProperties.Pool pool = properties.getPool();
+        return ConnectionProvider.builder("n8n")
+                .maxConnections(pool.getMaxConnections())
+                .pendingAcquireTimeout(pool.getPendingAcquireTimeout())
+                .maxIdleTime(pool.getMaxIdleTime())
+                .build();
+    }
+
+    /**
+     * Usa el WebClient.Builder de Spring Boot para reutilizar los codecs
+     * (y el ObjectMapper) configurados en la aplicación.
+     */
+    @Bean
+    public WebClient n8nWebClient(WebClient.Builder builder,
+                                  ConnectionProvider n8nConnectionProvider,
+                                  N8nProperties properties) {
+        HttpClient httpClient = HttpClient.create(n8nConnectionProvider)
+                .option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) properties.getConnectTimeout().toMillis())
+                .doOnConnected(conn -> conn.addHandlerLast(
+                        new ReadTimeoutHandler(properties.getReadTimeout().toMillis(), TimeUnit.MILLISECONDS)));
+
+        // Sin URL base: cada llamada va a la instancia que elige N8nEndpointPool
+        return builder
+                .clientConnector(new ReactorClientHttpConnector(httpClient))
+                .build();
+    }
+}
@@ -0,0 +1,155 @@
+package com.talky.backend.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Configuración de la integración con N8N (prefijo {@code talky.n8n}).
+ * Define las URLs de los webhooks, los timeouts, el pool de conexiones
+ * y el reparto de llamadas entre varias instancias (workers) de N8N.
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "talky.n8n")
+public class N8nProperties {
+
+    /**
+     * URL base de la instancia de N8N.
+     */
+    private String baseUrl = "http://localhost:5678";
+
+    /**
+     * URLs base de las instancias de N8N entre las que se reparten las llamadas.
+     * Si está vacía se usa solo {@code base-url}.
+     */
+    private List<String> endpoints = new ArrayList<>();
+
+    /**
+     * Webhook que responde a los mensajes del chat.
+     */
+    private String chatPath = "/webhook/talky-ia";
+
+    /**
+     * Webhook que responde a los mensajes del chat por partes (streaming).
+     */
+    private String chatStreamPath = "/webhook/talky-ia-stream";
+
+    /**
+     * Webhook que genera los resúmenes de conversación.
+     */
+    private String summaryPath = "/webhook/talky-summary";
+
+    /**
+     * Tiempo máximo para establecer la conexión TCP.
+     */
+    private Duration connectTimeout = Duration.ofSeconds(3);
+
+    /**
+     * Tiempo máximo sin recibir datos de N8N antes de abortar la llamada.
+     */
+    private Duration readTimeout = Duration.ofSeconds(60);
+
+    private Pool pool = new Pool();
+
+    private Fallback fallback = new Fallback();
+
+    private Balancer balancer = new Balancer();
+
+    private Hedging hedging = new Hedging();
+
+    /**
+     * Instancias configuradas, o la URL base si no hay ninguna.
+     */
+    public List<String> resolveEndpoints() {
+        return endpoints.isEmpty() ? List.of(baseUrl) : List.copyOf(endpoints);
+    }
+
+    @Getter
+    @Setter
+    public static class Pool {
+
+        /**
+         * Conexiones simultáneas máximas hacia N8N.
+         */
+        private int maxConnections = 50;
+
+        /**
+         * Tiempo máximo esperando una conexión libre del pool.
+         */
+        private Duration pendingAcquireTimeout = Duration.ofSeconds(5);
+
+        /**
+         * Tiempo que una conexión puede permanecer inactiva en el pool.
+         */
+        private Duration maxIdleTime = Duration.ofSeconds(30);
+    }
+
+    /**
+     * Respuestas de degradación cuando N8N no está disponible
+     * (circuit breaker abierto o bulkhead lleno).
+     */
+    @Getter
+    @Setter
+    public static class Fallback {
+
+        /**
+         * Respuesta del chat mientras el servicio de IA no está disponible.
+         */
+        private String chat = "El asistente no está disponible en este momento. Inténtalo de nuevo en unos minutos.";
+    }
+
+    /**
+     * Expulsión pasiva: una instancia que falla seguidas veces deja de recibir llamadas un tiempo.
+     */
+    @Getter
+    @Setter
+    public static class Balancer {
+
+        /**
+         * Fallos consecutivos (conexión, timeout o 5xx) para expulsar la instancia.
+         */
+        private int ejectAfterFailures = 3;
+
+        /**
+         * Tiempo que la instancia expulsada queda fuera del reparto.
+         */
+        private Duration ejectionTime = Duration.ofSeconds(30);
+    }
+
+    /**
+     * Peticiones de cobertura (hedging) del chat: si la respuesta tarda más que el percentil
+     * configurado, se lanza la misma llamada a otra instancia y gana la primera en responder.
+     * Solo aplica al chat sin streaming; duplica el coste de las llamadas lentas.
+     */
+    @Getter
+    @Setter
+    public static class Hedging {
+
+        private boolean enabled = false;
+
+        /**
+         * Percentil de latencia del chat a partir del cual se lanza la segunda llamada.
+         */
+        private double percentile = 0.95;
+
+        /**
+         * Llamadas medidas necesarias antes de usar el percentil; hasta entonces se usa {@code default-delay}.
+         */
+        private long minSamples = 20;
+
+        /**
+         * Espera mínima antes de lanzar la segunda llamada (evita duplicar cuando todo va rápido).
+         */
+        private Duration minDelay = Duration.ofMillis(500);
+
+        /**
+         * Espera usada mientras no hay suficientes muestras.
+         */
+        private Duration defaultDelay = Duration.ofSeconds(10);
+    }
+}
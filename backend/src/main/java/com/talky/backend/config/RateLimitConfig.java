@@ -0,0 +1,31 @@
+package com.talky.backend.config;
+
+import io.github.bucket4j.distributed.jdbc.PrimaryKeyMapper;
+import io.github.bucket4j.distributed.proxy.ProxyManager;
+import io.github.bucket4j.postgresql.Bucket4jPostgreSQL;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import javax.sql.DataSource;
+
+/**
+ * Configura el store de Bucket4j en PostgreSQL (tabla rate_limit_buckets)
+ * cuando {@code talky.rate-limit.store=postgres}.
+ */
+@Configuration
+@EnableConfigurationProperties(RateLimitProperties.class)
+public class RateLimitConfig {
+
+    @Bean
+    @ConditionalOnProperty(name = "talky.rate-limit.store", havingValue = "postgres")
+    public ProxyManager<String> rateLimitProxyManager(DataSource dataSource) {
+        return Bucket4jPostgreSQL.selectForUpdateBasedBuilder(dataSource)
+                .table("rate_limit_buckets")
+                .idColumn("id")
+                .stateColumn("state")
+                .primaryKeyMapper(PrimaryKeyMapper.STRING)
+                .build();
+    }
+}
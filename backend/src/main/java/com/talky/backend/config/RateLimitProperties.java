@@ -0,0 +1,84 @@
+package com.talky.backend.config;
+
+import com.talky.backend.model.User;
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Configuración del rate limiting de mensajes a la IA (prefijo {@code talky.rate-limit}).
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "talky.rate-limit")
+public class RateLimitProperties {
+
+    /**
+     * Dónde se guardan los buckets: memory (por instancia) o postgres (compartido entre instancias).
+     */
+    private String store = "memory";
+
+    /**
+     * Periodo en el que se recargan los mensajes permitidos.
+     */
+    private Duration period = Duration.ofHours(1);
+
+    /**
+     * Mensajes permitidos por periodo según el rol.
+     */
+    private Map<User.Role, Long> limits = new EnumMap<>(Map.of(
+            User.Role.STUDENT, 30L,
+            User.Role.TEACHER, 200L,
+            User.Role.ADMIN, 1000L
+    ));
+
+    /**
+     * Mensajes permitidos por periodo para roles sin límite configurado.
+     */
+    private long defaultLimit = 20;
+
+    private Sync sync = new Sync();
+
+    private Cache cache = new Cache();
+
+    /**
+     * Sincronización con el store compartido. Los consumos se acumulan localmente y se
+     * sincronizan al llegar a {@code maxUnsyncedTokens} o tras {@code maxUnsyncedTimeout},
+     * evitando un round-trip a la base de datos por mensaje.
+     */
+    @Getter
+    @Setter
+    public static class Sync {
+
+        private long maxUnsyncedTokens = 5;
+
+        private Duration maxUnsyncedTimeout = Duration.ofSeconds(5);
+    }
+
+    /**
+     * Caché local de buckets por usuario.
+     */
+    @Getter
+    @Setter
+    public static class Cache {
+
+        /**
+         * Buckets máximos en memoria; al superarlo se descartan los menos usados.
+         */
+        private long maximumSize = 50_000;
+
+        /**
+         * Tiempo sin uso tras el que se descarta un bucket. Con el valor por defecto (igual al
+         * periodo) un bucket descartado ya se habría recargado por completo, así que no se pierde estado.
+         */
+        private Duration expireAfterAccess = Duration.ofHours(1);
+    }
+
+    public long getLimitFor(User.Role role) {
+        return limits.getOrDefault(role, defaultLimit);
+    }
+}
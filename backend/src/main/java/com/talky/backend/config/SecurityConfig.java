@@ -30,6 +30,9 @@ public class SecurityConfig {
                 .authorizeHttpRequests(auth -> auth
                         // Rutas publicas
                         .requestMatchers("/api/auth/ping").permitAll()
+                        .requestMatchers("/actuator/health").permitAll()
+                        // El handshake WebSocket se autentica en el frame STOMP CONNECT
+                        .requestMatchers("/ws/**").permitAll()
                         // Endpoints por rol
                         .requestMatchers("/api/student/**").hasRole("STUDENT")
                         .requestMatchers("/api/teacher/**").hasRole("TEACHER")
@@ -56,6 +59,7 @@ public class SecurityConfig {
         config.setAllowedOrigins(List.of("http://localhost:5173")); // Frontend local
         config.setAllowedMethods(List.of("GET", "POST", "PUT",  "PATCH", "DELETE", "OPTIONS"));
         config.setAllowedHeaders(List.of("*"));
+        config.setExposedHeaders(List.of("X-Next-Cursor", "Location", "Idempotent-Replayed")); // Cursor del historial, URL de los mensajes asíncronos y repeticiones idempotentes
         config.setAllowCredentials(true);
 
         UrlBasedCorsConfigurationSource source = new UrlBasedCorsConfigurationSource();
@@ -0,0 +1,50 @@
+package com.talky.backend.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+/**
+ * Configuración del resumen automático de conversaciones (prefijo {@code talky.summary}).
+ */
+@Getter
+@Setter
+@ConfigurationProperties(prefix = "talky.summary")
+public class SummaryProperties {
+
+    /**
+     * Hilos que procesan la cola de resúmenes en segundo plano.
+     */
+    private int workerThreads = 2;
+
+    /**
+     * Trabajos de resumen que pueden quedar en espera antes de descartar nuevos.
+     */
+    private int queueCapacity = 500;
+
+    /**
+     * Si está activo, solo se envían a N8N el resumen anterior y los mensajes posteriores a él.
+     */
+    private boolean incremental = true;
+
+    /**
+     * Cada cuántas compactaciones se pide un resumen jerárquico (resumen del resumen acumulado).
+     */
+    private int hierarchicalEvery = 5;
+
+    /**
+     * Tokens estimados máximos del historial enviado a N8N; si se supera, se recorta con un
+     * resumen extractivo local (0 = sin recorte).
+     */
+    private int preSummaryMaxTokens = 1200;
+
+    /**
+     * Si N8N no está disponible o falla, se genera un resumen extractivo local en su lugar.
+     */
+    private boolean localFallback = true;
+
+    /**
+     * Tokens estimados máximos del resumen local de respaldo.
+     */
+    private int fallbackMaxTokens = 300;
+}
@@ -0,0 +1,32 @@
+package com.talky.backend.config;
+
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.Executors;
+
+/**
+ * Ejecución del trabajo bloqueante del chat (JPA, llamadas a N8N) fuera de los hilos de Tomcat.
+ * <p>
+ * Con {@code spring.threads.virtual.enabled=true} (Java 21+) Tomcat atiende cada request en un
+ * hilo virtual y este scheduler también usa hilos virtuales, así que miles de conversaciones
+ * esperando a la IA no consumen hilos de plataforma.
+ */
+@Configuration
+public class ThreadingConfig {
+
+    @Bean(destroyMethod = "dispose")
+    public Scheduler chatBlockingScheduler(Environment environment) {
+        if (Threading.VIRTUAL.isActive(environment)) {
+            return Schedulers.fromExecutorService(Executors.newVirtualThreadPerTaskExecutor(), "chat-virtual");
+        }
+        return Schedulers.newBoundedElastic(
+                Schedulers.DEFAULT_BOUNDED_ELASTIC_SIZE,
+                Schedulers.DEFAULT_BOUNDED_ELASTIC_QUEUESIZE,
+                "chat-blocking");
+    }
+}
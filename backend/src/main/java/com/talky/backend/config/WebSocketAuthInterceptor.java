@@ -0,0 +1,143 @@
+package com.talky.backend.config;
+
+import com.talky.backend.repository.UserRepository;
+import com.talky.backend.repository.chat.ConversationRepository;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageChannel;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.ChannelInterceptor;
+import org.springframework.messaging.support.MessageHeaderAccessor;
+import org.springframework.security.authentication.AbstractAuthenticationToken;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+import org.springframework.stereotype.Component;
+
+import java.security.Principal;
+import java.util.UUID;
+
+/**
+ * Autentica las sesiones STOMP con el mismo JWT de Cognito que usa la API REST.
+ * <p>
+ * El navegador no puede enviar cabeceras en el handshake de WebSocket, así que el token
+ * viaja en el frame CONNECT. Además:
+ * <ul>
+ *   <li>solo se admiten suscripciones a {@code /topic/conversations/{id}} (del propio usuario)
+ *       y a las colas privadas {@code /user/queue/**}; el broker interpreta los destinos como
+ *       patrones Ant, así que se rechaza cualquier comodín;</li>
+ *   <li>los clientes solo pueden enviar a {@code /app/**}: publicar directamente en el broker
+ *       permitiría inyectar eventos falsos en conversaciones ajenas.</li>
+ * </ul>
+ */
+@Component
+public class WebSocketAuthInterceptor implements ChannelInterceptor {
+
+    private static final String CONVERSATION_TOPIC_PREFIX = "/topic/conversations/";
+    private static final String USER_QUEUE_PREFIX = "/user/queue/";
+    private static final String APP_PREFIX = "/app/";
+
+    private final JwtDecoder jwtDecoder;
+    private final ConversationRepository conversationRepository;
+    private final CustomJwtAuthenticationConverter authenticationConverter;
+
+    public WebSocketAuthInterceptor(JwtDecoder jwtDecoder,
+                                    UserRepository userRepository,
+                                    ConversationRepository conversationRepository) {
+        this.jwtDecoder = jwtDecoder;
+        this.conversationRepository = conversationRepository;
+        this.authenticationConverter = new CustomJwtAuthenticationConverter(userRepository);
+    }
+
+    @Override
+    public Message<?> preSend(Message<?> message, MessageChannel channel) {
+        StompHeaderAccessor accessor = MessageHeaderAccessor.getAccessor(message, StompHeaderAccessor.class);
+        if (accessor == null || accessor.getCommand() == null) {
+            return message;
+        }
+
+        switch (accessor.getCommand()) {
+            case CONNECT -> accessor.setUser(authenticate(accessor));
+            case SUBSCRIBE -> checkSubscription(accessor);
+            case SEND -> checkSend(accessor);
+            default -> { }
+        }
+        return message;
+    }
+
+    private AbstractAuthenticationToken authenticate(StompHeaderAccessor accessor) {
+        String header = accessor.getFirstNativeHeader("Authorization");
+        if (header == null || !header.startsWith("Bearer ")) {
+            throw new MessageDeliveryException("Falta el token de autenticación");
+        }
+        try {
+            return authenticationConverter.convert(jwtDecoder.decode(header.substring(7)));
+        } catch (JwtException e) {
+            throw new MessageDeliveryException("Token inválido");
+        }
+    }
+
+    /**
+     * Solo se puede escuchar la cola privada propia o los eventos de una conversación propia.
+     */
+    private void checkSubscription(StompHeaderAccessor accessor) {
+        Principal user = requireUser(accessor);
+        String destination = requireDestination(accessor);
+        if (destination.startsWith(USER_QUEUE_PREFIX)) {
+            return;
+        }
+        if (!destination.startsWith(CONVERSATION_TOPIC_PREFIX)) {
+            throw new MessageDeliveryException("Destino no permitido");
+        }
+
+        // El id debe ser un UUID canónico: nada de sufijos ni subrutas
+        String id = destination.substring(CONVERSATION_TOPIC_PREFIX.length());
+        UUID conversationId;
+        try {
+            conversationId = UUID.fromString(id);
+        } catch (IllegalArgumentException e) {
+            throw new MessageDeliveryException("Conversación inválida");
+        }
+        if (!conversationId.toString().equalsIgnoreCase(id)) {
+            throw new MessageDeliveryException("Conversación inválida");
+        }
+        // El nombre del principal es el sub de Cognito
+        if (!conversationRepository.existsByIdAndUserCognitoSub(conversationId, user.getName())) {
+            throw new MessageDeliveryException("No tienes acceso a esta conversación");
+        }
+    }
+
+    /**
+     * Los mensajes de los clientes solo van a los controladores ({@code /app/**}), nunca al broker.
+     */
+    private void checkSend(StompHeaderAccessor accessor) {
+        requireUser(accessor);
+        if (!requireDestination(accessor).startsWith(APP_PREFIX)) {
+            throw new MessageDeliveryException("Destino no permitido");
+        }
+    }
+
+    /**
+     * Destino presente y sin comodines de patrón Ant ({@code *}, {@code ?}, {@code {}}).
+     */
+    private String requireDestination(StompHeaderAccessor accessor) {
+        String destination = accessor.getDestination();
+        if (destination == null || destination.isBlank()) {
+            throw new MessageDeliveryException("Falta el destino");
+        }
+        for (char c : destination.toCharArray()) {
+            if (c == '*' || c == '?' || c == '{' || c == '}') {
+                throw new MessageDeliveryException("Destino no permitido");
+            }
+        }
+        return destination;
+    }
+
+    private Principal requireUser(StompHeaderAccessor accessor) {
+        Principal user = accessor.getUser();
+        if (user == null) {
+            throw new MessageDeliveryException("Sesión no autenticada");
+        }
+        return user;
+    }
+}
@@ -0,0 +1,68 @@
+package com.talky.backend.config;
+
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.messaging.simp.config.ChannelRegistration;
+import org.springframework.messaging.simp.config.MessageBrokerRegistry;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
+import org.springframework.web.socket.config.annotation.EnableWebSocketMessageBroker;
+import org.springframework.web.socket.config.annotation.StompEndpointRegistry;
+import org.springframework.web.socket.config.annotation.WebSocketMessageBrokerConfigurer;
+
+/**
+ * Canal de chat por WebSocket (STOMP).
+ * <p>
+ * El cliente se conecta a {@code /ws} enviando {@code Authorization: Bearer <jwt>} en el frame CONNECT,
+ * publica prompts en {@code /app/conversations/{id}/send} y recibe los eventos de la conversación
+ * (respuesta de la IA, resúmenes y estado del bloqueo) suscribiéndose a {@code /topic/conversations/{id}}.
+ * Los errores llegan a {@code /user/queue/errors}.
+ * <p>
+ * Una conexión inactiva no ocupa hilo (Tomcat NIO + broker en memoria); los heartbeats
+ * permiten detectar y cerrar conexiones muertas.
+ */
+@Configuration
+@EnableWebSocketMessageBroker
+public class WebSocketConfig implements WebSocketMessageBrokerConfigurer {
+
+    // Heartbeat servidor/cliente en milisegundos
+    private static final long HEARTBEAT_MS = 25_000;
+
+    private final WebSocketAuthInterceptor webSocketAuthInterceptor;
+    private final Environment environment;
+
+    public WebSocketConfig(WebSocketAuthInterceptor webSocketAuthInterceptor, Environment environment) {
+        this.webSocketAuthInterceptor = webSocketAuthInterceptor;
+        this.environment = environment;
+    }
+
+    @Override
+    public void registerStompEndpoints(StompEndpointRegistry registry) {
+        registry.addEndpoint("/ws")
+                .setAllowedOrigins("http://localhost:5173"); // Frontend local (igual que CORS)
+    }
+
+    @Override
+    public void configureMessageBroker(MessageBrokerRegistry registry) {
+        ThreadPoolTaskScheduler heartbeatScheduler = new ThreadPoolTaskScheduler();
+        heartbeatScheduler.setPoolSize(1);
+        heartbeatScheduler.setThreadNamePrefix("ws-heartbeat-");
+        heartbeatScheduler.initialize();
+
+        registry.enableSimpleBroker("/topic", "/queue")
+                .setHeartbeatValue(new long[]{HEARTBEAT_MS, HEARTBEAT_MS})
+                .setTaskScheduler(heartbeatScheduler);
+        registry.setApplicationDestinationPrefixes("/app");
+        registry.setUserDestinationPrefix("/user");
+    }
+
+    @Override
+    public void configureClientInboundChannel(ChannelRegistration registration) {
+        registration.interceptors(webSocketAuthInterceptor);
+        // Enviar un prompt bloquea hasta que N8N responde: con hilos virtuales no se agota el pool
+        if (Threading.VIRTUAL.isActive(environment)) {
+            registration.executor(new VirtualThreadTaskExecutor("ws-inbound-"));
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.talky.backend.controller;
+
+import com.talky.backend.dto.message.MessageRequestDto;
+import com.talky.backend.dto.message.MessageResponseDto;
+import com.talky.backend.model.User;
+import com.talky.backend.service.RateLimitService;
+import com.talky.backend.service.UserService;
+import com.talky.backend.service.chat.ConversationService;
+import com.talky.backend.service.chat.MessageService;
+import com.talky.backend.service.chat.RequestDeadline;
+import com.talky.backend.service.chat.RequestDeadlines;
+import org.springframework.messaging.handler.annotation.DestinationVariable;
+import org.springframework.messaging.handler.annotation.Header;
+import org.springframework.messaging.handler.annotation.MessageExceptionHandler;
+import org.springframework.messaging.handler.annotation.MessageMapping;
+import org.springframework.messaging.handler.annotation.Payload;
+import org.springframework.messaging.simp.annotation.SendToUser;
+import org.springframework.stereotype.Controller;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.security.Principal;
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Envío de mensajes por WebSocket (STOMP).
+ * <p>
+ * El cliente publica en {@code /app/conversations/{id}/send}; la respuesta de la IA no se devuelve
+ * aquí sino que se publica en {@code /topic/conversations/{id}} junto al resto de eventos de la conversación.
+ */
+@Controller
+public class ChatWebSocketController {
+
+    private final MessageService messageService;
+    private final UserService userService;
+    private final ConversationService conversationService;
+    private final RateLimitService rateLimitService;
+    private final RequestDeadlines requestDeadlines;
+
+    public ChatWebSocketController(MessageService messageService,
+                                   UserService userService,
+                                   ConversationService conversationService,
+                                   RateLimitService rateLimitService,
+                                   RequestDeadlines requestDeadlines) {
+        this.messageService = messageService;
+        this.userService = userService;
+        this.conversationService = conversationService;
+        this.rateLimitService = rateLimitService;
+        this.requestDeadlines = requestDeadlines;
+    }
+
+    @MessageMapping("/conversations/{conversationId}/send")
+    public void sendMessage(Principal principal,
+                            @DestinationVariable UUID conversationId,
+                            @Header(name = RequestDeadlines.HEADER, required = false) String timeout,
+                            @Payload MessageRequestDto request) {
+        // El nombre del principal es el sub de Cognito (ver WebSocketAuthInterceptor)
+        User user = userService.getByCognitoSub(principal.getName())
+                .orElseThrow(() -> new RuntimeException("Usuario no encontrado"));
+        // Suscribirse ya exige ser el dueño (WebSocketAuthInterceptor); enviar también
+        conversationService.checkOwner(conversationId, principal.getName());
+        // El plazo puede venir como cabecera STOMP; si no, el del rol
+        RequestDeadline deadline = requestDeadlines.resolve(user, timeout);
+
+        // Rate limiting por rol
+        if (!rateLimitService.tryConsume(user)) {
+            throw new RuntimeException("Has excedido el límite de mensajes permitidos.");
+        }
+
+        request.setStudentEmail(user.getEmail());
+        request.setConversationId(conversationId.toString());
+
+        messageService.handleMessage(request, deadline);
+    }
+
+    /**
+     * Los errores se devuelven solo a la sesión que envió el mensaje.
+     */
+    @MessageExceptionHandler
+    @SendToUser(value = "/queue/errors", broadcast = false)
+    public MessageResponseDto handleError(Exception e) {
+        return MessageResponseDto.builder()
+                .type("ERROR")
+                .content(e instanceof ResponseStatusException rse ? rse.getReason() : e.getMessage())
+                .timestamp(Instant.now())
+                .build();
+    }
+}
@@ -1,25 +1,34 @@
 package com.talky.backend.controller;
 
+import com.talky.backend.dto.message.AiJobDto;
+import com.talky.backend.dto.message.MessagePageDto;
 import com.talky.backend.dto.message.MessageRequestDto;
 import com.talky.backend.dto.message.MessageResponseDto;
 import com.talky.backend.model.User;
 import com.talky.backend.model.chat.Conversation;
+import com.talky.backend.service.IdempotencyService;
+import com.talky.backend.service.RateLimitService;
 import com.talky.backend.service.UserService;
+import com.talky.backend.service.chat.AiJobService;
 import com.talky.backend.service.chat.ConversationService;
 import com.talky.backend.service.chat.MessageService;
-import io.github.bucket4j.Bucket;
-import io.github.bucket4j.Bandwidth;
-import io.github.bucket4j.Refill;
+import com.talky.backend.service.chat.RequestDeadline;
+import com.talky.backend.service.chat.RequestDeadlines;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.util.DigestUtils;
 import org.springframework.web.bind.annotation.*;
+import reactor.core.publisher.Flux;
 
-import java.time.Duration;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.UUID;
+import java.util.function.Supplier;
 
 @RestController
 @RequestMapping("/api/messages")
@@ -28,87 +37,191 @@ public class MessageController {
     private final MessageService messageService;
     private final UserService userService;
     private final ConversationService conversationService;
+    private final RateLimitService rateLimitService;
+    private final AiJobService aiJobService;
+    private final IdempotencyService idempotencyService;
+    private final RequestDeadlines requestDeadlines;
 
-    // Mapa en memoria para manejar rate limiting por usuario
-    private final Map<UUID, Bucket> buckets = new ConcurrentHashMap<>();
+    public static final String NEXT_CURSOR_HEADER = "X-Next-Cursor";
 
     public MessageController(MessageService messageService,
                              UserService userService,
-                             ConversationService conversationService) {
+                             ConversationService conversationService,
+                             RateLimitService rateLimitService,
+                             AiJobService aiJobService,
+                             IdempotencyService idempotencyService,
+                             RequestDeadlines requestDeadlines) {
         this.messageService = messageService;
         this.userService = userService;
         this.conversationService = conversationService;
+        this.rateLimitService = rateLimitService;
+        this.aiJobService = aiJobService;
+        this.idempotencyService = idempotencyService;
+        this.requestDeadlines = requestDeadlines;
     }
 
     /**
      * Envía un mensaje dentro de una conversación y devuelve la respuesta de la IA.
+     * Con la cabecera {@code Idempotency-Key}, un reintento recibe la misma respuesta sin repetir el envío.
+     * Con {@code X-Request-Timeout} (milisegundos) el cliente indica cuánto espera; si no, se usa el plazo de su rol.
      */
     @PostMapping("/{conversationId}")
     public ResponseEntity<MessageResponseDto> sendMessage(
             @AuthenticationPrincipal Jwt principal,
             @PathVariable UUID conversationId,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+            @RequestHeader(value = RequestDeadlines.HEADER, required = false) String timeout,
             @RequestBody MessageRequestDto request) {
 
         String sub = principal.getClaim("sub");
         User user = userService.getByCognitoSub(sub)
                 .orElseThrow(() -> new RuntimeException("Usuario no encontrado"));
+        conversationService.checkOwner(conversationId, sub);
+        RequestDeadline deadline = requestDeadlines.resolve(user, timeout);
+
+        return idempotent(user, "send-message", idempotencyKey, conversationId, request, MessageResponseDto.class, () -> {
+            // Rate limiting por rol
+            if (!rateLimitService.tryConsume(user)) {
+                return ResponseEntity.status(429).body(
+                        MessageResponseDto.builder()
+                                .content("Has excedido el límite de mensajes permitidos.")
+                                .conversationId(conversationId.toString())
+                                .timestamp(Instant.now())
+                                .build()
+                );
+            }
+
+            // Aseguramos que se setea el email del user
+            request.setStudentEmail(user.getEmail());
+            request.setConversationId(conversationId.toString());
+
+            // Delegamos al service
+            MessageResponseDto response = messageService.handleMessage(request, deadline);
+            return ResponseEntity.ok(response);
+        });
+    }
+
+    /**
+     * Envía un mensaje y devuelve la respuesta de la IA en streaming (Server-Sent Events).
+     * Emite eventos "chunk" a medida que N8N genera la respuesta y un evento "done"
+     * con el mensaje completo una vez guardado.
+     */
+    @PostMapping(value = "/{conversationId}/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<Flux<ServerSentEvent<MessageResponseDto>>> streamMessage(
+            @AuthenticationPrincipal Jwt principal,
+            @PathVariable UUID conversationId,
+            @RequestHeader(value = RequestDeadlines.HEADER, required = false) String timeout,
+            @RequestBody MessageRequestDto request) {
+
+        String sub = principal.getClaim("sub");
+        User user = userService.getByCognitoSub(sub)
+                .orElseThrow(() -> new RuntimeException("Usuario no encontrado"));
+        conversationService.checkOwner(conversationId, sub);
+        RequestDeadline deadline = requestDeadlines.resolve(user, timeout);
 
         // Rate limiting por rol
-        Bucket bucket = getBucketForUser(user);
-        if (!bucket.tryConsume(1)) {
-            return ResponseEntity.status(429).body(
-                    MessageResponseDto.builder()
-                            .content("Has excedido el límite de mensajes permitidos.")
-                            .conversationId(conversationId.toString())
-                            .timestamp(Instant.now())
+        if (!rateLimitService.tryConsume(user)) {
+            return ResponseEntity.status(429).body(Flux.just(
+                    ServerSentEvent.<MessageResponseDto>builder()
+                            .event("error")
+                            .data(MessageResponseDto.builder()
+                                    .content("Has excedido el límite de mensajes permitidos.")
+                                    .conversationId(conversationId.toString())
+                                    .timestamp(Instant.now())
+                                    .build())
                             .build()
-            );
+            ));
         }
 
-        // Aseguramos que se setea el email del user
         request.setStudentEmail(user.getEmail());
         request.setConversationId(conversationId.toString());
 
-        // Delegamos al service
-        MessageResponseDto response = messageService.handleMessage(request);
-        return ResponseEntity.ok(response);
+        return ResponseEntity.ok(messageService.streamMessage(request, deadline));
     }
 
     /**
-     * Obtiene el historial reducido (últimos N mensajes) de una conversación.
+     * Envía un mensaje en modo asíncrono: guarda el mensaje y su trabajo de IA y responde
+     * {@code 202 Accepted} sin esperar a N8N. El estado se consulta en la URL de {@code Location}
+     * (y la respuesta también se publica por WebSocket).
      */
-    @GetMapping("/{conversationId}")
-    public ResponseEntity<List<MessageResponseDto>> getConversationHistory(@PathVariable UUID conversationId) {
-        Conversation conversation = conversationService.getById(conversationId)
-                .orElseThrow(() -> new RuntimeException("Conversación no encontrada"));
+    @PostMapping("/{conversationId}/jobs")
+    public ResponseEntity<AiJobDto> submitMessage(
+            @AuthenticationPrincipal Jwt principal,
+            @PathVariable UUID conversationId,
+            @RequestHeader(value = IdempotencyService.HEADER, required = false) String idempotencyKey,
+            @RequestBody MessageRequestDto request) {
+
+        String sub = principal.getClaim("sub");
+        User user = userService.getByCognitoSub(sub)
+                .orElseThrow(() -> new RuntimeException("Usuario no encontrado"));
+        conversationService.checkOwner(conversationId, sub);
+
+        return idempotent(user, "submit-message", idempotencyKey, conversationId, request, AiJobDto.class, () -> {
+            // Rate limiting por rol
+            if (!rateLimitService.tryConsume(user)) {
+                return ResponseEntity.status(429).build();
+            }
 
-        List<MessageResponseDto> messages = messageService.getRecentMessages(conversation);
+            request.setStudentEmail(user.getEmail());
+            request.setConversationId(conversationId.toString());
 
-        return ResponseEntity.ok(messages);
+            AiJobDto job = aiJobService.submit(request);
+            return ResponseEntity.accepted()
+                    .location(URI.create("/api/messages/jobs/" + job.getJobId()))
+                    .body(job);
+        });
     }
 
     /**
-     * Configura el bucket de rate limiting según el rol del usuario.
+     * Estado de un mensaje asíncrono; cuando está en DONE incluye la respuesta de la IA.
      */
-    private Bucket getBucketForUser(User user) {
-        return buckets.computeIfAbsent(user.getId(), id -> {
-            Bandwidth limit;
-
-            switch (user.getRole()) {
-                case TEACHER:
-                    limit = Bandwidth.classic(200, Refill.greedy(200, Duration.ofHours(1)));
-                    break;
-                case STUDENT:
-                    limit = Bandwidth.classic(30, Refill.greedy(30, Duration.ofHours(1)));
-                    break;
-                case ADMIN:
-                    limit = Bandwidth.classic(1000, Refill.greedy(1000, Duration.ofHours(1)));
-                    break;
-                default:
-                    limit = Bandwidth.classic(20, Refill.greedy(20, Duration.ofHours(1)));
-            }
+    @GetMapping("/jobs/{jobId}")
+    public ResponseEntity<AiJobDto> getJob(
+            @AuthenticationPrincipal Jwt principal,
+            @PathVariable UUID jobId) {
+        String sub = principal.getClaim("sub");
+        return aiJobService.getJob(jobId, sub)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
 
-            return Bucket.builder().addLimit(limit).build();
-        });
+    /**
+     * Sin {@code Idempotency-Key} ejecuta el envío tal cual; con ella, una sola vez por clave.
+     */
+    private <T> ResponseEntity<T> idempotent(User user, String operation, String idempotencyKey,
+                                             UUID conversationId, MessageRequestDto request,
+                                             Class<T> bodyType, Supplier<ResponseEntity<T>> send) {
+        if (idempotencyKey == null) {
+            return send.get();
+        }
+        String prompt = request.getPrompt() != null ? request.getPrompt() : "";
+        String fingerprint = conversationId + ":"
+                + DigestUtils.md5DigestAsHex(prompt.getBytes(StandardCharsets.UTF_8));
+        return idempotencyService.execute(user.getId(), operation, idempotencyKey, fingerprint, bodyType, send);
+    }
+
+    /**
+     * Obtiene el historial de una conversación paginado por keyset.
+     * Sin parámetros devuelve los últimos mensajes; con {@code before=<timestamp,id>}
+     * devuelve los anteriores a ese cursor. El cursor de la siguiente página
+     * viaja en la cabecera {@code X-Next-Cursor} (ausente si no hay más).
+     */
+    @GetMapping("/{conversationId}")
+    public ResponseEntity<List<MessageResponseDto>> getConversationHistory(
+            @AuthenticationPrincipal Jwt principal,
+            @PathVariable UUID conversationId,
+            @RequestParam(required = false) String before,
+            @RequestParam(required = false) Integer limit) {
+        conversationService.checkOwner(conversationId, principal.getClaim("sub"));
+        Conversation conversation = conversationService.getById(conversationId)
+                .orElseThrow(() -> new RuntimeException("Conversación no encontrada"));
+
+        MessagePageDto page = messageService.getMessagesPage(conversation, before, limit);
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+        if (page.getNextCursor() != null) {
+            response.header(NEXT_CURSOR_HEADER, page.getNextCursor());
+        }
+        return response.body(page.getMessages());
     }
-}
+}
\ No newline at end of file
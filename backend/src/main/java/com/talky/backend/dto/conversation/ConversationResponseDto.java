@@ -5,6 +5,7 @@ import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.Setter;
 
+import java.time.Instant;
 import java.util.UUID;
 
 @Getter
@@ -14,12 +15,16 @@ public class ConversationResponseDto {
     private UUID id;
     private String title;
     private UUID userId; // solo lo necesario, no todo el User completo
+    private int messageCount;      // contador desnormalizado, sin contar filas
+    private Instant lastMessageAt; // para ordenar la lista por actividad
 
     public static ConversationResponseDto fromEntity(Conversation conversation) {
         return new ConversationResponseDto(
                 conversation.getId(),
                 conversation.getTitle(),
-                conversation.getUser() != null ? conversation.getUser().getId() : null
+                conversation.getUser() != null ? conversation.getUser().getId() : null,
+                conversation.getMessageCount(),
+                conversation.getLastMessageAt()
         );
     }
 }
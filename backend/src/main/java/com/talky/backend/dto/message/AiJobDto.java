@@ -0,0 +1,19 @@
+package com.talky.backend.dto.message;
+
+import lombok.*;
+
+import java.time.Instant;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AiJobDto {
+    private String jobId;
+    private String conversationId;
+    private String status;              // PENDING, PROCESSING, DONE o FAILED
+    private Instant createdAt;
+    private MessageResponseDto response; // respuesta de la IA cuando status = DONE
+    private String error;                // motivo cuando status = FAILED
+}
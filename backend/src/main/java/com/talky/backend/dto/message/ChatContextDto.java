@@ -0,0 +1,31 @@
+package com.talky.backend.dto.message;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.*;
+
+import java.util.List;
+
+/**
+ * Contexto de la conversación que acompaña al prompt enviado a N8N:
+ * el último resumen y los turnos más recientes que caben en el presupuesto de tokens.
+ */
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class ChatContextDto {
+    private String summary;          // último resumen (puede venir recortado)
+    private List<Turn> history;      // turnos recientes en orden cronológico
+    private int estimatedTokens;     // tokens estimados de resumen + historial
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Turn {
+        private String role;         // USER o AI
+        private String content;
+    }
+}
@@ -0,0 +1,15 @@
+package com.talky.backend.dto.message;
+
+import lombok.*;
+
+import java.util.List;
+
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class MessagePageDto {
+    private List<MessageResponseDto> messages; // en orden cronológico
+    private String nextCursor;                 // cursor para la página anterior (null si no hay más)
+}
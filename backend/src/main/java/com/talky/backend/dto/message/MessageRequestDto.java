@@ -1,5 +1,6 @@
 package com.talky.backend.dto.message;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.*;
 
 @Getter
@@ -11,4 +12,10 @@ public class MessageRequestDto {
     private String studentEmail;   // quién envía
     private String prompt;         // mensaje del usuario
     private String conversationId; // opcional: si es un nuevo chat, puede venir vacío
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private ChatContextDto context; // resumen y turnos recientes; lo rellena el backend antes de llamar a N8N
+
+    public MessageRequestDto(String studentEmail, String prompt, String conversationId) {
+        this(studentEmail, prompt, conversationId, null);
+    }
 }
@@ -13,4 +13,5 @@ public class MessageResponseDto {
     private String content;         // texto de la IA o del resumen
     private String conversationId;  // conversación a la que pertenece
     private Instant timestamp;      // para pintar en el chat
+    private String cursor;          // posición del mensaje para paginar el historial (before=cursor)
 }
@@ -1,15 +1,24 @@
 package com.talky.backend.dto.summary;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 
 /**
  * DTO para enviar historial de conversación a N8N.
+ * En modo incremental incluye el resumen anterior y solo los mensajes nuevos.
  */
 @Data
 @NoArgsConstructor
 @AllArgsConstructor
+@JsonInclude(JsonInclude.Include.NON_NULL)
 public class SummaryRequestDto {
     private String history;
+    private String previousSummary; // resumen anterior (modo incremental / jerárquico)
+    private String mode;            // FULL, INCREMENTAL o HIERARCHICAL
+
+    public SummaryRequestDto(String history) {
+        this.history = history;
+    }
 }
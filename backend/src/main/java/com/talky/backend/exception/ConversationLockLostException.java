@@ -0,0 +1,16 @@
+package com.talky.backend.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Se perdió el bloqueo de la conversación mientras se procesaba el mensaje (p. ej. se cayó la
+ * sesión de PostgreSQL que lo mantenía): otra instancia puede estar procesándola, así que no
+ * se guarda el resultado.
+ */
+public class ConversationLockLostException extends ResponseStatusException {
+
+    public ConversationLockLostException() {
+        super(HttpStatus.CONFLICT, "Se perdió el bloqueo de la conversación y la respuesta no se guardó. Inténtalo de nuevo.");
+    }
+}
@@ -0,0 +1,14 @@
+package com.talky.backend.exception;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * El plazo del request venció antes de terminar; el trabajo pendiente se abandonó.
+ */
+public class DeadlineExceededException extends ResponseStatusException {
+
+    public DeadlineExceededException() {
+        super(HttpStatus.GATEWAY_TIMEOUT, "La respuesta de la IA tardó demasiado. Inténtalo de nuevo.");
+    }
+}
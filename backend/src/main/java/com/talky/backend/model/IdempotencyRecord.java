@@ -0,0 +1,66 @@
+package com.talky.backend.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Clave {@code Idempotency-Key} guardada en PostgreSQL y la respuesta que se repite con ella.
+ */
+@Entity
+@Table(name = "idempotency_keys")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class IdempotencyRecord {
+
+    @Id
+    @GeneratedValue
+    private UUID id;
+
+    @Column(name = "user_id", nullable = false)
+    private UUID userId;
+
+    @Column(nullable = false, length = 50)
+    private String operation;
+
+    @Column(name = "idempotency_key", nullable = false)
+    private String idempotencyKey;
+
+    @Column(nullable = false)
+    private String fingerprint;
+
+    /**
+     * Estado HTTP de la respuesta; null mientras la petición original está en curso.
+     */
+    @Column(name = "status_code")
+    private Integer statusCode;
+
+    /**
+     * Cabeceras de la respuesta en JSON.
+     */
+    @Column(columnDefinition = "TEXT")
+    private String headers;
+
+    /**
+     * Cuerpo de la respuesta en JSON.
+     */
+    @Column(columnDefinition = "TEXT")
+    private String body;
+
+    /**
+     * Motivo del error, si la petición terminó con una excepción en lugar de una respuesta.
+     */
+    @Column(columnDefinition = "TEXT")
+    private String reason;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    @Column(name = "expires_at", nullable = false)
+    private Instant expiresAt;
+}
@@ -51,6 +51,10 @@ public class User {
     @JoinColumn(name = "course_id")
     private Course courseAsStudent;
 
+    // Conversaciones actuales del usuario (solo lectura: se mantiene con UPDATE atómicos en UserRepository)
+    @Column(name = "conversation_count", insertable = false, updatable = false)
+    private int conversationCount;
+
     @CreationTimestamp
     @Column(name = "created_at", updatable = false)
     private Instant createdAt;
@@ -0,0 +1,84 @@
+package com.talky.backend.model.chat;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Trabajo de IA pendiente de un mensaje enviado en modo asíncrono.
+ * Guarda el prompt para que sobreviva a un reinicio mientras espera respuesta de N8N.
+ */
+@Entity
+@Table(name = "ai_jobs")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AiJob {
+
+    @Id
+    @GeneratedValue
+    private UUID id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "conversation_id", nullable = false)
+    private Conversation conversation;
+
+    /**
+     * Mensaje del usuario guardado al enviar el trabajo.
+     */
+    @Column(name = "user_message_id")
+    private UUID userMessageId;
+
+    /**
+     * Respuesta de la IA, cuando el trabajo termina.
+     */
+    @Column(name = "ai_message_id")
+    private UUID aiMessageId;
+
+    @Column(name = "student_email", nullable = false)
+    private String studentEmail;
+
+    @Column(columnDefinition = "TEXT", nullable = false)
+    private String prompt;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    @Builder.Default
+    private AiJobStatus status = AiJobStatus.PENDING;
+
+    /**
+     * Veces que un worker ha reservado el trabajo.
+     */
+    @Column(nullable = false)
+    @Builder.Default
+    private int attempts = 0;
+
+    /**
+     * Fin de la reserva del worker; si vence (p. ej. la instancia se reinició) otro worker lo retoma.
+     */
+    @Column(name = "locked_until")
+    private Instant lockedUntil;
+
+    /**
+     * Tras un fallo, el trabajo no se vuelve a reservar antes de esta fecha.
+     */
+    @Column(name = "next_attempt_at")
+    private Instant nextAttemptAt;
+
+    @Column(columnDefinition = "TEXT")
+    private String error;
+
+    @CreationTimestamp
+    @Column(name = "created_at", updatable = false)
+    private Instant createdAt;
+
+    @UpdateTimestamp
+    @Column(name = "updated_at")
+    private Instant updatedAt;
+}
@@ -0,0 +1,8 @@
+package com.talky.backend.model.chat;
+
+public enum AiJobStatus {
+    PENDING,     // esperando un worker
+    PROCESSING,  // un worker lo tiene reservado hasta locked_until
+    DONE,        // respuesta de la IA guardada
+    FAILED       // superó el máximo de intentos
+}
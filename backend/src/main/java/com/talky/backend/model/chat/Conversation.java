@@ -46,6 +46,19 @@ public class Conversation {
     @Column(nullable = false)
     private String mode;
 
+    /**
+     * Mensajes actuales de la conversación (incluye resúmenes).
+     * Solo lectura: se mantiene con UPDATE atómicos en {@link com.talky.backend.repository.chat.ConversationRepository}.
+     */
+    @Column(name = "message_count", insertable = false, updatable = false)
+    private int messageCount;
+
+    /**
+     * Fecha del último mensaje guardado. Solo lectura, igual que {@link #messageCount}.
+     */
+    @Column(name = "last_message_at", insertable = false, updatable = false)
+    private Instant lastMessageAt;
+
     @CreationTimestamp
     @Column(name = "created_at", updatable = false)
     private Instant createdAt;
@@ -33,6 +33,20 @@ public class ConversationSummary {
     @Column(columnDefinition = "TEXT", nullable = false)
     private String summary;
 
+    /**
+     * Número de compactaciones acumuladas en este resumen (1 = primer resumen).
+     */
+    @Builder.Default
+    @Column(name = "compaction_count", nullable = false)
+    private int compactionCount = 1;
+
+    /**
+     * Fecha del último mensaje incluido en el resumen.
+     * El siguiente resumen incremental parte de los mensajes posteriores.
+     */
+    @Column(name = "covered_until")
+    private Instant coveredUntil;
+
     @CreationTimestamp
     @Column(name = "created_at", updatable = false)
     private Instant createdAt;
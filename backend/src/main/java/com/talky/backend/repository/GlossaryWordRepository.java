@@ -2,6 +2,8 @@ package com.talky.backend.repository;
 
 import com.talky.backend.model.GlossaryWord;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -18,4 +20,8 @@ public interface GlossaryWordRepository extends JpaRepository<GlossaryWord, UUID
 
     // Buscar por id + user (evita inyección y verificar propiedad)
     Optional<GlossaryWord> findByIdAndUser_Id(UUID id, UUID userId);
-}
\ No newline at end of file
+
+    // Palabras activas (no archivadas) de un usuario, en minúsculas; las usa el enrutado de prompts
+    @Query("SELECT LOWER(g.word) FROM GlossaryWord g WHERE g.user.id = :userId AND g.archived = false")
+    List<String> findActiveWordsByUserId(@Param("userId") UUID userId);
+}
@@ -0,0 +1,53 @@
+package com.talky.backend.repository;
+
+import com.talky.backend.model.IdempotencyRecord;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface IdempotencyRecordRepository extends JpaRepository<IdempotencyRecord, UUID> {
+
+    Optional<IdempotencyRecord> findByUserIdAndOperationAndIdempotencyKey(UUID userId, String operation, String idempotencyKey);
+
+    /**
+     * Reserva la clave en una sola sentencia: la inserta o, si la que había ya venció, la reinicia.
+     * La restricción única garantiza que solo una petición (de cualquier instancia) la obtiene.
+     *
+     * @return 1 si se reservó, 0 si la clave sigue vigente
+     */
+    @Modifying
+    @Query(value = "INSERT INTO idempotency_keys (user_id, operation, idempotency_key, fingerprint, created_at, expires_at) " +
+            "VALUES (:userId, :operation, :key, :fingerprint, now(), :expiresAt) " +
+            "ON CONFLICT (user_id, operation, idempotency_key) DO UPDATE SET " +
+            "fingerprint = EXCLUDED.fingerprint, status_code = NULL, headers = NULL, body = NULL, reason = NULL, " +
+            "created_at = now(), expires_at = EXCLUDED.expires_at " +
+            "WHERE idempotency_keys.expires_at < now()", nativeQuery = true)
+    int tryReserve(@Param("userId") UUID userId, @Param("operation") String operation, @Param("key") String key,
+                   @Param("fingerprint") String fingerprint, @Param("expiresAt") Instant expiresAt);
+
+    @Modifying
+    @Query(value = "UPDATE idempotency_keys SET status_code = :statusCode, headers = :headers, body = :body, reason = :reason " +
+            "WHERE user_id = :userId AND operation = :operation AND idempotency_key = :key AND status_code IS NULL",
+            nativeQuery = true)
+    int complete(@Param("userId") UUID userId, @Param("operation") String operation, @Param("key") String key,
+                 @Param("statusCode") int statusCode, @Param("headers") String headers,
+                 @Param("body") String body, @Param("reason") String reason);
+
+    /**
+     * Libera una clave en curso para que un reintento vuelva a ejecutarse.
+     */
+    @Modifying
+    @Query(value = "DELETE FROM idempotency_keys " +
+            "WHERE user_id = :userId AND operation = :operation AND idempotency_key = :key AND status_code IS NULL",
+            nativeQuery = true)
+    int release(@Param("userId") UUID userId, @Param("operation") String operation, @Param("key") String key);
+
+    @Modifying
+    @Query(value = "DELETE FROM idempotency_keys WHERE expires_at < now()", nativeQuery = true)
+    int deleteExpired();
+}
@@ -2,6 +2,9 @@ package com.talky.backend.repository;
 
 import com.talky.backend.model.User;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.List;
 import java.util.Optional;
@@ -20,4 +23,21 @@ public interface UserRepository extends JpaRepository<User, UUID> {
 
     // Buscar estudiantes sin curso asignado
     List<User> findByRoleAndCourseAsStudentIsNull(User.Role role);
+
+    /**
+     * Reserva una conversación para el usuario si no ha llegado al límite.
+     * La comprobación y el incremento son una sola sentencia, así dos altas simultáneas
+     * no pueden superar el límite. Debe llamarse dentro de la transacción que crea la conversación.
+     *
+     * @return 1 si se reservó, 0 si el usuario ya tiene {@code max} conversaciones
+     */
+    @Modifying
+    @Query(value = "UPDATE users SET conversation_count = conversation_count + 1 " +
+            "WHERE id = :userId AND conversation_count < :max", nativeQuery = true)
+    int tryIncrementConversationCount(@Param("userId") UUID userId, @Param("max") int max);
+
+    @Modifying
+    @Query(value = "UPDATE users SET conversation_count = GREATEST(conversation_count - 1, 0) " +
+            "WHERE id = :userId", nativeQuery = true)
+    int decrementConversationCount(@Param("userId") UUID userId);
 }
\ No newline at end of file
@@ -0,0 +1,55 @@
+package com.talky.backend.repository.chat;
+
+import com.talky.backend.model.chat.AiJob;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+public interface AiJobRepository extends JpaRepository<AiJob, UUID> {
+
+    /**
+     * Trabajos listos para procesar: pendientes (pasada su espera tras un fallo) o con la reserva
+     * vencida, por orden de llegada.
+     * De cada conversación solo se devuelve su trabajo activo más antiguo, así cada reserva
+     * cubre un único trabajo (su lease no vence mientras espera detrás de otros) y el orden
+     * de la conversación se conserva. Se omiten las conversaciones que ya tienen un trabajo en
+     * curso (en cualquier instancia) y {@code SKIP LOCKED} evita que dos workers reserven el mismo.
+     * Debe llamarse dentro de una transacción.
+     */
+    @Query(value = """
+            SELECT j.* FROM ai_jobs j
+            WHERE ((j.status = 'PENDING' AND (j.next_attempt_at IS NULL OR j.next_attempt_at <= now()))
+                   OR (j.status = 'PROCESSING' AND j.locked_until < now()))
+              AND NOT EXISTS (
+                  SELECT 1 FROM ai_jobs p
+                  WHERE p.conversation_id = j.conversation_id
+                    AND p.status = 'PROCESSING' AND p.locked_until >= now())
+              AND NOT EXISTS (
+                  SELECT 1 FROM ai_jobs e
+                  WHERE e.conversation_id = j.conversation_id
+                    AND e.status IN ('PENDING', 'PROCESSING')
+                    AND (e.created_at, e.id) < (j.created_at, j.id))
+            ORDER BY j.created_at
+            LIMIT :limit
+            FOR UPDATE OF j SKIP LOCKED
+            """, nativeQuery = true)
+    List<AiJob> findClaimable(@Param("limit") int limit);
+
+    /**
+     * Trabajo con su fila bloqueada hasta el fin de la transacción.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT j FROM AiJob j WHERE j.id = :id")
+    Optional<AiJob> findForUpdate(@Param("id") UUID id);
+
+    /**
+     * Busca un trabajo solo si la conversación pertenece al usuario con ese cognitoSub.
+     */
+    Optional<AiJob> findByIdAndConversationUserCognitoSub(UUID id, String cognitoSub);
+}
@@ -3,10 +3,13 @@ package com.talky.backend.repository.chat;
 import com.talky.backend.model.User;
 import com.talky.backend.model.chat.Conversation;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.time.Instant;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 /**
@@ -32,4 +35,40 @@ public interface ConversationRepository extends JpaRepository<Conversation, UUID
      */
     @Query("SELECT COUNT(c) FROM Conversation c WHERE c.user.email = :email")
     long countByEmail(@Param("email") String email);
+
+    /**
+     * Indica si la conversación pertenece al usuario con ese cognitoSub.
+     * Se usa para autorizar las suscripciones WebSocket a los eventos de la conversación.
+     */
+    boolean existsByIdAndUserCognitoSub(UUID id, String cognitoSub);
+
+    /**
+     * Obtiene la conversación con su usuario ya cargado, para poder usarlo fuera
+     * de la sesión de Hibernate (workers, WebSocket).
+     */
+    @Query("SELECT c FROM Conversation c JOIN FETCH c.user WHERE c.id = :id")
+    Optional<Conversation> findWithUserById(@Param("id") UUID id);
+
+    /**
+     * Número de mensajes de la conversación según su contador (lectura por clave primaria).
+     */
+    @Query("SELECT c.messageCount FROM Conversation c WHERE c.id = :id")
+    Optional<Integer> findMessageCountById(@Param("id") UUID id);
+
+    /**
+     * Suma un mensaje al contador. Debe llamarse en la misma transacción que guarda el mensaje.
+     */
+    @Modifying
+    @Query(value = "UPDATE conversations SET message_count = message_count + 1, " +
+            "last_message_at = GREATEST(COALESCE(last_message_at, :createdAt), :createdAt) " +
+            "WHERE id = :id", nativeQuery = true)
+    int incrementMessageCount(@Param("id") UUID id, @Param("createdAt") Instant createdAt);
+
+    /**
+     * Resta mensajes borrados del contador. Debe llamarse en la misma transacción que los borra.
+     */
+    @Modifying
+    @Query(value = "UPDATE conversations SET message_count = GREATEST(message_count - :deleted, 0) " +
+            "WHERE id = :id", nativeQuery = true)
+    int decrementMessageCount(@Param("id") UUID id, @Param("deleted") int deleted);
 }
@@ -4,8 +4,13 @@ import com.talky.backend.model.chat.Conversation;
 import com.talky.backend.model.chat.Message;
 import com.talky.backend.model.chat.MessageType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.time.Instant;
 import java.util.List;
+import java.util.Optional;
 import java.util.UUID;
 
 public interface MessageRepository extends JpaRepository<Message, UUID> {
@@ -20,11 +25,70 @@ public interface MessageRepository extends JpaRepository<Message, UUID> {
      */
     List<Message> findTop50ByConversationOrderByCreatedAtDesc(Conversation conversation);
 
+    /**
+     * Obtiene el mensaje más reciente de una conversación.
+     */
+    Optional<Message> findTopByConversationOrderByCreatedAtDesc(Conversation conversation);
+
+    /**
+     * Obtiene los mensajes (sin resúmenes) creados en el rango (from, to].
+     * Se usa para los resúmenes incrementales.
+     */
+    @Query("SELECT m FROM Message m WHERE m.conversation = :conversation " +
+            "AND m.type <> com.talky.backend.model.chat.MessageType.SUMMARY " +
+            "AND m.createdAt > :from AND m.createdAt <= :to ORDER BY m.createdAt ASC")
+    List<Message> findForIncrementalSummary(@Param("conversation") Conversation conversation,
+                                            @Param("from") Instant from,
+                                            @Param("to") Instant to);
+
+    /**
+     * Primera página del historial: los mensajes más recientes de una conversación.
+     * Usa el índice (conversation_id, created_at, id).
+     */
+    @Query(value = "SELECT * FROM messages WHERE conversation_id = :conversationId " +
+            "ORDER BY created_at DESC, id DESC LIMIT :limit",
+            nativeQuery = true)
+    List<Message> findLatestPage(@Param("conversationId") UUID conversationId, @Param("limit") int limit);
+
+    /**
+     * Página del historial anterior al cursor (createdAt, id), por keyset.
+     */
+    @Query(value = "SELECT * FROM messages WHERE conversation_id = :conversationId " +
+            "AND (created_at, id) < (:createdAt, :id) " +
+            "ORDER BY created_at DESC, id DESC LIMIT :limit",
+            nativeQuery = true)
+    List<Message> findPageBefore(@Param("conversationId") UUID conversationId,
+                                 @Param("createdAt") Instant createdAt,
+                                 @Param("id") UUID id,
+                                 @Param("limit") int limit);
+
     /**
      * Buscar mensajes de tipo SUMMARY para una conversación (para borrarlos)
      */
     List<Message> findByConversationAndType(Conversation conversation, MessageType type);
 
+    /**
+     * Borra en una sola sentencia los mensajes de un tipo (p. ej. SUMMARY) de una conversación.
+     * Debe llamarse dentro de una transacción.
+     */
+    @Modifying
+    @Query("DELETE FROM Message m WHERE m.conversation = :conversation AND m.type = :type")
+    int deleteAllByConversationAndType(@Param("conversation") Conversation conversation,
+                                       @Param("type") MessageType type);
+
+    /**
+     * Compacta una conversación en una sola sentencia: borra los mensajes (excepto SUMMARY)
+     * más antiguos que el N-ésimo mensaje más reciente que no sea SUMMARY.
+     * Con fechas iguales desempata por id, igual que la paginación: se conservan los mensajes de la última página.
+     * Debe llamarse dentro de una transacción.
+     */
+    @Modifying
+    @Query(value = "DELETE FROM messages WHERE conversation_id = :conversationId AND type <> 'SUMMARY' " +
+            "AND id NOT IN (SELECT id FROM messages WHERE conversation_id = :conversationId " +
+            "AND type <> 'SUMMARY' ORDER BY created_at DESC, id DESC LIMIT :keep)",
+            nativeQuery = true)
+    int deleteAllExceptLatest(@Param("conversationId") UUID conversationId, @Param("keep") int keep);
+
     /**
      * Elimina todos los mensajes de una conversación.
      */
@@ -4,6 +4,7 @@ import com.talky.backend.model.GlossaryWord;
 import com.talky.backend.model.User;
 import com.talky.backend.repository.GlossaryWordRepository;
 import com.talky.backend.repository.UserRepository;
+import com.talky.backend.service.chat.PromptRouter;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
@@ -14,10 +15,14 @@ public class GlossaryWordService {
 
     private final GlossaryWordRepository glossaryRepo;
     private final UserRepository userRepository;
+    // El enrutado de prompts guarda en memoria las palabras de cada glosario
+    private final PromptRouter promptRouter;
 
-    public GlossaryWordService(GlossaryWordRepository glossaryRepo, UserRepository userRepository) {
+    public GlossaryWordService(GlossaryWordRepository glossaryRepo, UserRepository userRepository,
+                               PromptRouter promptRouter) {
         this.glossaryRepo = glossaryRepo;
         this.userRepository = userRepository;
+        this.promptRouter = promptRouter;
     }
 
     public GlossaryWord saveForUser(UUID userId, String word, String meaning) {
@@ -36,7 +41,9 @@ public class GlossaryWordService {
                 .meaning(meaning)
                 .build();
 
-        return glossaryRepo.save(gw);
+        GlossaryWord saved = glossaryRepo.save(gw);
+        promptRouter.invalidateGlossary(userId);
+        return saved;
     }
 
     public List<GlossaryWord> findByUser(UUID userId) {
@@ -48,7 +55,9 @@ public class GlossaryWordService {
                 .orElseThrow(() -> new IllegalArgumentException("Palabra no encontrada"));
 
         word.setArchived(!word.isArchived());
-        return glossaryRepo.save(word);
+        GlossaryWord saved = glossaryRepo.save(word);
+        promptRouter.invalidateGlossary(userId);
+        return saved;
     }
 
     // Actualizar palabra y significado
@@ -70,7 +79,9 @@ public class GlossaryWordService {
             word.setMeaning(newMeaning.trim());
         }
 
-        return glossaryRepo.save(word);
+        GlossaryWord saved = glossaryRepo.save(word);
+        promptRouter.invalidateGlossary(userId);
+        return saved;
     }
 
     // Eliminar
@@ -78,5 +89,6 @@ public class GlossaryWordService {
         GlossaryWord word = glossaryRepo.findByIdAndUser_Id(wordId, userId)
                 .orElseThrow(() -> new IllegalArgumentException("Palabra no encontrada"));
         glossaryRepo.delete(word);
+        promptRouter.invalidateGlossary(userId);
     }
 }
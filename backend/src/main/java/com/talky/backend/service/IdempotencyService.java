@@ -0,0 +1,224 @@
+package com.talky.backend.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.talky.backend.config.IdempotencyProperties;
+import com.talky.backend.service.idempotency.IdempotencyStore;
+import com.talky.backend.service.idempotency.IdempotencyStore.Entry;
+import com.talky.backend.service.idempotency.IdempotencyStore.Key;
+import com.talky.backend.service.idempotency.IdempotencyStore.StoredResponse;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Soporte para la cabecera {@code Idempotency-Key} en los envíos de mensajes.
+ * <p>
+ * La primera petición con una clave ejecuta la acción; las repeticiones concurrentes esperan
+ * a que termine y las posteriores reciben el resultado guardado (con la cabecera
+ * {@value #REPLAYED_HEADER}) sin volver a llamar a N8N, guardar el mensaje ni consumir rate limit.
+ * <p>
+ * Se recuerdan las respuestas y los errores HTTP ({@link ResponseStatusException}), también los 5xx:
+ * tras un 504 el mensaje del usuario ya está guardado y un reintento no debe duplicarlo.
+ * Solo se libera la clave para reintentar con un 429 (no se ejecutó nada) o con un error inesperado.
+ * <p>
+ * Las claves se guardan durante {@code talky.idempotency.ttl} en el {@link IdempotencyStore}
+ * configurado ({@code talky.idempotency.store}): memory (por instancia) o postgres (compartido).
+ */
+@Service
+@EnableConfigurationProperties(IdempotencyProperties.class)
+public class IdempotencyService {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    // Cada cuánto se vuelve a mirar una clave en curso en otra instancia
+    private static final long POLL_INTERVAL_MS = 200;
+
+    private final IdempotencyProperties properties;
+    private final IdempotencyStore store;
+    private final ObjectMapper objectMapper;
+
+    // Ejecuciones en curso en esta instancia: las repeticiones esperan a que terminen sin sondear
+    private final Map<Key, CompletableFuture<Void>> running = new ConcurrentHashMap<>();
+
+    public IdempotencyService(IdempotencyProperties properties, IdempotencyStore store, ObjectMapper objectMapper) {
+        this.properties = properties;
+        this.store = store;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Ejecuta la acción una sola vez por usuario, operación y clave.
+     *
+     * @param operation   operación protegida (p. ej. "send-message"); la misma clave puede usarse en otra
+     * @param fingerprint identifica el contenido de la petición
+     * @param bodyType    tipo del cuerpo de la respuesta, para repetirla desde el store
+     */
+    public <T> ResponseEntity<T> execute(UUID userId, String operation, String key, String fingerprint,
+                                         Class<T> bodyType, Supplier<ResponseEntity<T>> action) {
+        if (key.isBlank() || key.length() > properties.getMaxKeyLength()) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Idempotency-Key inválida");
+        }
+
+        Key storeKey = new Key(userId, operation, key);
+        long deadline = System.nanoTime() + properties.getInFlightWait().toNanos();
+        while (true) {
+            if (store.reserve(storeKey, fingerprint)) {
+                return run(storeKey, action);
+            }
+
+            Optional<Entry> entry = store.find(storeKey);
+            if (entry.isEmpty()) {
+                continue; // Se liberó o venció entre medias: se vuelve a intentar reservar
+            }
+            if (!entry.get().fingerprint().equals(fingerprint)) {
+                throw new ResponseStatusException(HttpStatus.UNPROCESSABLE_ENTITY,
+                        "La Idempotency-Key ya se usó con otra petición");
+            }
+            if (entry.get().response() != null) {
+                return replay(entry.get().response(), bodyType);
+            }
+
+            // En curso: se espera a la ejecución original y se repite su resultado
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                throw new ResponseStatusException(HttpStatus.CONFLICT,
+                        "La petición con esta Idempotency-Key sigue en curso");
+            }
+            awaitRunning(storeKey, remaining);
+        }
+    }
+
+    private <T> ResponseEntity<T> run(Key key, Supplier<ResponseEntity<T>> action) {
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        running.put(key, done);
+        try {
+            ResponseEntity<T> response;
+            try {
+                response = action.get();
+            } catch (ResponseStatusException e) {
+                // Sin motivo se guarda "" para que se siga repitiendo como error
+                remember(key, e.getStatusCode(), () -> new StoredResponse(e.getStatusCode().value(), Map.of(), null,
+                        Objects.requireNonNullElse(e.getReason(), "")));
+                throw e;
+            } catch (RuntimeException e) {
+                forget(key);
+                throw e;
+            }
+            remember(key, response.getStatusCode(), () -> new StoredResponse(response.getStatusCode().value(),
+                    new LinkedHashMap<>(response.getHeaders()), writeBody(response.getBody()), null));
+            return response;
+        } finally {
+            running.remove(key, done);
+            done.complete(null);
+        }
+    }
+
+    /**
+     * Guarda el resultado de la clave. Si el store falla, la petición ya se ejecutó:
+     * se devuelve igualmente su resultado y la clave se libera.
+     */
+    private void remember(Key key, HttpStatusCode status, Supplier<StoredResponse> response) {
+        if (isRetryable(status)) {
+            forget(key);
+            return;
+        }
+        try {
+            store.complete(key, response.get());
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            forget(key);
+        }
+    }
+
+    /**
+     * Libera la clave; si el store falla queda reservada hasta que venza.
+     */
+    private void forget(Key key) {
+        try {
+            store.release(key);
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Los rechazos por límite (p. ej. rate limit o buzón lleno) no ejecutaron nada: un reintento debe volver a evaluarse.
+     */
+    private static boolean isRetryable(HttpStatusCode status) {
+        return status.value() == HttpStatus.TOO_MANY_REQUESTS.value();
+    }
+
+    private <T> ResponseEntity<T> replay(StoredResponse response, Class<T> bodyType) {
+        if (response.reason() != null) {
+            throw new ResponseStatusException(HttpStatusCode.valueOf(response.status()), response.reason());
+        }
+        HttpHeaders headers = new HttpHeaders();
+        response.headers().forEach(headers::addAll);
+        return ResponseEntity.status(response.status())
+                .headers(headers)
+                .header(REPLAYED_HEADER, "true")
+                .body(readBody(response.body(), bodyType));
+    }
+
+    /**
+     * Espera a la ejecución local de la clave o, si está en otra instancia, un intervalo de sondeo.
+     */
+    private void awaitRunning(Key key, long remainingNanos) {
+        CompletableFuture<Void> local = running.get(key);
+        long waitNanos = local != null
+                ? remainingNanos
+                : Math.min(remainingNanos, TimeUnit.MILLISECONDS.toNanos(POLL_INTERVAL_MS));
+        try {
+            if (local != null) {
+                local.get(waitNanos, TimeUnit.NANOSECONDS);
+            } else {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            }
+        } catch (TimeoutException | ExecutionException ignored) {
+            // Se vuelve a mirar el store
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ResponseStatusException(HttpStatus.SERVICE_UNAVAILABLE, "Petición interrumpida");
+        }
+    }
+
+    private String writeBody(Object body) {
+        if (body == null) {
+            return null;
+        }
+        try {
+            return objectMapper.writeValueAsString(body);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("No se pudo guardar la respuesta idempotente", e);
+        }
+    }
+
+    private <T> T readBody(String body, Class<T> bodyType) {
+        if (body == null) {
+            return null;
+        }
+        try {
+            return objectMapper.readValue(body, bodyType);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Respuesta idempotente ilegible", e);
+        }
+    }
+}
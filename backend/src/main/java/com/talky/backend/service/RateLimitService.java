@@ -0,0 +1,131 @@
+package com.talky.backend.service;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.talky.backend.config.RateLimitProperties;
+import com.talky.backend.model.User;
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
+import io.github.bucket4j.BucketConfiguration;
+import io.github.bucket4j.distributed.proxy.ProxyManager;
+import io.github.bucket4j.distributed.proxy.optimization.DelayParameters;
+import io.github.bucket4j.distributed.proxy.optimization.Optimizations;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Service;
+
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Rate limiting de mensajes a la IA según el rol del usuario.
+ * <p>
+ * Con {@code talky.rate-limit.store=postgres} el estado de cada bucket vive en la base de datos
+ * y se comparte entre instancias; cada instancia mantiene un proxy local que acumula consumos
+ * y los sincroniza por lotes. Con {@code memory} cada instancia tiene sus propios buckets.
+ * <p>
+ * Los buckets locales se guardan en una caché acotada por tamaño y por tiempo sin uso.
+ * Expone {@code cache.size} / {@code cache.evictions} (cache=rateLimitBuckets) y
+ * {@code talky.rate-limit.buckets.memory} (estimación en bytes).
+ */
+@Service
+public class RateLimitService {
+
+    // Estimación del tamaño en memoria de un bucket local con una sola banda (objeto + estado + entrada de caché)
+    private static final long ESTIMATED_BYTES_PER_BUCKET = 400;
+
+    private final RateLimitProperties properties;
+    private final ProxyManager<String> proxyManager;
+
+    // Buckets (o proxies del bucket compartido) por usuario
+    private final Cache<UUID, RoleBucket> buckets;
+
+    public RateLimitService(RateLimitProperties properties,
+                            Optional<ProxyManager<String>> proxyManager,
+                            Optional<MeterRegistry> meterRegistry) {
+        this.properties = properties;
+        this.proxyManager = proxyManager.orElse(null);
+        this.buckets = Caffeine.newBuilder()
+                .maximumSize(properties.getCache().getMaximumSize())
+                .expireAfterAccess(properties.getCache().getExpireAfterAccess())
+                .recordStats()
+                .build();
+
+        meterRegistry.ifPresent(registry -> {
+            CaffeineCacheMetrics.monitor(registry, buckets, "rateLimitBuckets");
+            Gauge.builder("talky.rate-limit.buckets.memory", buckets, c -> c.estimatedSize() * ESTIMATED_BYTES_PER_BUCKET)
+                    .description("Memoria estimada de los buckets de rate limiting en caché")
+                    .baseUnit("bytes")
+                    .register(registry);
+        });
+    }
+
+    /**
+     * Consume un mensaje del límite del usuario.
+     *
+     * @return false si el usuario excedió su límite
+     */
+    public boolean tryConsume(User user) {
+        return getBucketForUser(user).tryConsume(1);
+    }
+
+    /**
+     * Descarta el bucket local del usuario (p. ej. tras un cambio de rol),
+     * para que el siguiente mensaje use el límite de su rol actual.
+     */
+    public void invalidate(UUID userId) {
+        buckets.invalidate(userId);
+    }
+
+    /**
+     * Número de buckets en memoria.
+     */
+    public long getCachedBucketCount() {
+        return buckets.estimatedSize();
+    }
+
+    /**
+     * Obtiene el bucket del usuario. Si el rol cambió desde que se creó, se reemplaza
+     * por uno nuevo con el límite del rol actual.
+     */
+    private Bucket getBucketForUser(User user) {
+        RoleBucket cached = buckets.get(user.getId(), id -> createBucket(user));
+        if (cached.role() != user.getRole()) {
+            cached = createBucket(user);
+            buckets.put(user.getId(), cached);
+        }
+        return cached.bucket();
+    }
+
+    private RoleBucket createBucket(User user) {
+        BucketConfiguration configuration = configurationFor(user.getRole());
+
+        if (proxyManager == null) {
+            return new RoleBucket(user.getRole(), Bucket.builder()
+                    .addLimit(configuration.getBandwidths()[0])
+                    .build());
+        }
+
+        // En el store compartido la clave incluye el rol: un cambio de rol usa un bucket nuevo
+        String key = user.getId() + ":" + user.getRole();
+        RateLimitProperties.Sync sync = properties.getSync();
+        return new RoleBucket(user.getRole(), proxyManager.builder()
+                .withOptimization(Optimizations.delaying(
+                        new DelayParameters(sync.getMaxUnsyncedTokens(), sync.getMaxUnsyncedTimeout())))
+                .build(key, () -> configuration));
+    }
+
+    private BucketConfiguration configurationFor(User.Role role) {
+        long limit = properties.getLimitFor(role);
+        return BucketConfiguration.builder()
+                .addLimit(Bandwidth.builder()
+                        .capacity(limit)
+                        .refillGreedy(limit, properties.getPeriod())
+                        .build())
+                .build();
+    }
+
+    private record RoleBucket(User.Role role, Bucket bucket) {
+    }
+}
@@ -18,10 +18,14 @@ public class UserService {
 
     private final UserRepository userRepository;
     private final CourseRepository courseRepository;
+    private final RateLimitService rateLimitService;
 
-    public UserService(UserRepository userRepository, CourseRepository courseRepository) {
+    public UserService(UserRepository userRepository,
+                       CourseRepository courseRepository,
+                       RateLimitService rateLimitService) {
         this.userRepository = userRepository;
         this.courseRepository = courseRepository;
+        this.rateLimitService = rateLimitService;
     }
 
     /**
@@ -126,7 +130,11 @@ public class UserService {
         }
         
         user.setRole(newRole);
-        return userRepository.save(user);
+        User saved = userRepository.save(user);
+
+        // El límite de mensajes depende del rol: descartar el bucket anterior
+        rateLimitService.invalidate(id);
+        return saved;
     }
 
     /**
@@ -0,0 +1,224 @@
+package com.talky.backend.service.chat;
+
+import com.talky.backend.config.ChatProperties;
+import com.talky.backend.dto.message.AiJobDto;
+import com.talky.backend.dto.message.MessageRequestDto;
+import com.talky.backend.dto.message.MessageResponseDto;
+import com.talky.backend.model.chat.*;
+import com.talky.backend.repository.chat.AiJobRepository;
+import com.talky.backend.repository.chat.MessageRepository;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Mensajes asíncronos (outbox): el mensaje del usuario y su trabajo de IA se guardan
+ * en la misma transacción y {@link AiJobWorker} los procesa después.
+ */
+@Service
+public class AiJobService {
+
+    private final AiJobRepository aiJobRepository;
+    private final MessageRepository messageRepository;
+    private final MessageService messageService;
+    private final ChatProperties.Jobs properties;
+    private final ApplicationEventPublisher eventPublisher;
+
+    // Respuesta que recibe el usuario cuando su trabajo agota los intentos
+    static final String AI_JOB_FAILED_RESPONSE =
+            "No se pudo obtener respuesta de la IA tras varios intentos. Vuelve a enviar tu mensaje.";
+
+    /**
+     * Se publica al enviar un trabajo; el worker lo atiende tras el commit.
+     */
+    public record AiJobSubmittedEvent(UUID jobId) {
+    }
+
+    public AiJobService(AiJobRepository aiJobRepository,
+                        MessageRepository messageRepository,
+                        MessageService messageService,
+                        ChatProperties chatProperties,
+                        ApplicationEventPublisher eventPublisher) {
+        this.aiJobRepository = aiJobRepository;
+        this.messageRepository = messageRepository;
+        this.messageService = messageService;
+        this.properties = chatProperties.getJobs();
+        this.eventPublisher = eventPublisher;
+    }
+
+    /**
+     * Guarda el mensaje del usuario y su trabajo de IA pendiente en una sola transacción.
+     */
+    @Transactional
+    public AiJobDto submit(MessageRequestDto request) {
+        Conversation conversation = messageService.resolveConversation(request);
+        Message userMessage = messageService.saveMessage(conversation, MessageType.USER, request.getPrompt());
+
+        AiJob job = aiJobRepository.save(AiJob.builder()
+                .conversation(conversation)
+                .userMessageId(userMessage.getId())
+                .studentEmail(request.getStudentEmail())
+                .prompt(request.getPrompt())
+                .build());
+
+        eventPublisher.publishEvent(new AiJobSubmittedEvent(job.getId()));
+        return toDto(job, null);
+    }
+
+    /**
+     * Estado de un trabajo, solo si pertenece al usuario.
+     */
+    @Transactional(readOnly = true)
+    public Optional<AiJobDto> getJob(UUID jobId, String cognitoSub) {
+        return aiJobRepository.findByIdAndConversationUserCognitoSub(jobId, cognitoSub)
+                .map(job -> toDto(job, job.getAiMessageId() == null
+                        ? null
+                        : messageRepository.findById(job.getAiMessageId()).orElse(null)));
+    }
+
+    /**
+     * Reserva hasta {@code limit} trabajos para esta instancia, como mucho uno por conversación.
+     * Los que ya agotaron sus intentos (su último worker cayó) se cierran como FAILED y no se devuelven.
+     */
+    @Transactional
+    public List<AiJob> claim(int limit) {
+        Instant lockedUntil = Instant.now().plus(properties.getLease());
+        List<AiJob> claimed = new ArrayList<>();
+
+        for (AiJob job : aiJobRepository.findClaimable(limit)) {
+            if (job.getAttempts() >= properties.getMaxAttempts()) {
+                fail(job, "Se superó el máximo de intentos");
+                continue;
+            }
+            job.setStatus(AiJobStatus.PROCESSING);
+            job.setAttempts(job.getAttempts() + 1);
+            job.setLockedUntil(lockedUntil);
+            claimed.add(job);
+        }
+        return claimed;
+    }
+
+    /**
+     * Devuelve un trabajo a la cola sin consumir intento (p. ej. la conversación estaba ocupada).
+     * No hace nada si la reserva {@code attempt} ya no es la vigente.
+     */
+    @Transactional
+    public void release(UUID jobId, int attempt) {
+        findReserved(jobId, attempt).ifPresent(job -> {
+            job.setStatus(AiJobStatus.PENDING);
+            job.setAttempts(Math.max(0, job.getAttempts() - 1));
+            job.setLockedUntil(null);
+        });
+    }
+
+    /**
+     * Devuelve un trabajo a la cola tras un error; el intento queda consumido y no se vuelve a
+     * reservar hasta pasada la espera ({@code retry-backoff}, duplicada en cada intento).
+     * Si era el último intento el trabajo se cierra como FAILED con una respuesta que avisa al usuario.
+     * No hace nada si la reserva {@code attempt} ya no es la vigente.
+     *
+     * @return la respuesta de aviso, si el trabajo se cerró como FAILED
+     */
+    @Transactional
+    public Optional<Message> retry(UUID jobId, int attempt, String error) {
+        return findReserved(jobId, attempt).flatMap(job -> {
+            if (job.getAttempts() >= properties.getMaxAttempts()) {
+                return Optional.of(fail(job, error));
+            }
+            job.setStatus(AiJobStatus.PENDING);
+            job.setLockedUntil(null);
+            job.setNextAttemptAt(Instant.now().plus(backoff(job.getAttempts())));
+            job.setError(error);
+            return Optional.empty();
+        });
+    }
+
+    /**
+     * Espera antes del siguiente intento: {@code retry-backoff * 2^(attempts - 1)}, hasta {@code max-retry-backoff}.
+     */
+    Duration backoff(int attempts) {
+        Duration max = properties.getMaxRetryBackoff();
+        Duration delay = properties.getRetryBackoff();
+        for (int i = 1; i < attempts && delay.compareTo(max) < 0; i++) {
+            delay = delay.multipliedBy(2);
+        }
+        return delay.compareTo(max) < 0 ? delay : max;
+    }
+
+    /**
+     * Cierra el trabajo como FAILED y guarda como respuesta un aviso para el usuario,
+     * para que su mensaje no quede sin contestar.
+     */
+    private Message fail(AiJob job, String error) {
+        Message notice = messageService.saveMessage(job.getConversation(), MessageType.AI, AI_JOB_FAILED_RESPONSE);
+        job.setStatus(AiJobStatus.FAILED);
+        job.setLockedUntil(null);
+        job.setNextAttemptAt(null);
+        job.setAiMessageId(notice.getId());
+        job.setError(error);
+        return notice;
+    }
+
+    /**
+     * Trabajo (con la fila bloqueada) si sigue en curso con la reserva {@code attempt}.
+     */
+    private Optional<AiJob> findReserved(UUID jobId, int attempt) {
+        return aiJobRepository.findForUpdate(jobId)
+                .filter(job -> job.getStatus() == AiJobStatus.PROCESSING && job.getAttempts() == attempt);
+    }
+
+    /**
+     * Guarda la respuesta de la IA y cierra el trabajo en la misma transacción,
+     * así un reinicio no puede duplicar la respuesta.
+     * <p>
+     * {@code attempt} es el número de intento de la reserva del worker: si el trabajo ya no está
+     * en curso con ese intento (la reserva venció y otro worker lo retomó) no se guarda nada.
+     *
+     * @throws JobLeaseLostException si el worker ya no tiene la reserva
+     */
+    @Transactional
+    public Message complete(UUID jobId, int attempt, Conversation conversation, String answer) {
+        AiJob job = findReserved(jobId, attempt).orElseThrow(() -> new JobLeaseLostException(jobId));
+        Message aiMessage = messageService.saveMessage(conversation, MessageType.AI, answer);
+        job.setStatus(AiJobStatus.DONE);
+        job.setAiMessageId(aiMessage.getId());
+        job.setLockedUntil(null);
+        job.setError(null);
+        return aiMessage;
+    }
+
+    /**
+     * La reserva del trabajo venció y otro worker lo retomó: quien lo tenía no debe escribir.
+     */
+    public static class JobLeaseLostException extends IllegalStateException {
+
+        public JobLeaseLostException(UUID jobId) {
+            super("El trabajo " + jobId + " ya no está reservado por este worker");
+        }
+    }
+
+    private AiJobDto toDto(AiJob job, Message aiMessage) {
+        UUID conversationId = job.getConversation().getId();
+        return AiJobDto.builder()
+                .jobId(job.getId().toString())
+                .conversationId(conversationId.toString())
+                .status(job.getStatus().name())
+                .createdAt(job.getCreatedAt())
+                .error(job.getStatus() == AiJobStatus.FAILED ? job.getError() : null)
+                .response(aiMessage == null ? null : MessageResponseDto.builder()
+                        .type(aiMessage.getType().name())
+                        .content(aiMessage.getContent())
+                        .conversationId(conversationId.toString())
+                        .timestamp(aiMessage.getCreatedAt())
+                        .cursor(aiMessage.getCreatedAt() + "," + aiMessage.getId())
+                        .build())
+                .build();
+    }
+}
@@ -0,0 +1,213 @@
+package com.talky.backend.service.chat;
+
+import com.talky.backend.config.ChatProperties;
+import com.talky.backend.dto.message.MessageRequestDto;
+import com.talky.backend.model.chat.AiJob;
+import com.talky.backend.model.chat.Conversation;
+import com.talky.backend.model.chat.Message;
+import com.talky.backend.repository.chat.ConversationRepository;
+import com.talky.backend.service.chat.lock.ConversationLockManager;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.util.UUID;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Procesa los trabajos de IA asíncronos guardados por {@link AiJobService}.
+ * <p>
+ * Un hilo reserva trabajos en la base de datos (al recibir el aviso de uno nuevo y cada
+ * {@code talky.chat.jobs.poll-interval}) y los reparte entre un pool acotado de workers.
+ * Cada reserva trae como mucho un trabajo por conversación (el más antiguo), así que los
+ * de una misma conversación se procesan en orden, de uno en uno, y cada uno con su propio lease.
+ */
+@Slf4j
+@Component
+public class AiJobWorker {
+
+    private final AiJobService aiJobService;
+    private final MessageService messageService;
+    private final ConversationRepository conversationRepository;
+    private final ConversationLockManager conversationLockManager;
+    private final ChatEventPublisher chatEventPublisher;
+    private final ChatProperties.Jobs properties;
+
+    // Trabajos en curso en esta instancia
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    private final ThreadPoolExecutor executor;
+    private final ScheduledExecutorService poller;
+
+    public AiJobWorker(AiJobService aiJobService,
+                       MessageService messageService,
+                       ConversationRepository conversationRepository,
+                       ConversationLockManager conversationLockManager,
+                       ChatEventPublisher chatEventPublisher,
+                       ChatProperties chatProperties,
+                       Environment environment) {
+        this.aiJobService = aiJobService;
+        this.messageService = messageService;
+        this.conversationRepository = conversationRepository;
+        this.conversationLockManager = conversationLockManager;
+        this.chatEventPublisher = chatEventPublisher;
+        this.properties = chatProperties.getJobs();
+
+        // Igual que los resúmenes: hilos virtuales si están activos, concurrencia acotada por workerThreads
+        AtomicInteger threadCount = new AtomicInteger();
+        boolean virtual = Threading.VIRTUAL.isActive(environment);
+        this.executor = new ThreadPoolExecutor(
+                properties.getWorkerThreads(),
+                properties.getWorkerThreads(),
+                0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(),
+                runnable -> {
+                    String name = "ai-job-worker-" + threadCount.incrementAndGet();
+                    return virtual
+                            ? Thread.ofVirtual().name(name).unstarted(runnable)
+                            : Thread.ofPlatform().name(name).daemon(true).unstarted(runnable);
+                });
+        this.poller = Executors.newSingleThreadScheduledExecutor(
+                runnable -> Thread.ofPlatform().name("ai-job-poller").daemon(true).unstarted(runnable));
+    }
+
+    /**
+     * Empieza a sondear cuando la aplicación está lista; así también se retoman
+     * los trabajos que quedaron pendientes antes de un reinicio.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        long interval = properties.getPollInterval().toMillis();
+        poller.scheduleWithFixedDelay(this::drain, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Un trabajo nuevo se atiende en cuanto su transacción hace commit, sin esperar al sondeo.
+     */
+    @TransactionalEventListener
+    public void onSubmitted(AiJobService.AiJobSubmittedEvent event) {
+        requestDrain();
+    }
+
+    private void requestDrain() {
+        try {
+            poller.execute(this::drain);
+        } catch (RejectedExecutionException e) {
+            // Apagando: los trabajos pendientes se retoman en el próximo arranque
+        }
+    }
+
+    /**
+     * Reserva tantos trabajos como workers libres haya y los reparte entre ellos.
+     * Solo se ejecuta en el hilo del poller.
+     */
+    private void drain() {
+        try {
+            int free = properties.getWorkerThreads() - inFlight.get();
+            if (free <= 0) {
+                return;
+            }
+
+            for (AiJob job : aiJobService.claim(free)) {
+                inFlight.incrementAndGet();
+                executor.execute(() -> {
+                    boolean completed = false;
+                    try {
+                        completed = process(job);
+                    } finally {
+                        inFlight.decrementAndGet();
+                    }
+                    if (completed) {
+                        // El siguiente trabajo de la conversación (si hay) ya se puede reservar
+                        requestDrain();
+                    }
+                });
+            }
+        } catch (Exception e) {
+            // Un fallo de base de datos no debe parar el sondeo
+            log.error("Error reservando trabajos de IA", e);
+        }
+    }
+
+    /**
+     * @return true si el trabajo terminó con su respuesta guardada
+     */
+    private boolean process(AiJob job) {
+        UUID conversationId = job.getConversation().getId();
+        int attempt = job.getAttempts();
+
+        // Misma exclusión que los mensajes síncronos: si la conversación está ocupada, se reintenta luego
+        boolean locked;
+        try {
+            locked = conversationLockManager.tryLock(conversationId);
+        } catch (RuntimeException e) {
+            log.error("No se pudo bloquear la conversación {} para el trabajo {}", conversationId, job.getId(), e);
+            locked = false;
+        }
+        if (!locked) {
+            aiJobService.release(job.getId(), attempt);
+            return false;
+        }
+        chatEventPublisher.publishLock(conversationId, true);
+
+        try {
+            Conversation conversation = conversationRepository.findWithUserById(conversationId).orElse(null);
+            if (conversation == null) {
+                return false; // Conversación borrada: sus trabajos se eliminaron en cascada
+            }
+            MessageRequestDto request = new MessageRequestDto(
+                    job.getStudentEmail(), job.getPrompt(), conversationId.toString());
+
+            // Si N8N no está disponible o falla, lanza: el trabajo se reintenta en lugar de guardar el error
+            String respuesta = messageService.answerFromCacheOrN8nOrThrow(conversation, request);
+            conversationLockManager.checkHeld(conversationId);
+            Message aiMessage = aiJobService.complete(job.getId(), attempt, conversation, respuesta);
+
+            chatEventPublisher.publishMessage(conversationId, aiMessage);
+            messageService.applySummaryIfNeeded(conversation);
+            return true;
+        } catch (AiJobService.JobLeaseLostException e) {
+            // Otro worker retomó el trabajo: él guardará la respuesta
+            return false;
+        } catch (Exception e) {
+            if (MessageService.isUnavailable(e)) {
+                // N8N caído o saturado: se reintenta más tarde, la traza no aporta nada
+                log.warn("Trabajo de IA {} (intento {}) sin respuesta de N8N: {}", job.getId(), attempt, e.getMessage());
+            } else {
+                log.error("Trabajo de IA {} (intento {}) falló", job.getId(), attempt, e);
+            }
+            // Sin más intentos, el usuario recibe un aviso en lugar de quedarse sin respuesta
+            aiJobService.retry(job.getId(), attempt, e.getMessage())
+                    .ifPresent(notice -> chatEventPublisher.publishMessage(conversationId, notice));
+            return false;
+        } finally {
+            conversationLockManager.unlock(conversationId);
+            chatEventPublisher.publishLock(conversationId, false);
+        }
+    }
+
+    /**
+     * Trabajos en curso en esta instancia.
+     */
+    public int getInFlightCount() {
+        return inFlight.get();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        poller.shutdownNow();
+        // Los trabajos interrumpidos quedan reservados hasta que venza su lease y otro worker los retoma
+        executor.shutdown();
+    }
+}
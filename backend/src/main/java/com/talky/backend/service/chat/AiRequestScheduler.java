@@ -0,0 +1,366 @@
+package com.talky.backend.service.chat;
+
+import com.talky.backend.config.AiSchedulerProperties;
+import com.talky.backend.config.AiSchedulerProperties.Priority;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Planificador de las llamadas salientes a N8N.
+ * <p>
+ * Limita las llamadas simultáneas ({@code max-concurrent}) y reparte los huecos libres:
+ * <ul>
+ *   <li>entre clases de prioridad (profesor, estudiante, resúmenes) por round robin ponderado,
+ *       así el chat de profesores pasa antes sin dejar a los resúmenes sin servicio;</li>
+ *   <li>dentro de cada clase, por turnos entre usuarios (cola FIFO por usuario) y con un máximo
+ *       de llamadas simultáneas por usuario.</li>
+ * </ul>
+ * Expone {@code talky.ai.scheduler.queue-time}, {@code talky.ai.scheduler.queued} y
+ * {@code talky.ai.scheduler.rejected} por prioridad, y {@code talky.ai.scheduler.in-flight}.
+ */
+@Component
+@EnableConfigurationProperties(AiSchedulerProperties.class)
+public class AiRequestScheduler {
+
+    private final AiSchedulerProperties properties;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Map<Priority, PriorityQueue> queues = new EnumMap<>(Priority.class);
+    private final Map<String, Integer> inFlightByUser = new HashMap<>();
+    private int inFlight;
+    private int queued;
+
+    private final Map<Priority, Timer> queueTimers = new EnumMap<>(Priority.class);
+    private final Map<Priority, Counter> rejections = new EnumMap<>(Priority.class);
+
+    /**
+     * La cola o la espera están llenas: la llamada no se hace.
+     */
+    public static class RejectedException extends RuntimeException {
+        public RejectedException(String message) {
+            super(message);
+        }
+    }
+
+    /**
+     * Hueco concedido; se libera al cerrarlo (una sola vez).
+     */
+    public final class Permit implements AutoCloseable {
+
+        private final String userKey;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private Permit(String userKey) {
+            this.userKey = userKey;
+        }
+
+        @Override
+        public void close() {
+            // Sin usuario: permiso ficticio del planificador desactivado
+            if (userKey != null && released.compareAndSet(false, true)) {
+                release(userKey);
+            }
+        }
+    }
+
+    private final class Waiter {
+        final Priority priority;
+        final String userKey;
+        final long enqueuedAt = System.nanoTime();
+        final CompletableFuture<Permit> granted = new CompletableFuture<>();
+
+        Waiter(Priority priority, String userKey) {
+            this.priority = priority;
+            this.userKey = userKey;
+        }
+    }
+
+    /**
+     * Esperas de una clase: una cola FIFO por usuario, atendidas por turnos.
+     * El orden de inserción del mapa es el turno; el usuario atendido pasa al final.
+     */
+    private static final class PriorityQueue {
+        final LinkedHashMap<String, ArrayDeque<Waiter>> byUser = new LinkedHashMap<>();
+        int size;
+        // Crédito del round robin ponderado suave
+        int credit;
+    }
+
+    public AiRequestScheduler(AiSchedulerProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        for (Priority priority : Priority.values()) {
+            PriorityQueue queue = new PriorityQueue();
+            queues.put(priority, queue);
+            String tag = priority.name();
+            queueTimers.put(priority, Timer.builder("talky.ai.scheduler.queue-time")
+                    .description("Tiempo de espera de las llamadas a N8N antes de ejecutarse")
+                    .tag("priority", tag)
+                    .publishPercentiles(0.5, 0.99)
+                    .register(meterRegistry));
+            rejections.put(priority, Counter.builder("talky.ai.scheduler.rejected")
+                    .tag("priority", tag)
+                    .register(meterRegistry));
+            Gauge.builder("talky.ai.scheduler.queued", queue, q -> q.size)
+                    .tag("priority", tag)
+                    .register(meterRegistry);
+        }
+        Gauge.builder("talky.ai.scheduler.in-flight", this, s -> s.inFlight)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Ejecuta una llamada bloqueante cuando el planificador le da hueco.
+     *
+     * @throws RejectedException si la cola está llena o se supera la espera máxima
+     */
+    public <T> T execute(Priority priority, String userKey, Supplier<T> call) {
+        return execute(priority, userKey, properties.getMaxWait(), call);
+    }
+
+    /**
+     * Igual que {@link #execute(Priority, String, Supplier)} con una espera máxima propia
+     * (por ejemplo, lo que queda del plazo del request).
+     */
+    public <T> T execute(Priority priority, String userKey, Duration maxWait, Supplier<T> call) {
+        try (Permit ignored = acquire(priority, userKey, maxWait)) {
+            return call.get();
+        }
+    }
+
+    /**
+     * Variante reactiva: se suscribe a {@code source} cuando hay hueco y lo libera al terminar,
+     * fallar o cancelarse (incluida la cancelación mientras espera en cola).
+     */
+    public <T> Flux<T> schedule(Priority priority, String userKey, Flux<T> source) {
+        if (!properties.isEnabled()) {
+            return source;
+        }
+        return Flux.defer(() -> {
+            Waiter waiter = enqueue(priority, userKey);
+            Mono<Permit> permit = Mono.fromFuture(waiter.granted, true)
+                    .timeout(properties.getMaxWait())
+                    .onErrorMap(TimeoutException.class, e -> reject(waiter))
+                    .doOnCancel(() -> abandon(waiter));
+            return Flux.usingWhen(permit, p -> source, p -> Mono.fromRunnable(p::close));
+        });
+    }
+
+    /**
+     * Espera (bloqueando) un hueco. El permiso debe cerrarse al terminar la llamada.
+     */
+    public Permit acquire(Priority priority, String userKey) {
+        return acquire(priority, userKey, properties.getMaxWait());
+    }
+
+    private Permit acquire(Priority priority, String userKey, Duration maxWait) {
+        if (!properties.isEnabled()) {
+            return new Permit(null);
+        }
+        Waiter waiter = enqueue(priority, userKey);
+        try {
+            return waiter.granted.get(maxWait.toMillis(), TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw reject(waiter);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            abandon(waiter);
+            throw new RejectedException("Llamada a la IA interrumpida");
+        } catch (ExecutionException e) {
+            throw (RuntimeException) e.getCause();
+        }
+    }
+
+    private Waiter enqueue(Priority priority, String userKey) {
+        Waiter waiter = new Waiter(priority, userKey);
+        List<Waiter> granted;
+        lock.lock();
+        try {
+            if (queued >= properties.getMaxQueued()) {
+                rejections.get(priority).increment();
+                throw new RejectedException("Servicio de IA saturado, inténtalo de nuevo en unos segundos");
+            }
+            PriorityQueue queue = queues.get(priority);
+            queue.byUser.computeIfAbsent(userKey, k -> new ArrayDeque<>()).addLast(waiter);
+            queue.size++;
+            queued++;
+            granted = dispatch();
+        } finally {
+            lock.unlock();
+        }
+        grant(granted);
+        return waiter;
+    }
+
+    /**
+     * Rechaza una espera vencida (si justo se le concedió hueco, se devuelve).
+     */
+    private RejectedException reject(Waiter waiter) {
+        abandon(waiter);
+        rejections.get(waiter.priority).increment();
+        return new RejectedException("Tiempo de espera agotado para el servicio de IA");
+    }
+
+    /**
+     * Saca una espera de la cola, o libera su hueco si ya se le había concedido.
+     */
+    private void abandon(Waiter waiter) {
+        lock.lock();
+        try {
+            if (!waiter.granted.isDone() || waiter.granted.isCancelled()) {
+                PriorityQueue queue = queues.get(waiter.priority);
+                ArrayDeque<Waiter> userQueue = queue.byUser.get(waiter.userKey);
+                if (userQueue != null && userQueue.remove(waiter)) {
+                    queue.size--;
+                    queued--;
+                    if (userQueue.isEmpty()) {
+                        queue.byUser.remove(waiter.userKey);
+                    }
+                }
+                waiter.granted.cancel(false);
+                return;
+            }
+        } finally {
+            lock.unlock();
+        }
+        waiter.granted.join().close();
+    }
+
+    private void release(String userKey) {
+        List<Waiter> granted;
+        lock.lock();
+        try {
+            inFlight--;
+            inFlightByUser.computeIfPresent(userKey, (k, n) -> n > 1 ? n - 1 : null);
+            granted = dispatch();
+        } finally {
+            lock.unlock();
+        }
+        grant(granted);
+    }
+
+    /**
+     * Reserva los huecos libres para las esperas elegibles. Debe llamarse con el lock tomado;
+     * los permisos se entregan después con {@link #grant(List)}, fuera del lock.
+     */
+    private List<Waiter> dispatch() {
+        List<Waiter> granted = new ArrayList<>();
+        while (inFlight < properties.getMaxConcurrent()) {
+            Waiter next = pollNext();
+            if (next == null) {
+                break;
+            }
+            inFlight++;
+            inFlightByUser.merge(next.userKey, 1, Integer::sum);
+            queueTimers.get(next.priority).record(Duration.ofNanos(System.nanoTime() - next.enqueuedAt));
+            granted.add(next);
+        }
+        return granted;
+    }
+
+    /**
+     * Entrega los permisos reservados. Se hace fuera del lock porque completar el future
+     * ejecuta en este hilo la suscripción a N8N de las llamadas reactivas.
+     */
+    private void grant(List<Waiter> granted) {
+        for (Waiter waiter : granted) {
+            if (!waiter.granted.complete(new Permit(waiter.userKey))) {
+                // Se abandonó justo antes de recibirlo: el hueco vuelve al planificador
+                release(waiter.userKey);
+            }
+        }
+    }
+
+    /**
+     * Round robin ponderado suave entre clases con esperas elegibles y, dentro de la clase,
+     * turno entre usuarios que no han llegado a su máximo de llamadas simultáneas.
+     */
+    private Waiter pollNext() {
+        Priority chosen = null;
+        int totalWeight = 0;
+        for (Priority priority : Priority.values()) {
+            PriorityQueue queue = queues.get(priority);
+            if (firstEligibleUser(queue) == null) {
+                continue;
+            }
+            int weight = properties.getWeight(priority);
+            queue.credit += weight;
+            totalWeight += weight;
+            if (chosen == null || queue.credit > queues.get(chosen).credit) {
+                chosen = priority;
+            }
+        }
+        if (chosen == null) {
+            return null;
+        }
+
+        PriorityQueue queue = queues.get(chosen);
+        queue.credit -= totalWeight;
+
+        String userKey = firstEligibleUser(queue);
+        ArrayDeque<Waiter> userQueue = queue.byUser.remove(userKey);
+        Waiter waiter = userQueue.pollFirst();
+        if (!userQueue.isEmpty()) {
+            // El usuario vuelve al final del turno
+            queue.byUser.put(userKey, userQueue);
+        }
+        queue.size--;
+        queued--;
+        return waiter;
+    }
+
+    private String firstEligibleUser(PriorityQueue queue) {
+        Iterator<String> users = queue.byUser.keySet().iterator();
+        while (users.hasNext()) {
+            String userKey = users.next();
+            if (inFlightByUser.getOrDefault(userKey, 0) < properties.getMaxPerUser()) {
+                return userKey;
+            }
+        }
+        return null;
+    }
+
+    public Duration getMaxWait() {
+        return properties.getMaxWait();
+    }
+
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getQueued() {
+        lock.lock();
+        try {
+            return queued;
+        } finally {
+            lock.unlock();
+        }
+    }
+}
@@ -0,0 +1,169 @@
+package com.talky.backend.service.chat;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.talky.backend.config.ChatProperties;
+import com.talky.backend.model.User;
+import com.talky.backend.model.chat.Conversation;
+import com.talky.backend.util.MinHash;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Caché de respuestas frecuentes por curso y modo de conversación (opcional).
+ * <p>
+ * Las preguntas se normalizan (minúsculas, sin tildes ni puntuación) y se comparan por
+ * similitud MinHash sobre shingles de caracteres, de modo que variaciones mínimas de la
+ * misma pregunta reutilizan la respuesta. Cada ámbito (curso + modo) es un LRU acotado
+ * y cada entrada caduca tras el TTL configurado.
+ * <p>
+ * Solo se consulta para prompts que viajan a N8N sin contexto de la conversación (ver
+ * {@code MessageService#isShareable}): con {@code talky.chat.prompt-context.enabled} eso es,
+ * en la práctica, el primer mensaje de cada conversación; los siguientes dependen del historial
+ * y nunca usan la caché.
+ * <p>
+ * Expone {@code talky.chat.answer-cache.requests} (result=hit|miss) y
+ * {@code talky.chat.answer-cache.hit-ratio}.
+ */
+@Component
+public class AnswerCache {
+
+    private static final long MINHASH_SEED = 42L;
+
+    private final ChatProperties.AnswerCache properties;
+    private final MinHash minHash;
+
+    // Ámbito (curso + modo) -> entradas LRU; los ámbitos sin uso se descartan
+    private final Cache<String, Scope> scopes;
+
+    private final Counter hits;
+    private final Counter misses;
+
+    public AnswerCache(ChatProperties chatProperties, MeterRegistry meterRegistry) {
+        this.properties = chatProperties.getAnswerCache();
+        this.minHash = new MinHash(properties.getNumHashes(), properties.getShingleSize(), MINHASH_SEED);
+        this.scopes = Caffeine.newBuilder()
+                .expireAfterAccess(properties.getTtl())
+                .build();
+
+        this.hits = Counter.builder("talky.chat.answer-cache.requests")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.misses = Counter.builder("talky.chat.answer-cache.requests")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        Gauge.builder("talky.chat.answer-cache.hit-ratio", this, AnswerCache::getHitRatio)
+                .description("Proporción de mensajes respondidos desde la caché de respuestas")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * Busca una respuesta para una pregunta igual o casi igual en el mismo curso y modo.
+     */
+    public Optional<String> lookup(Conversation conversation, String prompt) {
+        String scopeKey = scopeKey(conversation);
+        String normalized = MinHash.normalize(prompt);
+        if (scopeKey == null || !isCacheable(normalized)) {
+            return Optional.empty();
+        }
+
+        Scope scope = scopes.getIfPresent(scopeKey);
+        Optional<String> answer = scope != null
+                ? scope.find(normalized, minHash.signature(normalized))
+                : Optional.empty();
+
+        if (answer.isPresent()) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return answer;
+    }
+
+    /**
+     * Guarda la respuesta de la IA para una pregunta.
+     */
+    public void put(Conversation conversation, String prompt, String answer) {
+        String scopeKey = scopeKey(conversation);
+        String normalized = MinHash.normalize(prompt);
+        if (scopeKey == null || !isCacheable(normalized) || answer == null || answer.isBlank()) {
+            return;
+        }
+        scopes.get(scopeKey, k -> new Scope()).put(normalized, minHash.signature(normalized), answer);
+    }
+
+    public double getHitRatio() {
+        double total = hits.count() + misses.count();
+        return total == 0 ? 0 : hits.count() / total;
+    }
+
+    /**
+     * El ámbito es el curso del estudiante más el modo de la conversación.
+     * Sin curso no se cachea: las respuestas solo se comparten dentro de un curso.
+     */
+    private String scopeKey(Conversation conversation) {
+        User user = conversation.getUser();
+        if (user == null || user.getCourseAsStudent() == null) {
+            return null;
+        }
+        return user.getCourseAsStudent().getId() + ":" + conversation.getMode();
+    }
+
+    private boolean isCacheable(String normalizedPrompt) {
+        return !normalizedPrompt.isEmpty() && normalizedPrompt.length() <= properties.getMaxPromptLength();
+    }
+
+    /**
+     * Entradas de un ámbito: LRU acotado con caducidad por entrada.
+     * La búsqueda es lineal sobre las firmas, suficiente para el tamaño máximo por ámbito.
+     */
+    private class Scope {
+
+        private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > properties.getMaxEntriesPerScope();
+            }
+        };
+
+        synchronized Optional<String> find(String normalized, int[] signature) {
+            Instant now = Instant.now();
+            entries.values().removeIf(e -> e.expiresAt().isBefore(now));
+
+            Entry exact = entries.get(normalized);
+            if (exact != null) {
+                return Optional.of(exact.answer());
+            }
+
+            String bestKey = null;
+            double bestSimilarity = properties.getSimilarityThreshold();
+            for (Map.Entry<String, Entry> candidate : entries.entrySet()) {
+                double similarity = MinHash.similarity(signature, candidate.getValue().signature());
+                if (similarity >= bestSimilarity) {
+                    bestSimilarity = similarity;
+                    bestKey = candidate.getKey();
+                }
+            }
+            // get() para actualizar el orden LRU de la entrada encontrada
+            return bestKey != null ? Optional.of(entries.get(bestKey).answer()) : Optional.empty();
+        }
+
+        synchronized void put(String normalized, int[] signature, String answer) {
+            entries.put(normalized, new Entry(signature, answer, Instant.now().plus(properties.getTtl())));
+        }
+    }
+
+    private record Entry(int[] signature, String answer, Instant expiresAt) {
+    }
+}
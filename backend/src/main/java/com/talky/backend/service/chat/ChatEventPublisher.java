@@ -0,0 +1,64 @@
+package com.talky.backend.service.chat;
+
+import com.talky.backend.dto.message.MessageResponseDto;
+import com.talky.backend.model.chat.Message;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.UUID;
+
+/**
+ * Publica por WebSocket los eventos de una conversación en {@code /topic/conversations/{id}}.
+ * <p>
+ * Los eventos son {@link MessageResponseDto}: respuestas de la IA ({@code type=AI}),
+ * resúmenes ({@code type=SUMMARY}) y cambios del bloqueo ({@code type=LOCK},
+ * con {@code content} {@value #LOCKED} o {@value #UNLOCKED}).
+ */
+@Component
+public class ChatEventPublisher {
+
+    public static final String LOCK_TYPE = "LOCK";
+    public static final String LOCKED = "LOCKED";
+    public static final String UNLOCKED = "UNLOCKED";
+
+    private final SimpMessagingTemplate messagingTemplate;
+
+    public ChatEventPublisher(SimpMessagingTemplate messagingTemplate) {
+        this.messagingTemplate = messagingTemplate;
+    }
+
+    /**
+     * Publica un mensaje guardado (respuesta de la IA o resumen).
+     */
+    public void publishMessage(UUID conversationId, Message message) {
+        publish(conversationId, MessageResponseDto.builder()
+                .type(message.getType().name())
+                .content(message.getContent())
+                .conversationId(conversationId.toString())
+                .timestamp(message.getCreatedAt())
+                .cursor(message.getCreatedAt() + "," + message.getId())
+                .build());
+    }
+
+    /**
+     * Publica el estado del bloqueo para que el front habilite o deshabilite el envío.
+     */
+    public void publishLock(UUID conversationId, boolean locked) {
+        publish(conversationId, MessageResponseDto.builder()
+                .type(LOCK_TYPE)
+                .content(locked ? LOCKED : UNLOCKED)
+                .conversationId(conversationId.toString())
+                .timestamp(Instant.now())
+                .build());
+    }
+
+    private void publish(UUID conversationId, MessageResponseDto event) {
+        try {
+            messagingTemplate.convertAndSend("/topic/conversations/" + conversationId, event);
+        } catch (Exception e) {
+            // Un fallo al notificar no debe romper el flujo del mensaje
+            e.printStackTrace();
+        }
+    }
+}
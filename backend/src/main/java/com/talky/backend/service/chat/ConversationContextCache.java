@@ -0,0 +1,256 @@
+package com.talky.backend.service.chat;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.talky.backend.config.ChatProperties;
+import com.talky.backend.model.chat.Conversation;
+import com.talky.backend.model.chat.ConversationSummary;
+import com.talky.backend.model.chat.Message;
+import com.talky.backend.model.chat.MessageType;
+import com.talky.backend.repository.chat.ConversationSummaryRepository;
+import com.talky.backend.repository.chat.MessageRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Ventana de contexto en memoria por conversación activa: los últimos N mensajes
+ * (buffer circular) y el último resumen.
+ * <p>
+ * Se carga de Postgres la primera vez que se lee una conversación y después se mantiene
+ * por escritura directa ({@link #append}, {@link #replaceSummary}) tras cada commit, así que
+ * las lecturas del historial reciente y del contexto de las conversaciones activas no tocan
+ * la tabla de mensajes. Las conversaciones inactivas se descartan tras {@code idle-timeout}.
+ * <p>
+ * La ventana no debe superar los mensajes que conserva la compactación, ya que esta solo
+ * borra mensajes más antiguos que los de la ventana.
+ * <p>
+ * Solo es coherente con una instancia: las escrituras de otra instancia no llegan a esta
+ * ventana. Por eso no se puede activar con {@code talky.chat.lock-manager=postgres}.
+ * <p>
+ * Expone las métricas de Caffeine ({@code cache.gets{cache=conversationContext}}, ...),
+ * {@code talky.chat.context-cache.hit-ratio} y {@code talky.chat.context-cache.memory}.
+ */
+@Component
+public class ConversationContextCache {
+
+    // Sobrecoste aproximado por mensaje (registro, UUID, Instant, String)
+    private static final long ESTIMATED_BYTES_PER_MESSAGE = 160;
+
+    private final ChatProperties.ContextCache properties;
+    private final MessageRepository messageRepository;
+    private final ConversationSummaryRepository summaryRepository;
+
+    private final Cache<UUID, Window> windows;
+
+    /**
+     * Mensaje de la ventana (copia inmutable, sin relación con la sesión de Hibernate).
+     */
+    public record CachedMessage(UUID id, MessageType type, String content, Instant createdAt) {
+
+        static CachedMessage from(Message message) {
+            return new CachedMessage(message.getId(), message.getType(), message.getContent(), message.getCreatedAt());
+        }
+    }
+
+    /**
+     * Copia de la ventana en un momento dado.
+     *
+     * @param messages mensajes en orden cronológico
+     * @param summary  texto del último resumen, o null si no hay
+     * @param complete true si la ventana contiene todo el historial de la conversación
+     */
+    public record Snapshot(List<CachedMessage> messages, String summary, boolean complete) {
+    }
+
+    public ConversationContextCache(ChatProperties chatProperties,
+                                    MessageRepository messageRepository,
+                                    ConversationSummaryRepository summaryRepository,
+                                    MeterRegistry meterRegistry) {
+        this.properties = chatProperties.getContextCache();
+        if (properties.isEnabled() && "postgres".equalsIgnoreCase(chatProperties.getLockManager())) {
+            throw new IllegalStateException("talky.chat.context-cache.enabled=true no es compatible con "
+                    + "talky.chat.lock-manager=postgres: la ventana en memoria no ve los mensajes de otras instancias");
+        }
+        this.messageRepository = messageRepository;
+        this.summaryRepository = summaryRepository;
+        this.windows = Caffeine.newBuilder()
+                .expireAfterAccess(properties.getIdleTimeout())
+                .maximumSize(properties.getMaxConversations())
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, windows, "conversationContext");
+        Gauge.builder("talky.chat.context-cache.hit-ratio", windows, c -> c.stats().hitRate())
+                .description("Proporción de lecturas de contexto servidas desde memoria")
+                .register(meterRegistry);
+        Gauge.builder("talky.chat.context-cache.memory", this, ConversationContextCache::getEstimatedMemoryBytes)
+                .description("Memoria estimada de las ventanas de contexto en caché")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * Devuelve la ventana de la conversación, cargándola de Postgres si no está en memoria.
+     * Con la caché desactivada siempre lee de Postgres.
+     */
+    public Snapshot get(Conversation conversation) {
+        if (!isEnabled()) {
+            return load(conversation).snapshot();
+        }
+        return windows.get(conversation.getId(), id -> load(conversation)).snapshot();
+    }
+
+    /**
+     * Añade un mensaje recién guardado a la ventana (si la conversación está en memoria).
+     * Dentro de una transacción se aplica tras el commit.
+     */
+    public void append(UUID conversationId, Message message) {
+        if (!isEnabled()) {
+            return;
+        }
+        CachedMessage cached = CachedMessage.from(message);
+        // computeIfPresent espera a una carga en curso de la misma conversación, así el mensaje
+        // no se pierde si la carga leyó Postgres antes del commit (y si lo leyó después, se ignora)
+        afterCommit(() -> windows.asMap().computeIfPresent(conversationId, (id, window) -> {
+            window.append(cached);
+            return window;
+        }));
+    }
+
+    /**
+     * Sustituye el resumen: quita de la ventana los mensajes SUMMARY anteriores
+     * (borrados en base de datos) y guarda el nuevo texto.
+     */
+    public void replaceSummary(UUID conversationId, String summary) {
+        if (!isEnabled()) {
+            return;
+        }
+        afterCommit(() -> windows.asMap().computeIfPresent(conversationId, (id, window) -> {
+            window.replaceSummary(summary);
+            return window;
+        }));
+    }
+
+    public void invalidate(UUID conversationId) {
+        afterCommit(() -> windows.invalidate(conversationId));
+    }
+
+    public long getCachedConversationCount() {
+        return windows.estimatedSize();
+    }
+
+    public long getEstimatedMemoryBytes() {
+        return windows.asMap().values().stream()
+                .mapToLong(Window::estimatedBytes)
+                .sum();
+    }
+
+    private Window load(Conversation conversation) {
+        int capacity = properties.getWindowSize();
+        // Vienen del más reciente al más antiguo
+        List<Message> latest = messageRepository.findLatestPage(conversation.getId(), capacity);
+        String summary = summaryRepository.findTopByConversationOrderByCreatedAtDesc(conversation)
+                .map(ConversationSummary::getSummary)
+                .orElse(null);
+
+        Window window = new Window(capacity, latest.size() < capacity, summary);
+        for (int i = latest.size() - 1; i >= 0; i--) {
+            window.append(CachedMessage.from(latest.get(i)));
+        }
+        return window;
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    /**
+     * Buffer circular de los últimos mensajes de una conversación.
+     */
+    private static final class Window {
+
+        private final CachedMessage[] ring;
+        private int start;
+        private int size;
+        private boolean complete;
+        private String summary;
+
+        Window(int capacity, boolean complete, String summary) {
+            this.ring = new CachedMessage[capacity];
+            this.complete = complete;
+            this.summary = summary;
+        }
+
+        synchronized void append(CachedMessage message) {
+            for (int i = 0; i < size; i++) {
+                if (ring[(start + i) % ring.length].id().equals(message.id())) {
+                    return; // ya estaba (cargado de Postgres)
+                }
+            }
+            if (size < ring.length) {
+                ring[(start + size) % ring.length] = message;
+                size++;
+            } else {
+                // Ventana llena: se pisa el más antiguo y ya no contiene todo el historial
+                ring[start] = message;
+                start = (start + 1) % ring.length;
+                complete = false;
+            }
+        }
+
+        synchronized void replaceSummary(String newSummary) {
+            List<CachedMessage> kept = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                CachedMessage message = ring[(start + i) % ring.length];
+                if (message.type() != MessageType.SUMMARY) {
+                    kept.add(message);
+                }
+            }
+            Arrays.fill(ring, null);
+            start = 0;
+            size = 0;
+            kept.forEach(this::append);
+            summary = newSummary;
+        }
+
+        synchronized Snapshot snapshot() {
+            List<CachedMessage> messages = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) {
+                messages.add(ring[(start + i) % ring.length]);
+            }
+            return new Snapshot(Collections.unmodifiableList(messages), summary, complete);
+        }
+
+        synchronized long estimatedBytes() {
+            long bytes = summary != null ? 2L * summary.length() : 0;
+            for (int i = 0; i < size; i++) {
+                bytes += ESTIMATED_BYTES_PER_MESSAGE + 2L * ring[(start + i) % ring.length].content().length();
+            }
+            return bytes;
+        }
+    }
+}
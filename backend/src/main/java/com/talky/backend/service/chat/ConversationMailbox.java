@@ -0,0 +1,155 @@
+package com.talky.backend.service.chat;
+
+import com.talky.backend.config.ChatProperties;
+import com.talky.backend.service.chat.lock.ConversationLockManager;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Buzón serial y acotado por conversación.
+ * Cuando está activo, un mensaje que llega mientras otro está en curso espera su turno
+ * (en orden de llegada) en lugar de rechazarse. Si la cola está llena o la espera
+ * supera el máximo configurado, se responde 429.
+ * <p>
+ * Expone las métricas {@code talky.chat.mailbox.depth} (mensajes en cola o en curso)
+ * y {@code talky.chat.mailbox.wait} (tiempo de espera hasta obtener el turno).
+ */
+@Component
+@EnableConfigurationProperties(ChatProperties.class)
+public class ConversationMailbox {
+
+    // Pausa entre reintentos del bloqueo distribuido mientras se espera turno
+    private static final long LOCK_RETRY_MILLIS = 100;
+
+    private final ChatProperties.Mailbox properties;
+    private final ConversationLockManager conversationLockManager;
+    private final Timer waitTimer;
+
+    private final Map<UUID, Slot> slots = new ConcurrentHashMap<>();
+    private final AtomicInteger totalDepth = new AtomicInteger();
+
+    public ConversationMailbox(ChatProperties chatProperties,
+                               ConversationLockManager conversationLockManager,
+                               MeterRegistry meterRegistry) {
+        this.properties = chatProperties.getMailbox();
+        this.conversationLockManager = conversationLockManager;
+        this.waitTimer = Timer.builder("talky.chat.mailbox.wait")
+                .description("Tiempo de espera de un mensaje hasta obtener turno en su conversación")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        Gauge.builder("talky.chat.mailbox.depth", totalDepth, AtomicInteger::get)
+                .description("Mensajes en cola o en curso en los buzones de conversación")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * Espera el turno de la conversación y toma su bloqueo.
+     * Debe liberarse siempre con {@link #release(UUID)}.
+     */
+    public void acquire(UUID conversationId) {
+        int maxDepth = properties.getCapacity() + 1;
+        boolean[] admitted = {false};
+
+        Slot slot = slots.compute(conversationId, (id, current) -> {
+            Slot s = current != null ? current : new Slot();
+            if (s.depth < maxDepth) {
+                s.depth++;
+                admitted[0] = true;
+            }
+            return s;
+        });
+
+        if (!admitted[0]) {
+            throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS,
+                    "Hay demasiados mensajes en espera en esta conversación. Espera la respuesta de la IA.");
+        }
+        totalDepth.incrementAndGet();
+
+        long start = System.nanoTime();
+        long deadline = start + properties.getMaxWait().toNanos();
+        boolean turn = false;
+        try {
+            turn = slot.turn.tryAcquire(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            // Con el turno local, esperamos también al bloqueo distribuido (otras instancias)
+            while (turn && !conversationLockManager.tryLock(conversationId)) {
+                if (System.nanoTime() >= deadline) {
+                    slot.turn.release();
+                    turn = false;
+                    break;
+                }
+                Thread.sleep(LOCK_RETRY_MILLIS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (turn) {
+                slot.turn.release();
+                turn = false;
+            }
+        } catch (RuntimeException e) {
+            // Fallo del bloqueo distribuido (p. ej. sin conexión a PostgreSQL): se cede el turno
+            // y se sale del buzón, o la conversación quedaría bloqueada para siempre
+            if (turn) {
+                slot.turn.release();
+            }
+            leave(conversationId);
+            throw e;
+        } finally {
+            waitTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+
+        if (!turn) {
+            leave(conversationId);
+            throw new ResponseStatusException(HttpStatus.TOO_MANY_REQUESTS,
+                    "Tiempo de espera agotado: ya hay un mensaje en proceso en esta conversación.");
+        }
+    }
+
+    /**
+     * Libera el bloqueo y cede el turno al siguiente mensaje en cola.
+     */
+    public void release(UUID conversationId) {
+        conversationLockManager.unlock(conversationId);
+        Slot slot = slots.get(conversationId);
+        if (slot != null) {
+            slot.turn.release();
+        }
+        leave(conversationId);
+    }
+
+    /**
+     * Número de mensajes en cola o en curso para una conversación.
+     */
+    public int getDepth(UUID conversationId) {
+        Slot slot = slots.get(conversationId);
+        return slot != null ? slot.depth : 0;
+    }
+
+    private void leave(UUID conversationId) {
+        totalDepth.decrementAndGet();
+        // Se elimina el buzón cuando queda vacío (de forma atómica con acquire)
+        slots.computeIfPresent(conversationId, (id, s) -> --s.depth == 0 ? null : s);
+    }
+
+    private static class Slot {
+        // Semáforo justo: los mensajes obtienen turno en orden de llegada
+        private final Semaphore turn = new Semaphore(1, true);
+        // Solo se modifica dentro de compute sobre el mapa
+        private int depth;
+    }
+}
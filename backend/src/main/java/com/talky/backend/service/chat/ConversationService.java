@@ -2,6 +2,7 @@ package com.talky.backend.service.chat;
 
 import com.talky.backend.model.User;
 import com.talky.backend.model.chat.Conversation;
+import com.talky.backend.repository.UserRepository;
 import com.talky.backend.repository.chat.ConversationRepository;
 import jakarta.transaction.Transactional;
 import org.springframework.http.HttpStatus;
@@ -16,12 +17,18 @@ import java.util.UUID;
 public class ConversationService {
 
     private final ConversationRepository conversationRepository;
+    private final UserRepository userRepository;
+    private final ConversationContextCache contextCache;
 
     // Límite máximo de conversaciones permitidas por usuario.
     private static final int MAX_CONVERSATIONS = 4;
 
-    public ConversationService(ConversationRepository conversationRepository) {
+    public ConversationService(ConversationRepository conversationRepository,
+                               UserRepository userRepository,
+                               ConversationContextCache contextCache) {
         this.conversationRepository = conversationRepository;
+        this.userRepository = userRepository;
+        this.contextCache = contextCache;
     }
 
     /**
@@ -37,9 +44,8 @@ public class ConversationService {
             );
         }
 
-        long conversationCount = conversationRepository.countByEmail(user.getEmail());
-
-        if (conversationCount >= MAX_CONVERSATIONS) {
+        // Comprueba el límite y reserva la conversación en una sola sentencia sobre el contador del usuario
+        if (userRepository.tryIncrementConversationCount(user.getId(), MAX_CONVERSATIONS) == 0) {
             throw new ResponseStatusException(
                     HttpStatus.FORBIDDEN,
                     "Has alcanzado el límite de conversaciones permitidas"
@@ -113,6 +119,20 @@ public class ConversationService {
         return conversationRepository.findById(id);
     }
 
+    /**
+     * Comprueba que la conversación pertenece al usuario (sub de Cognito) antes de leerla o escribir en ella.
+     *
+     * @throws ResponseStatusException 403 si no existe o es de otro usuario
+     */
+    public void checkOwner(UUID id, String cognitoSub) {
+        if (cognitoSub == null || !conversationRepository.existsByIdAndUserCognitoSub(id, cognitoSub)) {
+            throw new ResponseStatusException(
+                    HttpStatus.FORBIDDEN,
+                    "No tienes acceso a esta conversación"
+            );
+        }
+    }
+
     /**
      * Actualiza el título de una conversación.
      */
@@ -137,6 +157,10 @@ public class ConversationService {
      */
     @Transactional
     public void deleteConversation(UUID id) {
-        conversationRepository.deleteById(id);
+        conversationRepository.findById(id).ifPresent(conversation -> {
+            userRepository.decrementConversationCount(conversation.getUser().getId());
+            conversationRepository.delete(conversation);
+            contextCache.invalidate(id);
+        });
     }
 }
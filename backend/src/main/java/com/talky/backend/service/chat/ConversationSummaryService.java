@@ -1,15 +1,21 @@
 package com.talky.backend.service.chat;
 
+import com.talky.backend.client.N8nClient;
+import com.talky.backend.config.AiSchedulerProperties.Priority;
+import com.talky.backend.config.SummaryProperties;
 import com.talky.backend.dto.summary.SummaryRequestDto;
-import com.talky.backend.dto.summary.SummaryResponseDto;
 import com.talky.backend.model.chat.*;
+import com.talky.backend.repository.chat.ConversationRepository;
 import com.talky.backend.repository.chat.ConversationSummaryRepository;
 import com.talky.backend.repository.chat.MessageRepository;
+import com.talky.backend.util.ExtractiveSummarizer;
+import com.talky.backend.util.TokenEstimator;
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
 
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Optional;
 import java.util.Set;
@@ -21,7 +27,17 @@ public class ConversationSummaryService {
 
     private final ConversationSummaryRepository summaryRepository;
     private final MessageRepository messageRepository;
-    private final RestTemplate restTemplate = new RestTemplate();
+    private final ConversationRepository conversationRepository;
+    private final ConversationContextCache contextCache;
+    private final N8nClient n8nClient;
+    private final SummaryProperties summaryProperties;
+    private final AiRequestScheduler aiRequestScheduler;
+
+    // Prefijo de los resúmenes generados localmente (sin N8N)
+    static final String LOCAL_SUMMARY_PREFIX = "Resumen automático: ";
+
+    // Los resúmenes van en segundo plano: comparten una sola cola en el planificador de N8N
+    private static final String SCHEDULER_KEY = "summaries";
 
     // Palabras irrelevantes que podemos ignorar para ahorrar tokens
     private static final Set<String> IRRELEVANT_MESSAGES = Set.of(
@@ -31,73 +47,201 @@ public class ConversationSummaryService {
     /**
      * Genera un resumen real de los mensajes usando N8N.
      * NOTA: excluye mensajes de tipo SUMMARY para evitar que los resúmenes se auto-acumulen.
+     * Si N8N no está disponible o falla, se usa el resumen extractivo local (si está activo).
+     *
+     * @return el resumen, o vacío si N8N falló y no hay respaldo local
      */
-    public String generateSummary(List<Message> messages) {
+    public Optional<String> generateSummary(List<Message> messages) {
         try {
-            // 1) Excluir mensajes que sean ya de tipo SUMMARY (no queremos resumir resúmenes)
-            // 2) Filtrar mensajes irrelevantes (muy cortos, "gracias", etc.) para ahorrar tokens
-            List<Message> filteredMessages = messages.stream()
-                    .filter(m -> m.getType() != MessageType.SUMMARY) // <-- clave: excluir resúmenes previos
-                    .filter(m -> {
-                        String content = Optional.ofNullable(m.getContent()).orElse("").trim().toLowerCase();
-                        if (content.isEmpty()) return false;
-                        // Ignorar mensajes extremadamente cortos o irrelevantes
-                        if (content.length() <= 2) return false;
-                        if (IRRELEVANT_MESSAGES.contains(content)) return false;
-                        // Ignorar respuestas de IA demasiado cortas que no aportan contexto
-                        if (m.getType() == MessageType.AI && content.length() < 5) return false;
-                        return true;
-                    })
-                    .collect(Collectors.toList());
-
-            if (filteredMessages.isEmpty()) {
-                return "Sin información relevante para resumir.";
+            String history = buildHistory(messages);
+            if (history.isEmpty()) {
+                return Optional.of("Sin información relevante para resumir.");
             }
 
-            // Concatenar historial optimizado en un solo texto
-            String history = filteredMessages.stream()
-                    .map(m -> "[" + m.getType() + "] " + m.getContent())
-                    .collect(Collectors.joining(" | "));
+            if (useLocalFallback()) {
+                return Optional.of(localSummary(messages, null));
+            }
 
             // Armar payload para N8N
             SummaryRequestDto request = new SummaryRequestDto(history);
 
-            // URL de tu workflow N8N (ajústala según tu entorno)
-            String url = "http://localhost:5678/webhook/talky-summary";
+            String summary = summarizeWithN8n(request);
+            if (summary == null && summaryProperties.isLocalFallback()) {
+                return Optional.of(localSummary(messages, null));
+            }
+            return Optional.ofNullable(summary);
+
+        } catch (Exception e) {
+            if (summaryProperties.isLocalFallback()) {
+                return Optional.of(localSummary(messages, null));
+            }
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Genera un resumen incremental: envía a N8N el resumen anterior y solo los
+     * mensajes creados después de él, de modo que el payload no crece con la conversación.
+     * Cada {@code hierarchicalEvery} compactaciones se pide un resumen jerárquico,
+     * que condensa el resumen acumulado para que tampoco crezca sin límite.
+     * Si todavía no hay resumen previo se hace un resumen completo.
+     *
+     * @param coveredUntil fecha del último mensaje que debe entrar en el resumen
+     * @return el resumen, o vacío si N8N falló y no hay respaldo local (el tramo queda sin cubrir)
+     */
+    public Optional<String> generateIncrementalSummary(Conversation conversation, Instant coveredUntil) {
+        ConversationSummary previous = getLatestSummary(conversation);
+        if (previous == null) {
+            return generateSummary(messageRepository.findByConversationOrderByCreatedAtAsc(conversation));
+        }
+
+        List<Message> newMessages = List.of();
+        try {
+            Instant from = previous.getCoveredUntil() != null ? previous.getCoveredUntil() : previous.getCreatedAt();
+            newMessages = messageRepository.findForIncrementalSummary(conversation, from, coveredUntil);
+            String history = buildHistory(newMessages);
 
-            SummaryResponseDto response = restTemplate.postForObject(
-                    url,
-                    request,
-                    SummaryResponseDto.class
+            int hierarchicalEvery = summaryProperties.getHierarchicalEvery();
+            boolean hierarchical = hierarchicalEvery > 0
+                    && (previous.getCompactionCount() + 1) % hierarchicalEvery == 0;
+            if (history.isEmpty() && !hierarchical) {
+                // Nada nuevo que aportar: se conserva el resumen anterior
+                return Optional.of(previous.getSummary());
+            }
+
+            if (useLocalFallback()) {
+                return Optional.of(localSummary(newMessages, previous.getSummary()));
+            }
+
+            SummaryRequestDto request = new SummaryRequestDto(
+                    history,
+                    previous.getSummary(),
+                    hierarchical ? "HIERARCHICAL" : "INCREMENTAL"
             );
 
-            return response != null ? response.getSummary() : "No se recibió resumen de la IA";
+            String summary = summarizeWithN8n(request);
+            if (summary == null && summaryProperties.isLocalFallback()) {
+                return Optional.of(localSummary(newMessages, previous.getSummary()));
+            }
+            return Optional.ofNullable(summary);
 
         } catch (Exception e) {
-            // puedes loguear e.getMessage() para diagnóstico
-            return "Error al generar resumen con la IA";
+            // Con el respaldo local se resume lo nuevo; sin él no hay resumen que guardar
+            return summaryProperties.isLocalFallback()
+                    ? Optional.of(localSummary(newMessages, previous.getSummary()))
+                    : Optional.empty();
         }
     }
 
+    /**
+     * Llama a N8N con la prioridad de los resúmenes: comparten turno entre sí y ceden hueco
+     * al chat, pero el planificador no los deja sin servicio.
+     */
+    private String summarizeWithN8n(SummaryRequestDto request) {
+        return aiRequestScheduler.execute(Priority.SUMMARY, SCHEDULER_KEY, () -> n8nClient.summarize(request).block());
+    }
+
+    /**
+     * N8N no está disponible (circuito abierto) y el respaldo local está activo.
+     */
+    private boolean useLocalFallback() {
+        return summaryProperties.isLocalFallback() && !n8nClient.isSummaryAvailable();
+    }
+
+    /**
+     * Resumen de respaldo generado localmente: las oraciones más representativas del resumen
+     * anterior y de los mensajes nuevos, dentro de {@code fallbackMaxTokens}.
+     */
+    private String localSummary(List<Message> messages, String previousSummary) {
+        List<ExtractiveSummarizer.Passage> passages = new ArrayList<>();
+        if (previousSummary != null && !previousSummary.isBlank()) {
+            passages.add(new ExtractiveSummarizer.Passage(MessageType.SUMMARY.name(),
+                    previousSummary.replace(LOCAL_SUMMARY_PREFIX, "")));
+        }
+        passages.addAll(toPassages(relevantMessages(messages)));
+
+        String extract = ExtractiveSummarizer.summarize(passages, summaryProperties.getFallbackMaxTokens());
+        if (extract.isEmpty()) {
+            return previousSummary != null ? previousSummary : "Sin información relevante para resumir.";
+        }
+        return LOCAL_SUMMARY_PREFIX + extract;
+    }
+
+    /**
+     * Concatena el historial relevante en un solo texto:
+     * 1) Excluye mensajes que sean ya de tipo SUMMARY (no queremos resumir resúmenes)
+     * 2) Filtra mensajes irrelevantes (muy cortos, "gracias", etc.) para ahorrar tokens
+     * 3) Si supera {@code preSummaryMaxTokens}, conserva solo las oraciones más representativas
+     */
+    private String buildHistory(List<Message> messages) {
+        List<Message> relevant = relevantMessages(messages);
+        String history = relevant.stream()
+                .map(m -> "[" + m.getType() + "] " + m.getContent())
+                .collect(Collectors.joining(" | "));
+
+        // 3) Si aun así es largo, se recorta localmente antes de enviarlo
+        int maxTokens = summaryProperties.getPreSummaryMaxTokens();
+        if (maxTokens > 0 && TokenEstimator.estimate(history) > maxTokens) {
+            return ExtractiveSummarizer.summarize(toPassages(relevant), maxTokens);
+        }
+        return history;
+    }
+
+    private List<Message> relevantMessages(List<Message> messages) {
+        return messages.stream()
+                .filter(m -> m.getType() != MessageType.SUMMARY) // <-- clave: excluir resúmenes previos
+                .filter(m -> {
+                    String content = Optional.ofNullable(m.getContent()).orElse("").trim().toLowerCase();
+                    if (content.isEmpty()) return false;
+                    // Ignorar mensajes extremadamente cortos o irrelevantes
+                    if (content.length() <= 2) return false;
+                    if (IRRELEVANT_MESSAGES.contains(content)) return false;
+                    // Ignorar respuestas de IA demasiado cortas que no aportan contexto
+                    if (m.getType() == MessageType.AI && content.length() < 5) return false;
+                    return true;
+                })
+                .toList();
+    }
+
+    private static List<ExtractiveSummarizer.Passage> toPassages(List<Message> messages) {
+        return messages.stream()
+                .map(m -> new ExtractiveSummarizer.Passage(m.getType().name(), m.getContent()))
+                .toList();
+    }
+
     /**
      * Guarda el último resumen en la tabla de ConversationSummary.
      * (Se elimina cualquier resumen anterior de esa conversación para ahorrar espacio)
      */
     @Transactional
     public ConversationSummary saveSummary(Conversation conversation, String summaryText) {
+        return saveSummary(conversation, summaryText, Instant.now());
+    }
+
+    /**
+     * Igual que {@link #saveSummary(Conversation, String)}, indicando hasta qué
+     * mensaje cubre el resumen (punto de partida del siguiente resumen incremental).
+     */
+    @Transactional
+    public ConversationSummary saveSummary(Conversation conversation, String summaryText, Instant coveredUntil) {
+        // 0) Llevar la cuenta de compactaciones acumuladas
+        ConversationSummary previous = getLatestSummary(conversation);
+        int compactionCount = previous != null ? previous.getCompactionCount() + 1 : 1;
+
         // 1) Borrar resúmenes anteriores (tabla)
         summaryRepository.deleteByConversation(conversation);
 
         // 2) Borrar mensajes previos de tipo SUMMARY (evitar acumulación en message table)
-        List<Message> prevSummaries = messageRepository.findByConversationAndType(conversation, MessageType.SUMMARY);
-        if (!prevSummaries.isEmpty()) {
-            messageRepository.deleteAll(prevSummaries);
-        }
+        int deleted = messageRepository.deleteAllByConversationAndType(conversation, MessageType.SUMMARY);
+        conversationRepository.decrementMessageCount(conversation.getId(), deleted);
+        contextCache.replaceSummary(conversation.getId(), summaryText);
 
         // 3) Guardar nuevo resumen en la tabla de resúmenes
         ConversationSummary summary = ConversationSummary.builder()
                 .conversation(conversation)
                 .summary(summaryText)
+                .compactionCount(compactionCount)
+                .coveredUntil(coveredUntil)
                 .build();
         return summaryRepository.save(summary);
     }
@@ -113,7 +257,23 @@ public class ConversationSummaryService {
                 .type(MessageType.SUMMARY)
                 .content(summaryText)
                 .build();
-        return messageRepository.save(summaryMessage);
+        summaryMessage = messageRepository.saveAndFlush(summaryMessage);
+        conversationRepository.incrementMessageCount(conversation.getId(), summaryMessage.getCreatedAt());
+        contextCache.append(conversation.getId(), summaryMessage);
+        return summaryMessage;
+    }
+
+    /**
+     * Conserva solo los últimos {@code keep} mensajes (además de los SUMMARY),
+     * borrando el resto con una única sentencia.
+     *
+     * @return número de mensajes eliminados
+     */
+    @Transactional
+    public int compactMessages(Conversation conversation, int keep) {
+        int deleted = messageRepository.deleteAllExceptLatest(conversation.getId(), keep);
+        conversationRepository.decrementMessageCount(conversation.getId(), deleted);
+        return deleted;
     }
 
     /**
@@ -0,0 +1,165 @@
+package com.talky.backend.service.chat;
+
+import com.talky.backend.client.N8nClient;
+import com.talky.backend.config.SummaryProperties;
+import com.talky.backend.model.chat.Conversation;
+import com.talky.backend.model.chat.Message;
+import com.talky.backend.repository.chat.ConversationRepository;
+import com.talky.backend.repository.chat.MessageRepository;
+import jakarta.annotation.PreDestroy;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Cola de resúmenes en segundo plano.
+ * Los trabajos se deduplican por conversación: mientras una conversación tenga
+ * un resumen en cola o en curso, las nuevas peticiones para ella se ignoran.
+ */
+@Component
+@EnableConfigurationProperties(SummaryProperties.class)
+public class ConversationSummaryWorker {
+
+    private final ConversationRepository conversationRepository;
+    private final MessageRepository messageRepository;
+    private final ConversationSummaryService conversationSummaryService;
+    private final SummaryProperties properties;
+    private final N8nClient n8nClient;
+    private final ChatEventPublisher chatEventPublisher;
+
+    // Mensajes (sin contar resúmenes) que se conservan tras compactar
+    private static final int RECENT_MESSAGES_TO_KEEP = 50;
+
+    // Conversaciones con un resumen en cola o en curso
+    private final Set<UUID> pending = ConcurrentHashMap.newKeySet();
+
+    private final ThreadPoolExecutor executor;
+
+    public ConversationSummaryWorker(ConversationRepository conversationRepository,
+                                     MessageRepository messageRepository,
+                                     ConversationSummaryService conversationSummaryService,
+                                     SummaryProperties properties,
+                                     N8nClient n8nClient,
+                                     ChatEventPublisher chatEventPublisher,
+                                     Environment environment) {
+        this.conversationRepository = conversationRepository;
+        this.messageRepository = messageRepository;
+        this.conversationSummaryService = conversationSummaryService;
+        this.properties = properties;
+        this.n8nClient = n8nClient;
+        this.chatEventPublisher = chatEventPublisher;
+
+        // Con hilos virtuales activos los workers también lo son; la concurrencia
+        // sigue acotada por workerThreads para no saturar el webhook de resúmenes
+        AtomicInteger threadCount = new AtomicInteger();
+        boolean virtual = Threading.VIRTUAL.isActive(environment);
+        this.executor = new ThreadPoolExecutor(
+                properties.getWorkerThreads(),
+                properties.getWorkerThreads(),
+                0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(properties.getQueueCapacity()),
+                runnable -> {
+                    String name = "summary-worker-" + threadCount.incrementAndGet();
+                    return virtual
+                            ? Thread.ofVirtual().name(name).unstarted(runnable)
+                            : Thread.ofPlatform().name(name).daemon(true).unstarted(runnable);
+                });
+    }
+
+    /**
+     * Encola el resumen de una conversación si no hay otro pendiente para ella.
+     *
+     * @return true si se encoló un trabajo nuevo
+     */
+    public boolean enqueue(UUID conversationId) {
+        if (!pending.add(conversationId)) {
+            return false;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    summarize(conversationId);
+                } catch (Exception e) {
+                    e.printStackTrace();
+                } finally {
+                    pending.remove(conversationId);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            // Cola llena: se reintentará con el siguiente mensaje de la conversación
+            pending.remove(conversationId);
+            return false;
+        }
+    }
+
+    /**
+     * Número de conversaciones con un resumen en cola o en curso.
+     */
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    /**
+     * Genera el resumen y conserva solo el resumen y los últimos N mensajes.
+     */
+    private void summarize(UUID conversationId) {
+        // Con N8N caído y sin respaldo local no tiene sentido intentarlo: se reintentará con el siguiente mensaje
+        if (!n8nClient.isSummaryAvailable() && !properties.isLocalFallback()) {
+            return;
+        }
+
+        Conversation conversation = conversationRepository.findById(conversationId).orElse(null);
+        if (conversation == null) {
+            return;
+        }
+
+        if (conversation.getMessageCount() <= MessageService.MAX_MESSAGES_PER_CONVERSATION) {
+            return;
+        }
+
+        // El resumen cubre hasta el último mensaje existente; los que lleguen mientras
+        // N8N responde entrarán en el siguiente resumen incremental
+        Instant coveredUntil = messageRepository.findTopByConversationOrderByCreatedAtDesc(conversation)
+                .map(Message::getCreatedAt)
+                .orElseGet(Instant::now);
+
+        Optional<String> generated = properties.isIncremental()
+                ? conversationSummaryService.generateIncrementalSummary(conversation, coveredUntil)
+                : conversationSummaryService.generateSummary(
+                        messageRepository.findByConversationOrderByCreatedAtAsc(conversation));
+        if (generated.isEmpty()) {
+            // N8N falló sin respaldo local: no se guarda ni se compacta, así el mismo
+            // tramo se vuelve a resumir con el siguiente mensaje
+            return;
+        }
+        String resumen = generated.get();
+
+        // Guardar resumen en tabla de summaries
+        conversationSummaryService.saveSummary(conversation, resumen, coveredUntil);
+
+        // Guardar resumen como mensaje especial y avisar a los clientes conectados
+        Message summaryMessage = conversationSummaryService.saveSummaryAsMessage(conversation, resumen);
+        chatEventPublisher.publishMessage(conversationId, summaryMessage);
+
+        // Mantener solo el resumen y últimos N mensajes (un único DELETE)
+        conversationSummaryService.compactMessages(conversation, RECENT_MESSAGES_TO_KEEP);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdown();
+    }
+}
@@ -1,40 +1,90 @@
 package com.talky.backend.service.chat;
 
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.talky.backend.client.N8nClient;
+import com.talky.backend.config.AiSchedulerProperties.Priority;
+import com.talky.backend.dto.message.MessagePageDto;
 import com.talky.backend.dto.message.MessageRequestDto;
 import com.talky.backend.dto.message.MessageResponseDto;
+import com.talky.backend.exception.ConversationLockLostException;
+import com.talky.backend.exception.DeadlineExceededException;
 import com.talky.backend.model.User;
 import com.talky.backend.model.chat.*;
 import com.talky.backend.repository.UserRepository;
 import com.talky.backend.repository.chat.ConversationRepository;
 import com.talky.backend.repository.chat.MessageRepository;
+import com.talky.backend.service.chat.lock.ConversationLockManager;
+import io.github.resilience4j.bulkhead.BulkheadFullException;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.codec.ServerSentEvent;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
 
+import java.time.Instant;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 
 @Service
+@Slf4j
 @RequiredArgsConstructor
 public class MessageService {
 
     private final MessageRepository messageRepository;
     private final ConversationRepository conversationRepository;
-    private final ConversationSummaryService conversationSummaryService;
+    private final ConversationSummaryWorker conversationSummaryWorker;
     private final UserRepository userRepository;
+    private final N8nClient n8nClient;
+
+    // Control de bloqueo por conversación (para evitar mensajes simultáneos)
+    private final ConversationLockManager conversationLockManager;
+    private final ConversationMailbox conversationMailbox;
+
+    // Caché opcional de respuestas frecuentes por curso
+    private final AnswerCache answerCache;
+
+    // Hilos (virtuales si están activos) para el trabajo bloqueante del streaming
+    private final Scheduler chatBlockingScheduler;
+
+    // Eventos WebSocket de la conversación (respuestas, bloqueo)
+    private final ChatEventPublisher chatEventPublisher;
+
+    // Guardar un mensaje y actualizar los contadores en la misma transacción
+    private final TransactionTemplate transactionTemplate;
+
+    // Últimos mensajes de las conversaciones activas (lecturas sin tocar la tabla de mensajes)
+    private final ConversationContextCache contextCache;
+
+    // Resumen y turnos recientes que acompañan al prompt enviado a N8N
+    private final PromptContextBuilder promptContextBuilder;
+
+    // Turno de las llamadas a N8N (prioridad por rol y reparto justo entre usuarios)
+    private final AiRequestScheduler aiRequestScheduler;
+
+    // Workflow de N8N de cada prompt (charla corta, glosario, análisis...)
+    private final PromptRouter promptRouter;
+
+    // Plazo de los envíos: pasado, se abandona el trabajo pendiente
+    private final RequestDeadlines requestDeadlines;
 
     // Límite máximo de conversaciones por usuario
     private static final int MAX_CONVERSATIONS = 4;
 
     // Máximo de mensajes antes de resumir
-    private static final int MAX_MESSAGES_PER_CONVERSATION = 20;
+    static final int MAX_MESSAGES_PER_CONVERSATION = 20;
 
-    // Control de bloqueo por conversación (para evitar mensajes simultáneos)
-    private final Map<UUID, Boolean> conversationLocks = new ConcurrentHashMap<>();
+    // Tamaño de página del historial
+    private static final int DEFAULT_PAGE_SIZE = 50;
+    private static final int MAX_PAGE_SIZE = 100;
 
-    private final RestTemplate restTemplate = new RestTemplate();
+    // Respuestas cuando N8N falla (no se guardan en la caché de respuestas)
+    private static final String AI_ERROR_RESPONSE = "Error al conectar con el servicio de IA";
+    private static final String AI_EMPTY_RESPONSE = "No se recibió respuesta de la IA";
 
     /**
      * Maneja el flujo completo de un mensaje:
@@ -44,81 +94,36 @@ public class MessageService {
      * - Llama a N8N para respuesta IA
      * - Guarda respuesta de la IA
      * - Aplica lógica de resúmenes si supera el límite de mensajes
+     * Si vence el plazo se deja de esperar a N8N y no se guarda la respuesta
+     * ({@link DeadlineExceededException}).
      */
-    public MessageResponseDto handleMessage(MessageRequestDto request) {
-        // 1. Obtener el usuario a partir del email
-        User user = userRepository.findByEmail(request.getStudentEmail())
-                .orElseThrow(() -> new IllegalArgumentException("Usuario no encontrado"));
-
-        // 2. Verificar si ya alcanzó el límite de conversaciones
-        long conversationCount = conversationRepository.countByEmail(user.getEmail());
-        Conversation conversation;
-
-        if (request.getConversationId() == null || request.getConversationId().isEmpty()) {
-            if (conversationCount >= MAX_CONVERSATIONS) {
-                throw new RuntimeException("Has alcanzado el límite de conversaciones permitidas (" + MAX_CONVERSATIONS + ")");
-            }
-            // Crear nueva conversación
-            conversation = Conversation.builder()
-                    .user(user)
-                    .title("Nueva conversación")
-                    .mode(user.getRole().name()) // usar enum Role -> String
-                    .build();
-            conversation = conversationRepository.save(conversation);
-        } else {
-            conversation = conversationRepository.findById(UUID.fromString(request.getConversationId()))
-                    .orElseThrow(() -> new IllegalArgumentException("Conversación no encontrada"));
-        }
+    public MessageResponseDto handleMessage(MessageRequestDto request, RequestDeadline deadline) {
+        // 1-2. Obtener usuario y conversación (creándola si hace falta)
+        Conversation conversation = resolveConversation(request);
 
         UUID conversationId = conversation.getId();
 
-        // 3. Verificar si la conversación ya está en uso
-        if (Boolean.TRUE.equals(conversationLocks.get(conversationId))) {
-            throw new RuntimeException("Ya tienes un mensaje en proceso en esta conversación. Espera la respuesta de la IA.");
-        }
+        // 3. Bloquear la conversación (falla si ya está en uso, o espera turno si el buzón está activo)
+        acquireConversation(conversationId);
 
         try {
-            // Bloquear conversación
-            conversationLocks.put(conversationId, true);
+            // Esperando turno (buzón) puede haber vencido el plazo: no se guarda nada
+            requestDeadlines.check(deadline, "lock");
 
             // 4. Guardar mensaje del usuario
-            Message userMessage = Message.builder()
-                    .conversation(conversation)
-                    .type(MessageType.USER)
-                    .content(request.getPrompt())
-                    .build();
-            messageRepository.save(userMessage);
+            saveMessage(conversation, MessageType.USER, request.getPrompt());
 
-            // 5. Enviar mensaje a N8N
-            String respuesta = callN8n(request);
+            // 5. Responder desde la caché de respuestas frecuentes o enviar mensaje a N8N
+            String respuesta = answerFromCacheOrN8n(conversation, request, deadline);
 
-            // 6. Guardar respuesta de la IA
-            Message aiMessage = Message.builder()
-                    .conversation(conversation)
-                    .type(MessageType.AI)
-                    .content(respuesta)
-                    .build();
-            messageRepository.save(aiMessage);
-
-            // 7. Verificar si hay que resumir
-            List<Message> messages = messageRepository.findByConversationOrderByCreatedAtAsc(conversation);
-            if (messages.size() > MAX_MESSAGES_PER_CONVERSATION) {
-                String resumen = conversationSummaryService.generateSummary(messages);
-
-                // Guardar resumen en tabla de summaries
-                conversationSummaryService.saveSummary(conversation, resumen);
-
-                // Guardar resumen como mensaje especial
-                conversationSummaryService.saveSummaryAsMessage(conversation, resumen);
-
-                // Mantener solo el resumen y últimos N mensajes
-                List<Message> recent = messageRepository.findTop50ByConversationOrderByCreatedAtDesc(conversation);
-                messageRepository.deleteAll(
-                        messages.stream()
-                                .filter(m -> !recent.contains(m) && m.getType() != MessageType.SUMMARY)
-                                .toList()
-                );
-            }
+            // 6. Guardar respuesta de la IA (si el cliente todavía la espera)
+            requestDeadlines.check(deadline, "save");
+            conversationLockManager.checkHeld(conversationId);
+            Message aiMessage = saveMessage(conversation, MessageType.AI, respuesta);
+            chatEventPublisher.publishMessage(conversationId, aiMessage);
+
+            // 7. Encolar el resumen si hace falta (se procesa en segundo plano)
+            applySummaryIfNeeded(conversation);
 
             // 8. Retornar DTO para el front
             return MessageResponseDto.builder()
@@ -130,7 +135,217 @@ public class MessageService {
 
         } finally {
             // Liberar conversación siempre, incluso si ocurre un error
-            conversationLocks.remove(conversationId);
+            releaseConversation(conversationId);
+        }
+    }
+
+    /**
+     * Variante en streaming de {@link #handleMessage(MessageRequestDto, RequestDeadline)}.
+     * Reenvía al cliente cada fragmento que emite N8N como un evento SSE "chunk"
+     * y, cuando el stream termina, guarda la respuesta completa de la IA y
+     * emite un evento "done" con el mensaje persistido. Si vence el plazo se corta
+     * el stream de N8N y se emite un evento "error" sin guardar la respuesta.
+     */
+    public Flux<ServerSentEvent<MessageResponseDto>> streamMessage(MessageRequestDto request, RequestDeadline deadline) {
+        Conversation conversation = resolveConversation(request);
+        UUID conversationId = conversation.getId();
+
+        if (!conversationLockManager.tryLock(conversationId)) {
+            throw new RuntimeException("Ya tienes un mensaje en proceso en esta conversación. Espera la respuesta de la IA.");
+        }
+        chatEventPublisher.publishLock(conversationId, true);
+
+        // Hasta devolver el Flux (que libera al terminar) cualquier fallo debe soltar el bloqueo
+        Flux<String> source;
+        boolean cacheable;
+        try {
+            // Igual que en handleMessage: con el plazo vencido no se guarda nada
+            requestDeadlines.check(deadline, "lock");
+
+            saveMessage(conversation, MessageType.USER, request.getPrompt());
+
+            // Con la caché de respuestas activa, una pregunta repetida (sin historial) se emite en un solo fragmento
+            MessageRequestDto withContext = withContext(conversation, request);
+            boolean shareable = isShareable(withContext);
+            Optional<String> cachedAnswer = shareable
+                    ? answerCache.lookup(conversation, request.getPrompt())
+                    : Optional.empty();
+            cacheable = shareable && cachedAnswer.isEmpty();
+            source = cachedAnswer.isPresent()
+                    ? Flux.just(cachedAnswer.get())
+                    : streamFromN8n(conversation, withContext, deadline);
+            if (deadline.isBounded()) {
+                // Al vencer el plazo se cancela el stream de N8N (y su turno en el planificador)
+                source = source
+                        .takeUntilOther(Mono.delay(deadline.remaining()))
+                        .concatWith(Mono.defer(() -> deadline.isExpired()
+                                ? Mono.error(requestDeadlines.abandoned("stream"))
+                                : Mono.empty()));
+            }
+        } catch (RuntimeException e) {
+            unlockConversation(conversationId);
+            throw e;
+        }
+
+        StringBuilder fullResponse = new StringBuilder();
+
+        Flux<ServerSentEvent<MessageResponseDto>> chunks = source
+                .doOnNext(fullResponse::append)
+                .map(chunk -> ServerSentEvent.<MessageResponseDto>builder()
+                        .event("chunk")
+                        .data(MessageResponseDto.builder()
+                                .type(MessageType.AI.name())
+                                .content(chunk)
+                                .conversationId(conversationId.toString())
+                                .build())
+                        .build());
+
+        // Al completar, persistimos la respuesta completa fuera del event loop
+        Mono<ServerSentEvent<MessageResponseDto>> done = Mono.fromCallable(() -> {
+                    conversationLockManager.checkHeld(conversationId);
+                    Message aiMessage = saveMessage(conversation, MessageType.AI, fullResponse.toString());
+                    chatEventPublisher.publishMessage(conversationId, aiMessage);
+                    if (cacheable) {
+                        answerCache.put(conversation, request.getPrompt(), aiMessage.getContent());
+                    }
+                    applySummaryIfNeeded(conversation);
+                    return ServerSentEvent.<MessageResponseDto>builder()
+                            .event("done")
+                            .data(MessageResponseDto.builder()
+                                    .type(MessageType.AI.name())
+                                    .content(aiMessage.getContent())
+                                    .conversationId(conversationId.toString())
+                                    .timestamp(aiMessage.getCreatedAt())
+                                    .build())
+                            .build();
+                })
+                .subscribeOn(chatBlockingScheduler);
+
+        return chunks
+                .concatWith(done)
+                .onErrorResume(e -> {
+                    boolean unavailable = isUnavailable(e);
+                    // Plazo vencido o bloqueo perdido: se informa al cliente con su motivo
+                    boolean abandoned = e instanceof DeadlineExceededException
+                            || e instanceof ConversationLockLostException;
+                    if (unavailable || abandoned) {
+                        log.warn("Stream de N8N interrumpido en la conversación {}: {}", conversationId, e.getMessage());
+                    } else {
+                        log.error("Error en el stream de N8N en la conversación {}", conversationId, e);
+                    }
+                    String content = unavailable ? n8nClient.getChatFallback()
+                            : abandoned ? ((ResponseStatusException) e).getReason()
+                            : AI_ERROR_RESPONSE;
+                    return Flux.just(ServerSentEvent.<MessageResponseDto>builder()
+                            .event("error")
+                            .data(MessageResponseDto.builder()
+                                    .type(MessageType.AI.name())
+                                    .content(content)
+                                    .conversationId(conversationId.toString())
+                                    .build())
+                            .build());
+                })
+                // Liberar conversación siempre: al completar, fallar o si el cliente se desconecta
+                .doFinally(signal -> unlockConversation(conversationId));
+    }
+
+    /**
+     * Stream de N8N del workflow que corresponde al prompt, cuando el planificador le da turno.
+     * Si no queda plazo suficiente para la llamada se abandona sin llamar a N8N.
+     */
+    private Flux<String> streamFromN8n(Conversation conversation, MessageRequestDto request, RequestDeadline deadline) {
+        requestDeadlines.checkCallBudget(deadline);
+        PromptRouter.Route route = promptRouter.route(conversation, request.getPrompt());
+        return aiRequestScheduler.schedule(
+                chatPriority(conversation),
+                schedulerKey(conversation),
+                promptRouter.record(route, n8nClient.chatStream(request, route.chatStreamPath())));
+    }
+
+    /**
+     * Toma el bloqueo de la conversación. Con el buzón activo el mensaje espera su turno;
+     * si no, se rechaza cuando ya hay otro mensaje en proceso.
+     */
+    private void acquireConversation(UUID conversationId) {
+        if (conversationMailbox.isEnabled()) {
+            conversationMailbox.acquire(conversationId);
+        } else if (!conversationLockManager.tryLock(conversationId)) {
+            throw new RuntimeException("Ya tienes un mensaje en proceso en esta conversación. Espera la respuesta de la IA.");
+        }
+        chatEventPublisher.publishLock(conversationId, true);
+    }
+
+    private void releaseConversation(UUID conversationId) {
+        if (conversationMailbox.isEnabled()) {
+            conversationMailbox.release(conversationId);
+            chatEventPublisher.publishLock(conversationId, false);
+        } else {
+            unlockConversation(conversationId);
+        }
+    }
+
+    private void unlockConversation(UUID conversationId) {
+        conversationLockManager.unlock(conversationId);
+        chatEventPublisher.publishLock(conversationId, false);
+    }
+
+    /**
+     * Obtiene el usuario del request y la conversación indicada,
+     * o crea una nueva si no viene conversationId.
+     */
+    Conversation resolveConversation(MessageRequestDto request) {
+        // Obtener el usuario a partir del email
+        User user = userRepository.findByEmail(request.getStudentEmail())
+                .orElseThrow(() -> new IllegalArgumentException("Usuario no encontrado"));
+
+        Conversation conversation;
+
+        if (request.getConversationId() == null || request.getConversationId().isEmpty()) {
+            // Crear nueva conversación, reservándola en el contador del usuario (límite en O(1))
+            conversation = transactionTemplate.execute(status -> {
+                if (userRepository.tryIncrementConversationCount(user.getId(), MAX_CONVERSATIONS) == 0) {
+                    throw new RuntimeException("Has alcanzado el límite de conversaciones permitidas (" + MAX_CONVERSATIONS + ")");
+                }
+                return conversationRepository.save(Conversation.builder()
+                        .user(user)
+                        .title("Nueva conversación")
+                        .mode(user.getRole().name()) // usar enum Role -> String
+                        .build());
+            });
+        } else {
+            conversation = conversationRepository.findWithUserById(UUID.fromString(request.getConversationId()))
+                    .orElseThrow(() -> new IllegalArgumentException("Conversación no encontrada"));
+        }
+
+        return conversation;
+    }
+
+    /**
+     * Guarda un mensaje de la conversación con el tipo indicado y actualiza
+     * el contador de mensajes de la conversación en la misma transacción.
+     */
+    Message saveMessage(Conversation conversation, MessageType type, String content) {
+        Message message = Message.builder()
+                .conversation(conversation)
+                .type(type)
+                .content(content)
+                .build();
+        return transactionTemplate.execute(status -> {
+            Message saved = messageRepository.saveAndFlush(message);
+            conversationRepository.incrementMessageCount(conversation.getId(), saved.getCreatedAt());
+            contextCache.append(conversation.getId(), saved);
+            return saved;
+        });
+    }
+
+    /**
+     * Si la conversación supera el límite de mensajes, encola su resumen.
+     * El resumen y la limpieza de mensajes se hacen fuera del request.
+     */
+    void applySummaryIfNeeded(Conversation conversation) {
+        int messageCount = conversationRepository.findMessageCountById(conversation.getId()).orElse(0);
+        if (messageCount > MAX_MESSAGES_PER_CONVERSATION) {
+            conversationSummaryWorker.enqueue(conversation.getId());
         }
     }
 
@@ -138,50 +353,230 @@ public class MessageService {
      * Obtiene los últimos N mensajes de una conversación, incluyendo resúmenes.
      */
     public List<MessageResponseDto> getRecentMessages(Conversation conversation) {
-        List<Message> recent = messageRepository.findTop50ByConversationOrderByCreatedAtDesc(conversation);
+        return getMessagesPage(conversation, null, DEFAULT_PAGE_SIZE).getMessages();
+    }
+
+    /**
+     * Obtiene una página del historial por keyset (created_at, id).
+     * Sin cursor devuelve los mensajes más recientes; con cursor, los anteriores a él.
+     * Los mensajes se devuelven en orden cronológico.
+     *
+     * @throws ResponseStatusException 400 si el cursor no tiene la forma {@code <instante ISO>,<uuid>}
+     */
+    public MessagePageDto getMessagesPage(Conversation conversation, String before, Integer limit) {
+        int pageSize = (limit == null || limit <= 0) ? DEFAULT_PAGE_SIZE : Math.min(limit, MAX_PAGE_SIZE);
+
+        // Primera página de una conversación activa: desde la ventana en memoria si la cubre
+        if ((before == null || before.isBlank()) && contextCache.isEnabled()) {
+            ConversationContextCache.Snapshot context = contextCache.get(conversation);
+            List<ConversationContextCache.CachedMessage> window = context.messages();
+            if (window.size() >= pageSize || context.complete()) {
+                return toPage(conversation, window.subList(Math.max(0, window.size() - pageSize), window.size()), pageSize);
+            }
+        }
+
+        List<Message> page;
+        if (before == null || before.isBlank()) {
+            page = messageRepository.findLatestPage(conversation.getId(), pageSize);
+        } else {
+            Instant createdAt;
+            UUID id;
+            try {
+                String[] parts = before.split(",", 2);
+                createdAt = Instant.parse(parts[0].trim());
+                id = UUID.fromString(parts[1].trim());
+            } catch (RuntimeException e) {
+                // Es un dato del cliente: 400, no un error interno
+                throw new ResponseStatusException(HttpStatus.BAD_REQUEST, "Cursor inválido: " + before);
+            }
+            page = messageRepository.findPageBefore(conversation.getId(), createdAt, id, pageSize);
+        }
+
+        // Si la página está llena puede haber más: el cursor es el mensaje más antiguo
+        String nextCursor = page.size() == pageSize ? toCursor(page.get(page.size() - 1)) : null;
 
         // Los devuelve al revés, así que los invertimos
-        Collections.reverse(recent);
+        List<Message> chronological = new ArrayList<>(page);
+        Collections.reverse(chronological);
 
         // Mapeamos a DTO
-        return recent.stream()
+        List<MessageResponseDto> messages = chronological.stream()
                 .map(m -> MessageResponseDto.builder()
                         .content(m.getContent())
                         .type(m.getType().name())
-                        .conversationId(m.getConversation().getId().toString())
+                        .conversationId(conversation.getId().toString())
                         .timestamp(m.getCreatedAt())
+                        .cursor(toCursor(m))
                         .build()
                 )
                 .toList();
+
+        return MessagePageDto.builder()
+                .messages(messages)
+                .nextCursor(nextCursor)
+                .build();
+    }
+
+    private String toCursor(Message message) {
+        return message.getCreatedAt() + "," + message.getId();
     }
 
     /**
-     * Llama al webhook de N8N y devuelve la respuesta como String.
+     * Página construida desde la ventana en memoria (ya en orden cronológico),
+     * con el mismo formato y cursor que la leída de Postgres.
      */
-    private String callN8n(MessageRequestDto request) {
-        try {
-            String url = "http://localhost:5678/webhook/talky-ia";
-            RestTemplate restTemplate = new RestTemplate();
+    private MessagePageDto toPage(Conversation conversation,
+                                  List<ConversationContextCache.CachedMessage> chronological,
+                                  int pageSize) {
+        List<MessageResponseDto> messages = chronological.stream()
+                .map(m -> MessageResponseDto.builder()
+                        .content(m.content())
+                        .type(m.type().name())
+                        .conversationId(conversation.getId().toString())
+                        .timestamp(m.createdAt())
+                        .cursor(m.createdAt() + "," + m.id())
+                        .build())
+                .toList();
 
-            // Pedimos la respuesta como String
-            String rawResponse = restTemplate.postForObject(url, request, String.class);
-            System.out.println(">>> Respuesta RAW de N8N: " + rawResponse);
+        String nextCursor = messages.size() == pageSize ? messages.get(0).getCursor() : null;
+
+        return MessagePageDto.builder()
+                .messages(messages)
+                .nextCursor(nextCursor)
+                .build();
+    }
 
-            // Parseamos con Jackson
-            ObjectMapper mapper = new ObjectMapper();
-            JsonNode json = mapper.readTree(rawResponse);
+    /**
+     * Busca la respuesta en la caché de respuestas frecuentes (si está activa y el prompt
+     * no lleva contexto); si no está, llama a N8N y guarda la respuesta para el resto del curso.
+     */
+    String answerFromCacheOrN8n(Conversation conversation, MessageRequestDto request, RequestDeadline deadline) {
+        return answer(conversation, request, withContext -> callN8n(conversation, withContext, deadline));
+    }
 
-            // N8N devuelve {"respuesta":"..."}
-            if (json.has("respuesta")) {
-                return json.get("respuesta").asText();
+    /**
+     * Igual que {@link #answerFromCacheOrN8n} pero sin respuesta degradada: si N8N no está
+     * disponible, falla o no responde, lanza la excepción para que el llamador reintente
+     * (los mensajes asíncronos vuelven a la cola en lugar de guardar "no disponible").
+     */
+    String answerFromCacheOrN8nOrThrow(Conversation conversation, MessageRequestDto request) {
+        return answer(conversation, request, withContext -> {
+            String respuesta = callN8nOrThrow(conversation, withContext, RequestDeadline.none());
+            if (respuesta == null) {
+                throw new IllegalStateException(AI_EMPTY_RESPONSE);
             }
+            return respuesta;
+        });
+    }
 
-            // Fallback: si no encontramos campo esperado
-            return rawResponse;
+    private String answer(Conversation conversation, MessageRequestDto request,
+                          Function<MessageRequestDto, String> n8n) {
+        MessageRequestDto withContext = withContext(conversation, request);
+        if (!isShareable(withContext)) {
+            return n8n.apply(withContext);
+        }
+
+        Optional<String> cached = answerCache.lookup(conversation, request.getPrompt());
+        if (cached.isPresent()) {
+            return cached.get();
+        }
 
+        String respuesta = n8n.apply(withContext);
+        if (!AI_ERROR_RESPONSE.equals(respuesta)
+                && !AI_EMPTY_RESPONSE.equals(respuesta)
+                && !n8nClient.getChatFallback().equals(respuesta)) {
+            answerCache.put(conversation, request.getPrompt(), respuesta);
+        }
+        return respuesta;
+    }
+
+    /**
+     * La caché de respuestas es por curso y solo mira el prompt, así que únicamente sirve
+     * para prompts sin contexto: si la respuesta depende del historial de la conversación
+     * no se busca ni se guarda en ella.
+     */
+    private boolean isShareable(MessageRequestDto request) {
+        return answerCache.isEnabled() && request.getContext() == null;
+    }
+
+    /**
+     * Añade al request el contexto de la conversación (resumen + turnos recientes).
+     * Siempre lo arma el backend: se descarta cualquier contexto enviado por el cliente.
+     */
+    private MessageRequestDto withContext(Conversation conversation, MessageRequestDto request) {
+        request.setContext(promptContextBuilder.build(conversation, request.getPrompt()));
+        return request;
+    }
+
+    /**
+     * Llama al webhook de N8N del workflow que corresponde al prompt (cuando el planificador
+     * le da turno) y devuelve la respuesta como String.
+     * Con plazo, la espera en cola y la llamada se cortan al vencer (la petición HTTP se cancela).
+     */
+    private String callN8n(Conversation conversation, MessageRequestDto request, RequestDeadline deadline) {
+        try {
+            String respuesta = callN8nOrThrow(conversation, request, deadline);
+            return respuesta != null ? respuesta : AI_EMPTY_RESPONSE;
+        } catch (DeadlineExceededException e) {
+            // Situación prevista (504): basta el motivo, sin traza
+            log.warn("Llamada a N8N abandonada en la conversación {}: {}", conversation.getId(), e.getReason());
+            throw e;
+        } catch (CallNotPermittedException | BulkheadFullException | AiRequestScheduler.RejectedException e) {
+            if (deadline.isExpired()) {
+                // Se agotó el plazo esperando turno en el planificador
+                log.warn("Plazo agotado esperando turno para N8N en la conversación {}", conversation.getId());
+                throw requestDeadlines.abandoned("n8n");
+            }
+            // N8N no disponible o saturado (o demasiada espera en cola): respuesta degradada
+            log.warn("N8N no disponible para la conversación {}: {}", conversation.getId(), e.getMessage());
+            return n8nClient.getChatFallback();
         } catch (Exception e) {
-            e.printStackTrace();
-            return "Error al conectar con el servicio de IA";
+            log.error("Error llamando a N8N en la conversación {}", conversation.getId(), e);
+            return AI_ERROR_RESPONSE;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * N8N no disponible (circuito abierto), saturado (bulkhead lleno) o demasiada espera en cola.
+     * Son situaciones previstas: se registran sin traza.
+     */
+    static boolean isUnavailable(Throwable e) {
+        return e instanceof CallNotPermittedException
+                || e instanceof BulkheadFullException
+                || e instanceof AiRequestScheduler.RejectedException;
+    }
+
+    /**
+     * Llamada a N8N sin degradación: propaga cualquier fallo. Devuelve null si N8N no respondió nada.
+     */
+    private String callN8nOrThrow(Conversation conversation, MessageRequestDto request, RequestDeadline deadline) {
+        requestDeadlines.checkCallBudget(deadline);
+        PromptRouter.Route route = promptRouter.route(conversation, request.getPrompt());
+        return aiRequestScheduler.execute(
+                chatPriority(conversation),
+                schedulerKey(conversation),
+                deadline.cap(aiRequestScheduler.getMaxWait()),
+                () -> {
+                    Mono<String> call = promptRouter.record(route, n8nClient.chat(request, route.chatPath()));
+                    if (deadline.isBounded()) {
+                        call = call.timeout(deadline.remaining(),
+                                Mono.error(() -> requestDeadlines.abandoned("n8n")));
+                    }
+                    return call.block();
+                });
+    }
+
+    /**
+     * Profesores y administradores van en la clase prioritaria; el resto, como estudiantes.
+     */
+    private Priority chatPriority(Conversation conversation) {
+        User.Role role = conversation.getUser().getRole();
+        return role == User.Role.TEACHER || role == User.Role.ADMIN
+                ? Priority.TEACHER_CHAT
+                : Priority.STUDENT_CHAT;
+    }
+
+    private String schedulerKey(Conversation conversation) {
+        return conversation.getUser().getId().toString();
+    }
+}
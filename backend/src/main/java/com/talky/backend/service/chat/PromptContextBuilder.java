@@ -0,0 +1,130 @@
+package com.talky.backend.service.chat;
+
+import com.talky.backend.config.ChatProperties;
+import com.talky.backend.dto.message.ChatContextDto;
+import com.talky.backend.model.chat.Conversation;
+import com.talky.backend.model.chat.MessageType;
+import com.talky.backend.util.TokenEstimator;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Arma el contexto que acompaña a cada prompt enviado a N8N: el último resumen y los
+ * turnos más recientes de la conversación, dentro de un presupuesto de tokens estimado
+ * localmente con {@link TokenEstimator}.
+ * <p>
+ * Lee de {@link ConversationContextCache}, que es la caché por conversación: con ella activa
+ * las conversaciones activas no consultan Postgres y armar el contexto es solo recorrer la ventana.
+ * Sin ella, cada mensaje cuesta dos consultas más (últimos mensajes y resumen); por eso el
+ * contexto está desactivado por defecto y conviene activarlo junto a {@code talky.chat.context-cache}.
+ * <p>
+ * El contexto armado no se guarda: cada mensaje nuevo cambia los turnos previos, así que nunca
+ * se podría reutilizar.
+ */
+@Component
+public class PromptContextBuilder {
+
+    private final ChatProperties.PromptContext properties;
+    private final ConversationContextCache contextCache;
+
+    public PromptContextBuilder(ChatProperties chatProperties, ConversationContextCache contextCache) {
+        this.properties = chatProperties.getPromptContext();
+        this.contextCache = contextCache;
+    }
+
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * Contexto para el prompt actual. Se excluye el propio prompt si ya está guardado
+     * como último mensaje de la conversación.
+     *
+     * @return el contexto, o null si está desactivado o la conversación no tiene historial previo
+     */
+    public ChatContextDto build(Conversation conversation, String prompt) {
+        if (!isEnabled()) {
+            return null;
+        }
+
+        ConversationContextCache.Snapshot snapshot = contextCache.get(conversation);
+        List<ConversationContextCache.CachedMessage> messages = snapshot.messages();
+
+        // El mensaje del usuario se guarda antes de llamar a N8N: no lo repetimos en el historial
+        int end = messages.size();
+        if (end > 0) {
+            ConversationContextCache.CachedMessage last = messages.get(end - 1);
+            if (last.type() == MessageType.USER && Objects.equals(last.content(), prompt)) {
+                end--;
+            }
+        }
+        return assemble(messages.subList(0, end), snapshot.summary());
+    }
+
+    /**
+     * Resumen (recortado a su propio presupuesto) y turnos desde el más reciente hacia atrás
+     * hasta agotar el presupuesto del contexto. El prompt no cuenta.
+     */
+    private ChatContextDto assemble(List<ConversationContextCache.CachedMessage> previous, String summary) {
+        int budget = properties.getMaxTokens();
+
+        String summaryText = null;
+        int used = 0;
+        if (summary != null && !summary.isBlank()) {
+            summaryText = truncate(summary, Math.min(properties.getSummaryMaxTokens(), budget));
+            used = TokenEstimator.estimate(summaryText);
+        }
+
+        List<ChatContextDto.Turn> turns = new ArrayList<>();
+        for (int i = previous.size() - 1; i >= 0 && turns.size() < properties.getMaxTurns(); i--) {
+            ConversationContextCache.CachedMessage message = previous.get(i);
+            // El resumen ya viaja aparte
+            if (message.type() == MessageType.SUMMARY) {
+                continue;
+            }
+            int tokens = TokenEstimator.estimate(message.content());
+            if (used + tokens > budget) {
+                break;
+            }
+            used += tokens;
+            turns.add(new ChatContextDto.Turn(message.type().name(), message.content()));
+        }
+        Collections.reverse(turns);
+
+        if (summaryText == null && turns.isEmpty()) {
+            return null;
+        }
+        return ChatContextDto.builder()
+                .summary(summaryText)
+                .history(turns)
+                .estimatedTokens(used)
+                .build();
+    }
+
+    /**
+     * Recorta un texto por palabras hasta que su estimación quepa en {@code maxTokens}.
+     */
+    private static String truncate(String text, int maxTokens) {
+        if (TokenEstimator.estimate(text) <= maxTokens) {
+            return text;
+        }
+        StringBuilder result = new StringBuilder();
+        int used = 0;
+        for (String word : text.split("\\s+")) {
+            int tokens = TokenEstimator.estimate(word);
+            if (used + tokens > maxTokens) {
+                break;
+            }
+            if (!result.isEmpty()) {
+                result.append(' ');
+            }
+            result.append(word);
+            used += tokens;
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,165 @@
+package com.talky.backend.service.chat;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.talky.backend.config.ChatProperties;
+import com.talky.backend.config.ChatProperties.Routing.PromptClass;
+import com.talky.backend.config.N8nProperties;
+import com.talky.backend.model.chat.Conversation;
+import com.talky.backend.repository.GlossaryWordRepository;
+import com.talky.backend.util.TokenEstimator;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Set;
+import java.util.UUID;
+import java.util.regex.Pattern;
+
+/**
+ * Elige el workflow de N8N de cada prompt con heurísticas locales (sin llamar a ningún modelo):
+ * longitud estimada en tokens, palabras de análisis, modo de la conversación y si el prompt
+ * usa palabras del glosario del usuario. Así la charla corta no paga el workflow pesado.
+ * <p>
+ * Cada ruta mide su latencia en {@code talky.ai.route.latency} (etiquetas {@code route} y {@code outcome}).
+ */
+@Component
+public class PromptRouter {
+
+    private static final Pattern WORD_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}']+");
+
+    private final ChatProperties.Routing properties;
+    private final N8nProperties n8nProperties;
+    private final GlossaryWordRepository glossaryWordRepository;
+    private final MeterRegistry meterRegistry;
+
+    // Palabras activas del glosario por usuario (se invalida al editar el glosario)
+    private final Cache<UUID, Set<String>> glossaryWords;
+
+    /**
+     * Workflow elegido para un prompt.
+     */
+    public record Route(PromptClass promptClass, String chatPath, String chatStreamPath) {
+    }
+
+    public PromptRouter(ChatProperties chatProperties,
+                        N8nProperties n8nProperties,
+                        GlossaryWordRepository glossaryWordRepository,
+                        MeterRegistry meterRegistry) {
+        this.properties = chatProperties.getRouting();
+        this.n8nProperties = n8nProperties;
+        this.glossaryWordRepository = glossaryWordRepository;
+        this.meterRegistry = meterRegistry;
+        this.glossaryWords = Caffeine.newBuilder()
+                .expireAfterWrite(properties.getGlossaryCacheTtl())
+                .maximumSize(10_000)
+                .build();
+    }
+
+    /**
+     * Clasifica el prompt y devuelve los webhooks de su clase.
+     */
+    public Route route(Conversation conversation, String prompt) {
+        if (!properties.isEnabled()) {
+            return toRoute(PromptClass.SIMPLE);
+        }
+        UUID userId = conversation.getUser().getId();
+        Set<String> glossary = glossaryWords.get(userId, id -> Set.copyOf(glossaryWordRepository.findActiveWordsByUserId(id)));
+        PromptClass promptClass = classify(prompt, conversation.getMode(), glossary);
+        meterRegistry.counter("talky.ai.route.requests", "route", promptClass.name()).increment();
+        return toRoute(promptClass);
+    }
+
+    /**
+     * Reglas, en orden: análisis o prompt largo → COMPLEX; palabra del glosario → GLOSSARY;
+     * prompt corto → SMALL_TALK; el resto → SIMPLE.
+     */
+    PromptClass classify(String prompt, String mode, Set<String> glossary) {
+        String text = prompt == null ? "" : prompt.toLowerCase(Locale.ROOT);
+        int tokens = TokenEstimator.estimate(text);
+
+        int complexMinTokens = "TEACHER".equalsIgnoreCase(mode)
+                ? properties.getTeacherComplexMinTokens()
+                : properties.getComplexMinTokens();
+        boolean analytic = properties.getComplexKeywords().stream().anyMatch(text::contains);
+        if (tokens >= complexMinTokens || (analytic && tokens > properties.getSmallTalkMaxTokens())) {
+            return PromptClass.COMPLEX;
+        }
+
+        if (!glossary.isEmpty() && usesGlossary(text, glossary)) {
+            return PromptClass.GLOSSARY;
+        }
+
+        if (tokens <= properties.getSmallTalkMaxTokens() && !analytic) {
+            return PromptClass.SMALL_TALK;
+        }
+        return PromptClass.SIMPLE;
+    }
+
+    private boolean usesGlossary(String text, Set<String> glossary) {
+        Set<String> words = new HashSet<>(Arrays.asList(WORD_SEPARATOR.split(text)));
+        for (String entry : glossary) {
+            // Las entradas de varias palabras se buscan como frase
+            if (entry.indexOf(' ') >= 0 ? text.contains(entry) : words.contains(entry)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Mide la latencia de la llamada a N8N de la ruta (hasta la respuesta completa).
+     */
+    public <T> Mono<T> record(Route route, Mono<T> call) {
+        return Mono.defer(() -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            return call
+                    .doOnSuccess(value -> sample.stop(timer(route, "success")))
+                    .doOnError(e -> sample.stop(timer(route, "error")));
+        });
+    }
+
+    /**
+     * Variante por partes: mide hasta el último fragmento.
+     */
+    public <T> Flux<T> record(Route route, Flux<T> call) {
+        return Flux.defer(() -> {
+            Timer.Sample sample = Timer.start(meterRegistry);
+            return call
+                    .doOnComplete(() -> sample.stop(timer(route, "success")))
+                    .doOnError(e -> sample.stop(timer(route, "error")));
+        });
+    }
+
+    /**
+     * Olvida las palabras del glosario en memoria del usuario (tras crear, editar o borrar una).
+     */
+    public void invalidateGlossary(UUID userId) {
+        glossaryWords.invalidate(userId);
+    }
+
+    private Route toRoute(PromptClass promptClass) {
+        ChatProperties.Workflow workflow = properties.getWorkflows().get(promptClass);
+        String chatPath = workflow != null && workflow.getChatPath() != null
+                ? workflow.getChatPath()
+                : n8nProperties.getChatPath();
+        String chatStreamPath = workflow != null && workflow.getChatStreamPath() != null
+                ? workflow.getChatStreamPath()
+                : n8nProperties.getChatStreamPath();
+        return new Route(promptClass, chatPath, chatStreamPath);
+    }
+
+    private Timer timer(Route route, String outcome) {
+        return Timer.builder("talky.ai.route.latency")
+                .description("Latencia de N8N por ruta de prompt")
+                .tag("route", route.promptClass().name())
+                .tag("outcome", outcome)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+    }
+}
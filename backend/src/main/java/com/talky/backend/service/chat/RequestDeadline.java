@@ -0,0 +1,58 @@
+package com.talky.backend.service.chat;
+
+import java.time.Duration;
+
+/**
+ * Instante a partir del cual el cliente deja de esperar la respuesta.
+ * Se mide con {@link System#nanoTime()}, así que solo vale dentro de esta instancia.
+ */
+public final class RequestDeadline {
+
+    private static final RequestDeadline NONE = new RequestDeadline(0, false);
+
+    private final long expiresAtNanos;
+    private final boolean bounded;
+
+    private RequestDeadline(long expiresAtNanos, boolean bounded) {
+        this.expiresAtNanos = expiresAtNanos;
+        this.bounded = bounded;
+    }
+
+    /**
+     * Sin plazo (trabajos asíncronos, resúmenes).
+     */
+    public static RequestDeadline none() {
+        return NONE;
+    }
+
+    public static RequestDeadline after(Duration timeout) {
+        return new RequestDeadline(System.nanoTime() + timeout.toNanos(), true);
+    }
+
+    public boolean isBounded() {
+        return bounded;
+    }
+
+    public boolean isExpired() {
+        return bounded && System.nanoTime() - expiresAtNanos >= 0;
+    }
+
+    /**
+     * Tiempo que queda (cero si ya venció). Solo tiene sentido si {@link #isBounded()}.
+     */
+    public Duration remaining() {
+        long nanos = expiresAtNanos - System.nanoTime();
+        return nanos > 0 ? Duration.ofNanos(nanos) : Duration.ZERO;
+    }
+
+    /**
+     * El menor entre el tiempo restante y {@code limit}.
+     */
+    public Duration cap(Duration limit) {
+        if (!bounded) {
+            return limit;
+        }
+        Duration remaining = remaining();
+        return remaining.compareTo(limit) < 0 ? remaining : limit;
+    }
+}
@@ -0,0 +1,89 @@
+package com.talky.backend.service.chat;
+
+import com.talky.backend.config.DeadlineProperties;
+import com.talky.backend.exception.DeadlineExceededException;
+import com.talky.backend.model.User;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Calcula el plazo de cada envío y cuenta el trabajo abandonado al vencer
+ * ({@code talky.ai.deadline.abandoned}, etiquetado por la etapa en la que se abandonó:
+ * lock, n8n, save o stream).
+ */
+@Component
+@EnableConfigurationProperties(DeadlineProperties.class)
+public class RequestDeadlines {
+
+    /**
+     * Cabecera con el tiempo que el cliente está dispuesto a esperar, en milisegundos.
+     * Es relativa para no depender de que los relojes del cliente y el servidor coincidan.
+     */
+    public static final String HEADER = "X-Request-Timeout";
+
+    private final DeadlineProperties properties;
+    private final MeterRegistry meterRegistry;
+
+    public RequestDeadlines(DeadlineProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Plazo del request: el de la cabecera (limitado a {@code max-timeout}) o el del rol del usuario.
+     */
+    public RequestDeadline resolve(User user, String timeoutHeader) {
+        if (!properties.isEnabled()) {
+            return RequestDeadline.none();
+        }
+        Duration timeout = parse(timeoutHeader);
+        if (timeout == null) {
+            timeout = properties.getDefaults().getOrDefault(user.getRole(), properties.getDefaultTimeout());
+        }
+        if (timeout.compareTo(properties.getMaxTimeout()) > 0) {
+            timeout = properties.getMaxTimeout();
+        }
+        return RequestDeadline.after(timeout);
+    }
+
+    /**
+     * Abandona si el plazo ya venció.
+     */
+    public void check(RequestDeadline deadline, String stage) {
+        if (deadline.isExpired()) {
+            throw abandoned(stage);
+        }
+    }
+
+    /**
+     * Abandona si no queda tiempo suficiente para una llamada a N8N.
+     */
+    public void checkCallBudget(RequestDeadline deadline) {
+        if (deadline.isBounded() && deadline.remaining().compareTo(properties.getMinCallBudget()) < 0) {
+            throw abandoned("n8n");
+        }
+    }
+
+    /**
+     * Cuenta el trabajo abandonado y devuelve la excepción para lanzarla.
+     */
+    public DeadlineExceededException abandoned(String stage) {
+        meterRegistry.counter("talky.ai.deadline.abandoned", "stage", stage).increment();
+        return new DeadlineExceededException();
+    }
+
+    private Duration parse(String timeoutHeader) {
+        if (timeoutHeader == null || timeoutHeader.isBlank()) {
+            return null;
+        }
+        try {
+            long millis = Long.parseLong(timeoutHeader.trim());
+            return millis > 0 ? Duration.ofMillis(millis) : null;
+        } catch (NumberFormatException e) {
+            return null;
+        }
+    }
+}
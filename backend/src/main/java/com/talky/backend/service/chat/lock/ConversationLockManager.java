@@ -0,0 +1,33 @@
+package com.talky.backend.service.chat.lock;
+
+import com.talky.backend.exception.ConversationLockLostException;
+
+import java.util.UUID;
+
+/**
+ * Bloqueo por conversación para evitar procesar dos mensajes a la vez en la misma conversación.
+ * El bloqueo no es reentrante y puede liberarse desde un hilo distinto al que lo tomó
+ * (p. ej. al terminar un stream SSE).
+ */
+public interface ConversationLockManager {
+
+    /**
+     * Intenta bloquear la conversación sin esperar.
+     *
+     * @return true si se obtuvo el bloqueo, false si otra petición la tiene bloqueada
+     */
+    boolean tryLock(UUID conversationId);
+
+    /**
+     * Libera el bloqueo de la conversación. No hace nada si no estaba bloqueada.
+     */
+    void unlock(UUID conversationId);
+
+    /**
+     * Comprueba, antes de guardar el resultado, que esta instancia sigue teniendo el bloqueo.
+     *
+     * @throws ConversationLockLostException si el bloqueo se perdió mientras se procesaba
+     */
+    default void checkHeld(UUID conversationId) {
+    }
+}
@@ -0,0 +1,30 @@
+package com.talky.backend.service.chat.lock;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Bloqueo en memoria, válido para una sola instancia de la aplicación.
+ * Usa un set concurrente (particionado internamente por ConcurrentHashMap),
+ * de modo que tomar el bloqueo es una única operación atómica.
+ */
+@Component
+@ConditionalOnProperty(name = "talky.chat.lock-manager", havingValue = "memory", matchIfMissing = true)
+public class InMemoryConversationLockManager implements ConversationLockManager {
+
+    private final Set<UUID> locked = ConcurrentHashMap.newKeySet();
+
+    @Override
+    public boolean tryLock(UUID conversationId) {
+        return locked.add(conversationId);
+    }
+
+    @Override
+    public void unlock(UUID conversationId) {
+        locked.remove(conversationId);
+    }
+}
@@ -0,0 +1,189 @@
+package com.talky.backend.service.chat.lock;
+
+import com.talky.backend.config.ChatProperties;
+import com.talky.backend.exception.ConversationLockLostException;
+import com.zaxxer.hikari.HikariDataSource;
+import jakarta.annotation.PreDestroy;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bloqueo válido entre varias instancias, con advisory locks de PostgreSQL.
+ * <p>
+ * Los advisory locks de sesión son reentrantes dentro de la misma sesión, así que primero
+ * se bloquea en memoria (exclusión dentro de esta instancia) y después con
+ * {@code pg_try_advisory_lock} (exclusión entre instancias).
+ * <p>
+ * Los bloqueos se reparten entre {@code talky.chat.lock-sessions} conexiones dedicadas según
+ * la clave de la conversación, de modo que el unlock siempre va a la sesión que tomó el bloqueo
+ * y las conversaciones de sesiones distintas no se esperan entre sí. El número de conexiones
+ * retenidas del pool es fijo, no crece con las conversaciones bloqueadas.
+ * <p>
+ * La conexión solo se valida tras un error de SQL. Si ya no es válida se expulsa del pool
+ * (no se devuelve con los bloqueos de su sesión) y PostgreSQL libera todos los bloqueos que
+ * mantenía: esas conversaciones se marcan como perdidas y {@link #checkHeld} falla para que
+ * quien las procesaba no guarde su resultado, ya que otra instancia puede haberlas tomado.
+ */
+@Component
+@ConditionalOnProperty(name = "talky.chat.lock-manager", havingValue = "postgres")
+public class PostgresAdvisoryConversationLockManager implements ConversationLockManager {
+
+    private final DataSource dataSource;
+    private final InMemoryConversationLockManager localLocks = new InMemoryConversationLockManager();
+    private final Session[] sessions;
+
+    // Conversaciones bloqueadas cuya sesión se perdió (hasta que su dueño las libere)
+    private final Set<UUID> lost = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Conexión dedicada que mantiene los advisory locks de una parte de las conversaciones.
+     * Se protege con ReentrantLock (no synchronized) para no fijar hilos virtuales durante el I/O.
+     */
+    private static final class Session {
+        final ReentrantLock lock = new ReentrantLock();
+        final Set<UUID> held = new HashSet<>();
+        Connection connection;
+    }
+
+    public PostgresAdvisoryConversationLockManager(DataSource dataSource, ChatProperties chatProperties) {
+        this.dataSource = dataSource;
+        this.sessions = new Session[Math.max(1, chatProperties.getLockSessions())];
+        for (int i = 0; i < sessions.length; i++) {
+            sessions[i] = new Session();
+        }
+    }
+
+    @Override
+    public boolean tryLock(UUID conversationId) {
+        if (!localLocks.tryLock(conversationId)) {
+            return false;
+        }
+        Session session = sessionFor(conversationId);
+        session.lock.lock();
+        try {
+            if (execute(session, "SELECT pg_try_advisory_lock(?)", conversationId)) {
+                session.held.add(conversationId);
+                return true;
+            }
+        } catch (SQLException e) {
+            localLocks.unlock(conversationId);
+            throw new IllegalStateException("No se pudo bloquear la conversación", e);
+        } finally {
+            session.lock.unlock();
+        }
+        localLocks.unlock(conversationId);
+        return false;
+    }
+
+    @Override
+    public void unlock(UUID conversationId) {
+        Session session = sessionFor(conversationId);
+        session.lock.lock();
+        try {
+            // Si su sesión se perdió, PostgreSQL ya liberó el bloqueo
+            if (!lost.remove(conversationId) && session.held.remove(conversationId)) {
+                execute(session, "SELECT pg_advisory_unlock(?)", conversationId);
+            }
+        } catch (SQLException e) {
+            // Si la conexión no era válida la sesión ya se cerró y con ella el bloqueo
+            lost.remove(conversationId);
+            e.printStackTrace();
+        } finally {
+            session.lock.unlock();
+            localLocks.unlock(conversationId);
+        }
+    }
+
+    @Override
+    public void checkHeld(UUID conversationId) {
+        if (lost.contains(conversationId)) {
+            throw new ConversationLockLostException();
+        }
+    }
+
+    private Session sessionFor(UUID conversationId) {
+        return sessions[Math.floorMod(Long.hashCode(toLockKey(conversationId)), sessions.length)];
+    }
+
+    /**
+     * Ejecuta la consulta en la sesión (con su lock tomado). Tras un error se valida la
+     * conexión: si ya no sirve, se descarta y sus bloqueos pasan a perdidos.
+     */
+    private boolean execute(Session session, String sql, UUID conversationId) throws SQLException {
+        if (session.connection == null) {
+            session.connection = dataSource.getConnection();
+            session.connection.setAutoCommit(true);
+        }
+        try (PreparedStatement statement = session.connection.prepareStatement(sql)) {
+            statement.setLong(1, toLockKey(conversationId));
+            try (ResultSet rs = statement.executeQuery()) {
+                return rs.next() && rs.getBoolean(1);
+            }
+        } catch (SQLException e) {
+            if (!isValid(session.connection)) {
+                lost.addAll(session.held);
+                session.held.clear();
+                discard(session);
+            }
+            throw e;
+        }
+    }
+
+    private static boolean isValid(Connection connection) {
+        try {
+            return connection.isValid(1);
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Convierte el UUID de la conversación en la clave bigint del advisory lock.
+     */
+    static long toLockKey(UUID conversationId) {
+        return conversationId.getMostSignificantBits() ^ conversationId.getLeastSignificantBits();
+    }
+
+    /**
+     * Cierra la conexión física de la sesión en lugar de devolverla al pool,
+     * para que PostgreSQL termine la sesión y libere sus advisory locks.
+     */
+    private void discard(Session session) {
+        Connection connection = session.connection;
+        if (connection == null) {
+            return;
+        }
+        session.connection = null;
+        try {
+            if (dataSource.isWrapperFor(HikariDataSource.class)) {
+                dataSource.unwrap(HikariDataSource.class).evictConnection(connection);
+            } else {
+                connection.abort(Runnable::run);
+            }
+        } catch (SQLException | RuntimeException ignored) {
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        for (Session session : sessions) {
+            session.lock.lock();
+            try {
+                discard(session);
+            } finally {
+                session.lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.talky.backend.service.idempotency;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Dónde se guardan las claves {@code Idempotency-Key} y sus respuestas.
+ * Las claves vencen pasado {@code talky.idempotency.ttl} y entonces se pueden volver a reservar.
+ */
+public interface IdempotencyStore {
+
+    /**
+     * Clave de una petición: la misma clave puede usarse en otra operación o por otro usuario.
+     */
+    record Key(UUID userId, String operation, String key) {
+    }
+
+    /**
+     * Resultado guardado de la petición original. Si {@code reason} no es null terminó con
+     * un error (se repite lanzándolo); si no, con una respuesta de cuerpo {@code body} en JSON.
+     */
+    record StoredResponse(int status, Map<String, List<String>> headers, String body, String reason) {
+    }
+
+    /**
+     * Clave vigente: {@code response} es null mientras la petición original está en curso.
+     * La huella detecta claves reutilizadas con otra petición.
+     */
+    record Entry(String fingerprint, StoredResponse response) {
+    }
+
+    /**
+     * Reserva la clave si no existe (o venció). Es atómico: solo una petición la obtiene.
+     *
+     * @return true si esta petición la reservó y debe ejecutarse
+     */
+    boolean reserve(Key key, String fingerprint);
+
+    Optional<Entry> find(Key key);
+
+    /**
+     * Guarda el resultado de una clave reservada.
+     */
+    void complete(Key key, StoredResponse response);
+
+    /**
+     * Libera una clave reservada sin resultado, para que un reintento vuelva a ejecutarse.
+     */
+    void release(Key key);
+}
@@ -0,0 +1,54 @@
+package com.talky.backend.service.idempotency;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.talky.backend.config.IdempotencyProperties;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.Optional;
+
+/**
+ * Claves en memoria, válidas para una sola instancia de la aplicación: con varias réplicas
+ * un reintento que llega a otra instancia se vuelve a ejecutar (usar {@code store=postgres}).
+ */
+@Component
+@ConditionalOnProperty(name = "talky.idempotency.store", havingValue = "memory", matchIfMissing = true)
+public class InMemoryIdempotencyStore implements IdempotencyStore {
+
+    private final Cache<Key, Entry> entries;
+
+    public InMemoryIdempotencyStore(IdempotencyProperties properties) {
+        this.entries = Caffeine.newBuilder()
+                .expireAfterWrite(properties.getTtl())
+                .maximumSize(properties.getMaximumSize())
+                .build();
+    }
+
+    @Override
+    public boolean reserve(Key key, String fingerprint) {
+        return entries.asMap().putIfAbsent(key, new Entry(fingerprint, null)) == null;
+    }
+
+    @Override
+    public Optional<Entry> find(Key key) {
+        return Optional.ofNullable(entries.getIfPresent(key));
+    }
+
+    @Override
+    public void complete(Key key, StoredResponse response) {
+        entries.asMap().computeIfPresent(key, (k, entry) -> new Entry(entry.fingerprint(), response));
+    }
+
+    @Override
+    public void release(Key key) {
+        entries.asMap().computeIfPresent(key, (k, entry) -> entry.response() == null ? null : entry);
+    }
+
+    /**
+     * Claves recordadas actualmente (en curso o terminadas).
+     */
+    public long getEntryCount() {
+        return entries.estimatedSize();
+    }
+}
@@ -0,0 +1,106 @@
+package com.talky.backend.service.idempotency;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.talky.backend.config.IdempotencyProperties;
+import com.talky.backend.model.IdempotencyRecord;
+import com.talky.backend.repository.IdempotencyRecordRepository;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Claves en PostgreSQL (tabla idempotency_keys), compartidas entre instancias: un reintento
+ * que llega a otra réplica ve la reserva o la respuesta de la petición original.
+ * <p>
+ * Si una instancia cae con una petición en curso, su clave queda reservada hasta que vence.
+ * Las claves vencidas se reutilizan al reservarlas y se borran como mucho una vez por {@code ttl}.
+ */
+@Component
+@ConditionalOnProperty(name = "talky.idempotency.store", havingValue = "postgres")
+public class PostgresIdempotencyStore implements IdempotencyStore {
+
+    private static final TypeReference<Map<String, List<String>>> HEADERS_TYPE = new TypeReference<>() {
+    };
+
+    private final IdempotencyRecordRepository repository;
+    private final ObjectMapper objectMapper;
+    private final Duration ttl;
+
+    // Última limpieza de claves vencidas (epoch millis)
+    private final AtomicLong lastCleanup = new AtomicLong();
+
+    public PostgresIdempotencyStore(IdempotencyRecordRepository repository,
+                                    ObjectMapper objectMapper,
+                                    IdempotencyProperties properties) {
+        this.repository = repository;
+        this.objectMapper = objectMapper;
+        this.ttl = properties.getTtl();
+    }
+
+    @Override
+    @Transactional
+    public boolean reserve(Key key, String fingerprint) {
+        deleteExpiredIfDue();
+        return repository.tryReserve(key.userId(), key.operation(), key.key(), fingerprint,
+                Instant.now().plus(ttl)) == 1;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<Entry> find(Key key) {
+        return repository.findByUserIdAndOperationAndIdempotencyKey(key.userId(), key.operation(), key.key())
+                .map(record -> new Entry(record.getFingerprint(), toResponse(record)));
+    }
+
+    @Override
+    @Transactional
+    public void complete(Key key, StoredResponse response) {
+        repository.complete(key.userId(), key.operation(), key.key(), response.status(),
+                writeHeaders(response.headers()), response.body(), response.reason());
+    }
+
+    @Override
+    @Transactional
+    public void release(Key key) {
+        repository.release(key.userId(), key.operation(), key.key());
+    }
+
+    private void deleteExpiredIfDue() {
+        long now = System.currentTimeMillis();
+        long last = lastCleanup.get();
+        if (now - last >= ttl.toMillis() && lastCleanup.compareAndSet(last, now)) {
+            repository.deleteExpired();
+        }
+    }
+
+    private StoredResponse toResponse(IdempotencyRecord record) {
+        if (record.getStatusCode() == null) {
+            return null;
+        }
+        try {
+            Map<String, List<String>> headers = record.getHeaders() == null
+                    ? Map.of()
+                    : objectMapper.readValue(record.getHeaders(), HEADERS_TYPE);
+            return new StoredResponse(record.getStatusCode(), headers, record.getBody(), record.getReason());
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Respuesta idempotente ilegible", e);
+        }
+    }
+
+    private String writeHeaders(Map<String, List<String>> headers) {
+        try {
+            return objectMapper.writeValueAsString(headers);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("No se pudieron guardar las cabeceras", e);
+        }
+    }
+}
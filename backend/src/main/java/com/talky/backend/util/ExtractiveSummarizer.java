@@ -0,0 +1,111 @@
+package com.talky.backend.util;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Resumen extractivo local por frecuencia de palabras.
+ * <p>
+ * Parte cada pasaje en oraciones, puntúa cada oración por la frecuencia en todo el texto
+ * de sus palabras significativas (sin stopwords, normalizadas con {@link MinHash#normalize})
+ * y se queda con las mejor puntuadas hasta llenar el presupuesto de tokens
+ * ({@link TokenEstimator}). Las oraciones elegidas se devuelven en su orden original.
+ */
+public final class ExtractiveSummarizer {
+
+    private static final Pattern SENTENCE_END = Pattern.compile("(?<=[.!?\\n])\\s+");
+
+    // Oraciones más cortas que esto (en palabras significativas) no aportan contexto
+    private static final int MIN_CONTENT_WORDS = 2;
+
+    private static final Set<String> STOPWORDS = Set.of(
+            // español
+            "el", "la", "los", "las", "un", "una", "unos", "unas", "de", "del", "al", "a", "en", "y", "o", "u",
+            "que", "es", "son", "se", "lo", "le", "les", "me", "te", "mi", "tu", "su", "sus", "por", "para",
+            "con", "sin", "como", "pero", "mas", "muy", "ya", "si", "no", "yo", "ella", "esto",
+            "eso", "este", "esta", "ese", "esa", "hay", "ser", "estar", "estoy", "tiene", "puede",
+            "cual", "cuando", "donde", "porque", "tambien", "gracias", "ok", "vale",
+            // inglés
+            "the", "an", "of", "to", "in", "on", "and", "or", "is", "are", "was", "be", "it", "this",
+            "that", "for", "with", "as", "at", "by", "i", "you", "he", "she", "we", "they", "do", "does"
+    );
+
+    /**
+     * Fragmento de texto con su etiqueta (p. ej. "USER" o "AI"), que se conserva en la salida.
+     */
+    public record Passage(String label, String text) {
+    }
+
+    private record Sentence(int order, String label, String text, double score, int tokens) {
+    }
+
+    private ExtractiveSummarizer() {
+    }
+
+    /**
+     * Selecciona las oraciones más representativas hasta {@code maxTokens} tokens estimados.
+     *
+     * @return las oraciones elegidas como "[ETIQUETA] oración", en orden original y separadas por " | "
+     */
+    public static String summarize(List<Passage> passages, int maxTokens) {
+        List<String[]> split = new ArrayList<>();
+        Map<String, Integer> frequencies = new HashMap<>();
+
+        for (Passage passage : passages) {
+            for (String sentence : SENTENCE_END.split(passage.text().trim())) {
+                if (sentence.isBlank()) {
+                    continue;
+                }
+                split.add(new String[]{passage.label(), sentence.trim()});
+                contentWords(sentence).forEach(word -> frequencies.merge(word, 1, Integer::sum));
+            }
+        }
+
+        List<Sentence> sentences = new ArrayList<>();
+        for (int i = 0; i < split.size(); i++) {
+            String label = split.get(i)[0];
+            String text = split.get(i)[1];
+            List<String> words = contentWords(text);
+            if (words.size() < MIN_CONTENT_WORDS) {
+                continue;
+            }
+            // Media de frecuencias: no premia oraciones largas solo por serlo
+            double score = words.stream().mapToInt(frequencies::get).sum() / Math.sqrt(words.size());
+            sentences.add(new Sentence(i, label, text, score, TokenEstimator.estimate(text) + 3));
+        }
+
+        List<Sentence> selected = new ArrayList<>();
+        int used = 0;
+        for (Sentence sentence : sentences.stream()
+                .sorted(Comparator.comparingDouble(Sentence::score).reversed()
+                        .thenComparing(Comparator.comparingInt(Sentence::order).reversed()))
+                .toList()) {
+            if (used + sentence.tokens() > maxTokens) {
+                continue;
+            }
+            selected.add(sentence);
+            used += sentence.tokens();
+        }
+
+        return selected.stream()
+                .sorted(Comparator.comparingInt(Sentence::order))
+                .map(s -> "[" + s.label() + "] " + s.text())
+                .collect(Collectors.joining(" | "));
+    }
+
+    private static List<String> contentWords(String sentence) {
+        List<String> words = new ArrayList<>();
+        for (String word : MinHash.normalize(sentence).split(" ")) {
+            if (word.length() > 2 && !STOPWORDS.contains(word)) {
+                words.add(word);
+            }
+        }
+        return words;
+    }
+}
@@ -0,0 +1,98 @@
+package com.talky.backend.util;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Similitud aproximada entre textos cortos con shingles de caracteres y MinHash.
+ * Se usa para detectar preguntas casi idénticas ("¿qué es el present perfect?" vs
+ * "que es el present perfect").
+ */
+public final class MinHash {
+
+    // Primo de Mersenne 2^31 - 1 para las funciones hash universales
+    private static final long PRIME = 2147483647L;
+
+    private final int shingleSize;
+    private final long[] a;
+    private final long[] b;
+
+    /**
+     * @param numHashes   número de funciones hash (tamaño de la firma)
+     * @param shingleSize tamaño de los shingles de caracteres
+     * @param seed        semilla fija para que las firmas sean comparables entre sí
+     */
+    public MinHash(int numHashes, int shingleSize, long seed) {
+        this.shingleSize = shingleSize;
+        this.a = new long[numHashes];
+        this.b = new long[numHashes];
+        Random random = new Random(seed);
+        for (int i = 0; i < numHashes; i++) {
+            a[i] = 1 + random.nextInt(Integer.MAX_VALUE - 1);
+            b[i] = random.nextInt(Integer.MAX_VALUE);
+        }
+    }
+
+    /**
+     * Normaliza un texto: minúsculas, sin tildes, sin signos de puntuación
+     * y con los espacios colapsados.
+     */
+    public static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}", "")
+                .toLowerCase(Locale.ROOT)
+                .replaceAll("[^\\p{L}\\p{N}]+", " ");
+        return normalized.trim();
+    }
+
+    /**
+     * Calcula la firma MinHash de un texto ya normalizado.
+     */
+    public int[] signature(String normalizedText) {
+        int[] signature = new int[a.length];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+
+        for (int shingle : shingles(normalizedText)) {
+            long x = shingle & 0xffffffffL;
+            for (int i = 0; i < a.length; i++) {
+                int h = (int) ((a[i] * x + b[i]) % PRIME);
+                if (h < signature[i]) {
+                    signature[i] = h;
+                }
+            }
+        }
+        return signature;
+    }
+
+    /**
+     * Estima la similitud de Jaccard entre dos textos a partir de sus firmas (0..1).
+     */
+    public static double similarity(int[] first, int[] second) {
+        int equal = 0;
+        for (int i = 0; i < first.length; i++) {
+            if (first[i] == second[i]) {
+                equal++;
+            }
+        }
+        return (double) equal / first.length;
+    }
+
+    private Set<Integer> shingles(String text) {
+        Set<Integer> shingles = new HashSet<>();
+        if (text.length() <= shingleSize) {
+            shingles.add(text.hashCode());
+            return shingles;
+        }
+        for (int i = 0; i + shingleSize <= text.length(); i++) {
+            shingles.add(text.substring(i, i + shingleSize).hashCode());
+        }
+        return shingles;
+    }
+}
@@ -0,0 +1,43 @@
+package com.talky.backend.util;
+
+/**
+ * Estimación rápida y local del número de tokens de un texto, sin tokenizador del modelo.
+ * <p>
+ * Cuenta cada palabra como un token más uno por cada 4 caracteres adicionales (las palabras
+ * largas se parten en varios tokens) y cada signo de puntuación como un token. Es una
+ * aproximación conservadora para textos en español e inglés; basta para acotar el tamaño
+ * del contexto enviado a N8N.
+ */
+public final class TokenEstimator {
+
+    private static final int CHARS_PER_EXTRA_TOKEN = 4;
+
+    private TokenEstimator() {
+    }
+
+    public static int estimate(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+
+        int tokens = 0;
+        int wordLength = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (Character.isLetterOrDigit(c)) {
+                wordLength++;
+                continue;
+            }
+            tokens += wordTokens(wordLength);
+            wordLength = 0;
+            if (!Character.isWhitespace(c)) {
+                tokens++;
+            }
+        }
+        return tokens + wordTokens(wordLength);
+    }
+
+    private static int wordTokens(int length) {
+        return length == 0 ? 0 : 1 + (length - 1) / CHARS_PER_EXTRA_TOKEN;
+    }
+}
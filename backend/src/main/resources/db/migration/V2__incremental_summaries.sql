@@ -0,0 +1,9 @@
+-- ============================================
+-- V2: resúmenes incrementales
+-- - compaction_count: compactaciones acumuladas en el resumen
+-- - covered_until: fecha del último mensaje incluido en el resumen
+-- ============================================
+
+ALTER TABLE conversation_summaries
+ADD COLUMN compaction_count INT NOT NULL DEFAULT 1,
+ADD COLUMN covered_until TIMESTAMPTZ;
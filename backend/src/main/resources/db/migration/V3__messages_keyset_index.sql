@@ -0,0 +1,9 @@
+-- ============================================
+-- V3: índice compuesto para paginar el historial
+-- Permite paginación por keyset (created_at, id) sin ordenar en memoria.
+-- Reemplaza al índice simple por conversation_id (queda cubierto por este).
+-- ============================================
+
+CREATE INDEX idx_messages_conversation_created ON messages(conversation_id, created_at DESC, id DESC);
+
+DROP INDEX IF EXISTS idx_messages_conversation_id;
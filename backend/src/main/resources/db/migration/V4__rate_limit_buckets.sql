@@ -0,0 +1,9 @@
+-- ============================================
+-- V4: estado compartido de rate limiting (Bucket4j)
+-- Un bucket por usuario y rol, compartido entre todas las instancias.
+-- ============================================
+
+CREATE TABLE rate_limit_buckets (
+    id VARCHAR(100) PRIMARY KEY,
+    state BYTEA
+);
@@ -0,0 +1,27 @@
+-- ============================================
+-- V5: trabajos de IA pendientes (outbox de mensajes asíncronos)
+-- El mensaje del usuario y su trabajo se guardan en la misma transacción;
+-- un pool de workers los envía a N8N y guarda la respuesta.
+-- ============================================
+
+CREATE TABLE ai_jobs (
+    id UUID PRIMARY KEY DEFAULT gen_random_uuid(),
+    conversation_id UUID NOT NULL,
+    user_message_id UUID,
+    ai_message_id UUID,
+    student_email VARCHAR(255) NOT NULL,
+    prompt TEXT NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    attempts INT NOT NULL DEFAULT 0,
+    locked_until TIMESTAMPTZ,
+    error TEXT,
+    created_at TIMESTAMPTZ DEFAULT now(),
+    updated_at TIMESTAMPTZ DEFAULT now(),
+    CONSTRAINT fk_ai_job_conversation FOREIGN KEY (conversation_id) REFERENCES conversations(id) ON DELETE CASCADE,
+    CONSTRAINT fk_ai_job_user_message FOREIGN KEY (user_message_id) REFERENCES messages(id) ON DELETE SET NULL,
+    CONSTRAINT fk_ai_job_ai_message FOREIGN KEY (ai_message_id) REFERENCES messages(id) ON DELETE SET NULL,
+    CONSTRAINT chk_ai_job_status CHECK (status IN ('PENDING', 'PROCESSING', 'DONE', 'FAILED'))
+);
+
+-- Los workers solo recorren los trabajos pendientes o en curso
+CREATE INDEX idx_ai_jobs_active ON ai_jobs (created_at) WHERE status IN ('PENDING', 'PROCESSING');
@@ -0,0 +1,27 @@
+-- ============================================
+-- V6: contadores desnormalizados
+-- Mensajes y fecha del último mensaje por conversación, y conversaciones por usuario,
+-- para que el disparo de resúmenes y el límite de conversaciones no cuenten filas.
+-- ============================================
+
+ALTER TABLE conversations
+    ADD COLUMN message_count INT NOT NULL DEFAULT 0,
+    ADD COLUMN last_message_at TIMESTAMPTZ;
+
+UPDATE conversations c
+SET message_count = s.total,
+    last_message_at = s.last_at
+FROM (SELECT conversation_id, COUNT(*) AS total, MAX(created_at) AS last_at
+      FROM messages
+      GROUP BY conversation_id) s
+WHERE s.conversation_id = c.id;
+
+ALTER TABLE users
+    ADD COLUMN conversation_count INT NOT NULL DEFAULT 0;
+
+UPDATE users u
+SET conversation_count = s.total
+FROM (SELECT user_id, COUNT(*) AS total
+      FROM conversations
+      GROUP BY user_id) s
+WHERE s.user_id = u.id;
@@ -0,0 +1,7 @@
+-- ============================================
+-- V7: reintentos con espera de los trabajos de IA
+-- Un trabajo que falló no se vuelve a reservar hasta next_attempt_at (espera exponencial),
+-- así una caída de N8N no agota sus intentos en unos segundos.
+-- ============================================
+
+ALTER TABLE ai_jobs ADD COLUMN next_attempt_at TIMESTAMPTZ;
@@ -0,0 +1,24 @@
+-- ============================================
+-- V8: claves Idempotency-Key compartidas entre instancias
+-- (talky.idempotency.store=postgres). Una fila por usuario, operación y clave;
+-- status_code es NULL mientras la petición original está en curso.
+-- ============================================
+
+CREATE TABLE idempotency_keys (
+    id UUID PRIMARY KEY DEFAULT gen_random_uuid(),
+    user_id UUID NOT NULL,
+    operation VARCHAR(50) NOT NULL,
+    idempotency_key VARCHAR(255) NOT NULL,
+    fingerprint VARCHAR(255) NOT NULL,
+    status_code INT,
+    headers TEXT,
+    body TEXT,
+    reason TEXT,
+    created_at TIMESTAMPTZ NOT NULL DEFAULT now(),
+    expires_at TIMESTAMPTZ NOT NULL,
+    CONSTRAINT uq_idempotency_key UNIQUE (user_id, operation, idempotency_key),
+    CONSTRAINT fk_idempotency_user FOREIGN KEY (user_id) REFERENCES users(id) ON DELETE CASCADE
+);
+
+-- Limpieza periódica de las claves vencidas
+CREATE INDEX idx_idempotency_keys_expires ON idempotency_keys (expires_at);
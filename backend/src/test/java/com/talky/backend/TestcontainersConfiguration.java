@@ -7,12 +7,15 @@ import org.testcontainers.containers.PostgreSQLContainer;
 import org.testcontainers.utility.DockerImageName;
 
 @TestConfiguration(proxyBeanMethods = false)
-class TestcontainersConfiguration {
+public class TestcontainersConfiguration {
+
+	// Versión fija: con "latest" los tests cambian de PostgreSQL sin avisar
+	public static final DockerImageName POSTGRES_IMAGE = DockerImageName.parse("postgres:16-alpine");
 
 	@Bean
 	@ServiceConnection
 	PostgreSQLContainer<?> postgresContainer() {
-		return new PostgreSQLContainer<>(DockerImageName.parse("postgres:latest"));
+		return new PostgreSQLContainer<>(POSTGRES_IMAGE);
 	}
 
 }
@@ -0,0 +1,162 @@
+package com.talky.backend.benchmark;
+
+import com.talky.backend.TestcontainersConfiguration;
+import com.talky.backend.model.User;
+import com.talky.backend.model.chat.Conversation;
+import com.talky.backend.repository.UserRepository;
+import com.talky.backend.service.chat.ConversationService;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.boot.test.web.server.LocalServerPort;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Prueba de carga del chat completo: aplicación real sobre Postgres (Testcontainers) y
+ * N8N simulado con {@link N8nStubServer}. Mide {@code POST /api/messages/{id}} con muchos
+ * usuarios y conversaciones concurrentes e imprime p50/p90/p99/p99.9; la distribución completa
+ * queda en {@code target/loadtest/}. Solo se ejecuta a demanda:
+ * <pre>
+ * mvn test -Dtest=ChatLoadTest -Dloadtest=true \
+ *     -Dloadtest.users=200 -Dloadtest.messages=25 -Dloadtest.thinkTimeMs=0 \
+ *     -Dloadtest.n8n.latencyMs=300 -Dloadtest.n8n.jitterMs=200 -Dloadtest.n8n.errorRate=0.01
+ * </pre>
+ * Con {@code -Dloadtest.stream=true} se mide el envío en streaming y con
+ * {@code -Dloadtest.maxP99Ms=...} la prueba falla si el p99 supera ese valor (control de regresiones).
+ */
+@Tag("loadtest")
+@EnabledIfSystemProperty(named = "loadtest", matches = "true")
+@Import({TestcontainersConfiguration.class, ChatLoadTest.LoadTestSecurity.class})
+@SpringBootTest(webEnvironment = SpringBootTest.WebEnvironment.RANDOM_PORT)
+class ChatLoadTest {
+
+    // Los tokens de la prueba son "loadtest:<sub>"; no hace falta Cognito
+    private static final String TOKEN_PREFIX = "loadtest:";
+
+    private static N8nStubServer n8n;
+
+    private final int users = Integer.getInteger("loadtest.users", 200);
+    private final int conversationsPerUser = Math.min(4, Integer.getInteger("loadtest.conversationsPerUser", 1));
+    private final int teacherEvery = Integer.getInteger("loadtest.teacherEvery", 10);
+    private final long maxP99Ms = Long.getLong("loadtest.maxP99Ms", 0);
+
+    @LocalServerPort
+    private int port;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ConversationService conversationService;
+
+    @DynamicPropertySource
+    static void properties(DynamicPropertyRegistry registry) throws IOException {
+        n8n = new N8nStubServer(N8nStubServer.Settings.fromSystemProperties());
+        registry.add("talky.n8n.base-url", n8n::getBaseUrl);
+        // Se mide el chat, no el rate limiting
+        for (User.Role role : User.Role.values()) {
+            registry.add("talky.rate-limit.limits." + role.name(), () -> 1_000_000);
+        }
+    }
+
+    @AfterAll
+    static void stopStub() {
+        if (n8n != null) {
+            n8n.close();
+        }
+    }
+
+    @Test
+    void sendMessageLatency() throws Exception {
+        List<ChatTrafficGenerator.Session> sessions = createSessions();
+        ChatTrafficGenerator generator = new ChatTrafficGenerator();
+        ChatTrafficGenerator.Settings settings = ChatTrafficGenerator.Settings.fromSystemProperties();
+        String baseUrl = "http://localhost:" + port;
+
+        // Calentamiento (JIT, pools de conexiones) con pocas conversaciones
+        generator.run(baseUrl, sessions.subList(0, Math.min(10, sessions.size())),
+                new ChatTrafficGenerator.Settings(2, Duration.ZERO, settings.requestTimeout(), settings.stream()));
+
+        ChatTrafficGenerator.Result result = generator.run(baseUrl, sessions, settings);
+
+        String endpoint = settings.stream() ? "POST /api/messages/{id}/stream" : "POST /api/messages/{id}";
+        LatencyReport.print(String.format("%s - %d conversaciones x %d mensajes",
+                endpoint, sessions.size(), settings.messagesPerConversation()), result, System.out);
+        System.out.printf("N8N simulado: chat=%d, stream=%d, resúmenes=%d, errores inyectados=%d%n",
+                n8n.getChatRequests(), n8n.getStreamRequests(), n8n.getSummaryRequests(), n8n.getErrors());
+        Path report = Path.of("target", "loadtest", "chat-latency-" + Instant.now().toEpochMilli() + ".hgrm");
+        LatencyReport.write(result, report);
+        System.out.println("Distribución completa: " + report.toAbsolutePath());
+
+        assertThat(result.latencies().getTotalCount()).isPositive();
+        if (maxP99Ms > 0) {
+            assertThat(result.latencies().getValueAtPercentile(99) / 1000).isLessThanOrEqualTo(maxP99Ms);
+        }
+    }
+
+    /**
+     * Crea los usuarios (uno de cada {@code teacherEvery} es profesor) y sus conversaciones.
+     */
+    private List<ChatTrafficGenerator.Session> createSessions() {
+        String run = UUID.randomUUID().toString().substring(0, 8);
+        List<ChatTrafficGenerator.Session> sessions = new ArrayList<>();
+        for (int i = 0; i < users; i++) {
+            String sub = "loadtest-" + run + "-" + i;
+            User.Role role = teacherEvery > 0 && i % teacherEvery == 0 ? User.Role.TEACHER : User.Role.STUDENT;
+            User user = userRepository.save(User.builder()
+                    .cognitoSub(sub)
+                    .email(sub + "@loadtest.talky")
+                    .name("Usuario de carga " + i)
+                    .role(role)
+                    .build());
+            for (int c = 0; c < conversationsPerUser; c++) {
+                Conversation conversation = conversationService.createConversation(user, "Carga", role.name());
+                sessions.add(new ChatTrafficGenerator.Session(TOKEN_PREFIX + sub, conversation.getId()));
+            }
+        }
+        return sessions;
+    }
+
+    /**
+     * Sustituye la validación de Cognito: el token lleva el sub del usuario de prueba.
+     */
+    @TestConfiguration(proxyBeanMethods = false)
+    static class LoadTestSecurity {
+
+        @Bean
+        JwtDecoder loadTestJwtDecoder() {
+            return token -> {
+                if (!token.startsWith(TOKEN_PREFIX)) {
+                    throw new BadJwtException("Token de prueba no válido");
+                }
+                Instant now = Instant.now();
+                return Jwt.withTokenValue(token)
+                        .header("alg", "none")
+                        .subject(token.substring(TOKEN_PREFIX.length()))
+                        .issuedAt(now)
+                        .expiresAt(now.plus(Duration.ofHours(1)))
+                        .build();
+            };
+        }
+    }
+}
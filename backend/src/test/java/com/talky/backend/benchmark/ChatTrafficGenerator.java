@@ -0,0 +1,139 @@
+package com.talky.backend.benchmark;
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Generador de tráfico del chat: cada conversación es un usuario simulado (un hilo virtual)
+ * que envía sus mensajes uno tras otro, como hace el frontend, con una pausa opcional entre ellos.
+ * Es un modelo cerrado: la latencia de cada envío se mide desde que se manda hasta que llega
+ * la respuesta completa y se registra en un histograma HDR (microsegundos).
+ */
+public class ChatTrafficGenerator {
+
+    // Prompts de distinto tamaño y tipo, para que el enrutado y los resúmenes trabajen como en producción
+    private static final List<String> PROMPTS = List.of(
+            "hola",
+            "ok, gracias",
+            "How do you say cuchara in English?",
+            "Explícame la diferencia entre since y for con ejemplos",
+            "Quiero practicar una conversación en un restaurante, tú eres el camarero y yo pido la cena",
+            "Corrige este texto: yesterday I go to the beach with my friends and we swim a lot"
+    );
+
+    /**
+     * Conversación ya creada y token con el que se envían sus mensajes.
+     */
+    public record Session(String token, UUID conversationId) {
+    }
+
+    /**
+     * @param messagesPerConversation mensajes que envía cada conversación
+     * @param thinkTime               pausa entre la respuesta y el siguiente mensaje
+     * @param requestTimeout          tiempo máximo de espera de cada envío
+     * @param stream                  usa {@code POST /api/messages/{id}/stream} en lugar del envío normal
+     */
+    public record Settings(int messagesPerConversation, Duration thinkTime, Duration requestTimeout, boolean stream) {
+
+        /**
+         * Valores de las propiedades de sistema {@code loadtest.*}.
+         */
+        public static Settings fromSystemProperties() {
+            return new Settings(
+                    Integer.getInteger("loadtest.messages", 25),
+                    Duration.ofMillis(Long.getLong("loadtest.thinkTimeMs", 0)),
+                    Duration.ofSeconds(Long.getLong("loadtest.requestTimeoutSec", 120)),
+                    Boolean.getBoolean("loadtest.stream"));
+        }
+    }
+
+    /**
+     * Resultado de una ejecución.
+     *
+     * @param latencies latencia de las respuestas 2xx (microsegundos)
+     * @param statuses  respuestas por código HTTP
+     * @param failures  envíos sin respuesta (timeout o error de conexión)
+     * @param elapsed   duración total
+     */
+    public record Result(Histogram latencies, Map<Integer, Long> statuses, long failures, Duration elapsed) {
+
+        public double throughput() {
+            long total = statuses.values().stream().mapToLong(Long::longValue).sum();
+            return total / Math.max(elapsed.toNanos() / 1e9, 1e-9);
+        }
+    }
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+
+    public Result run(String baseUrl, List<Session> sessions, Settings settings) throws InterruptedException {
+        // Hasta 10 minutos con 3 cifras significativas
+        Recorder recorder = new Recorder(TimeUnit.MINUTES.toMicros(10), 3);
+        Map<Integer, LongAdder> statuses = new ConcurrentHashMap<>();
+        AtomicLong failures = new AtomicLong();
+        String path = settings.stream() ? "/stream" : "";
+
+        long start = System.nanoTime();
+        try (ExecutorService users = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (Session session : sessions) {
+                users.submit(() -> {
+                    URI uri = URI.create(baseUrl + "/api/messages/" + session.conversationId() + path);
+                    for (int i = 0; i < settings.messagesPerConversation(); i++) {
+                        String prompt = PROMPTS.get(Math.floorMod(session.conversationId().hashCode() + i, PROMPTS.size()));
+                        HttpRequest request = HttpRequest.newBuilder(uri)
+                                .timeout(settings.requestTimeout())
+                                .header("Authorization", "Bearer " + session.token())
+                                .header("Content-Type", "application/json")
+                                .POST(HttpRequest.BodyPublishers.ofString("{\"prompt\":\"" + prompt + " (" + i + ")\"}"))
+                                .build();
+                        long sent = System.nanoTime();
+                        try {
+                            HttpResponse<String> response = httpClient.send(request, HttpResponse.BodyHandlers.ofString());
+                            long micros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - sent);
+                            statuses.computeIfAbsent(response.statusCode(), k -> new LongAdder()).increment();
+                            if (response.statusCode() / 100 == 2) {
+                                recorder.recordValue(micros);
+                            }
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                            return;
+                        } catch (Exception e) {
+                            failures.incrementAndGet();
+                        }
+                        if (!settings.thinkTime().isZero()) {
+                            try {
+                                Thread.sleep(settings.thinkTime());
+                            } catch (InterruptedException e) {
+                                Thread.currentThread().interrupt();
+                                return;
+                            }
+                        }
+                    }
+                });
+            }
+        }
+        Duration elapsed = Duration.ofNanos(System.nanoTime() - start);
+
+        Map<Integer, Long> byStatus = new TreeMap<>();
+        statuses.forEach((status, count) -> byStatus.put(status, count.sum()));
+        return new Result(recorder.getIntervalHistogram(), byStatus, failures.get(), elapsed);
+    }
+}
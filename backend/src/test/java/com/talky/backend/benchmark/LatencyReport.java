@@ -0,0 +1,47 @@
+package com.talky.backend.benchmark;
+
+import org.HdrHistogram.Histogram;
+
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * Informe de latencias de una ejecución del {@link ChatTrafficGenerator}: percentiles en consola
+ * y la distribución completa en formato {@code .hgrm} (se puede abrir con el HdrHistogram plotter
+ * para comparar entre versiones).
+ */
+public final class LatencyReport {
+
+    private LatencyReport() {
+    }
+
+    public static void print(String title, ChatTrafficGenerator.Result result, PrintStream out) {
+        Histogram h = result.latencies();
+        out.printf("%n=== %s ===%n", title);
+        out.printf("respuestas 2xx: %d, por estado: %s, sin respuesta: %d%n",
+                h.getTotalCount(), result.statuses(), result.failures());
+        out.printf("duración: %.1f s, throughput: %.1f req/s%n",
+                result.elapsed().toMillis() / 1000.0, result.throughput());
+        out.printf("%-8s %10s%n", "", "ms");
+        for (double percentile : new double[]{50, 90, 99, 99.9}) {
+            out.printf("p%-7s %10.1f%n", format(percentile), h.getValueAtPercentile(percentile) / 1000.0);
+        }
+        out.printf("%-8s %10.1f%n", "max", h.getMaxValue() / 1000.0);
+    }
+
+    /**
+     * Escribe la distribución de percentiles (en milisegundos) en {@code file}.
+     */
+    public static void write(ChatTrafficGenerator.Result result, Path file) throws IOException {
+        Files.createDirectories(file.getParent());
+        try (PrintStream out = new PrintStream(Files.newOutputStream(file))) {
+            result.latencies().outputPercentileDistribution(out, 1000.0);
+        }
+    }
+
+    private static String format(double percentile) {
+        return percentile == Math.floor(percentile) ? String.valueOf((long) percentile) : String.valueOf(percentile);
+    }
+}
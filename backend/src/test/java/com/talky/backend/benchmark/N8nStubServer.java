@@ -0,0 +1,153 @@
+package com.talky.backend.benchmark;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Servidor HTTP local que imita los webhooks de N8N ({@code talky-ia}, {@code talky-ia-stream}
+ * y {@code talky-summary}) con latencia, variación (jitter), tasa de errores y respuesta por partes
+ * configurables. Cada request se atiende en un hilo virtual, así el stub no limita la concurrencia.
+ */
+public class N8nStubServer implements AutoCloseable {
+
+    /**
+     * Comportamiento del stub.
+     *
+     * @param latency      latencia base de cada respuesta
+     * @param jitter       variación aleatoria (uniforme) que se suma a la latencia
+     * @param errorRate    fracción de requests que responden 500 (0..1)
+     * @param streamChunks fragmentos del webhook de streaming (la latencia se reparte entre ellos)
+     */
+    public record Settings(Duration latency, Duration jitter, double errorRate, int streamChunks) {
+
+        /**
+         * Valores de las propiedades de sistema {@code loadtest.n8n.*}.
+         */
+        public static Settings fromSystemProperties() {
+            return new Settings(
+                    Duration.ofMillis(Long.getLong("loadtest.n8n.latencyMs", 300)),
+                    Duration.ofMillis(Long.getLong("loadtest.n8n.jitterMs", 200)),
+                    Double.parseDouble(System.getProperty("loadtest.n8n.errorRate", "0")),
+                    Integer.getInteger("loadtest.n8n.streamChunks", 5));
+        }
+    }
+
+    private final HttpServer server;
+    private final Settings settings;
+
+    private final AtomicLong chatRequests = new AtomicLong();
+    private final AtomicLong streamRequests = new AtomicLong();
+    private final AtomicLong summaryRequests = new AtomicLong();
+    private final AtomicLong errors = new AtomicLong();
+
+    public N8nStubServer(Settings settings) throws IOException {
+        this.settings = settings;
+        this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 1024);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/webhook/talky-ia", exchange -> {
+            chatRequests.incrementAndGet();
+            respond(exchange, "{\"respuesta\":\"Respuesta simulada de la IA.\"}");
+        });
+        server.createContext("/webhook/talky-ia-stream", exchange -> {
+            streamRequests.incrementAndGet();
+            stream(exchange);
+        });
+        server.createContext("/webhook/talky-summary", exchange -> {
+            summaryRequests.incrementAndGet();
+            respond(exchange, "{\"summary\":\"Resumen simulado de la conversación.\"}");
+        });
+        server.start();
+    }
+
+    public String getBaseUrl() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    public long getChatRequests() {
+        return chatRequests.get();
+    }
+
+    public long getStreamRequests() {
+        return streamRequests.get();
+    }
+
+    public long getSummaryRequests() {
+        return summaryRequests.get();
+    }
+
+    public long getErrors() {
+        return errors.get();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+
+    private void respond(HttpExchange exchange, String json) throws IOException {
+        try (exchange) {
+            exchange.getRequestBody().readAllBytes();
+            sleep(delay());
+            if (fail()) {
+                exchange.sendResponseHeaders(500, -1);
+                return;
+            }
+            byte[] body = json.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+        }
+    }
+
+    private void stream(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            exchange.getRequestBody().readAllBytes();
+            if (fail()) {
+                sleep(delay());
+                exchange.sendResponseHeaders(500, -1);
+                return;
+            }
+            int chunks = Math.max(1, settings.streamChunks());
+            Duration perChunk = delay().dividedBy(chunks);
+            exchange.getResponseHeaders().add("Content-Type", "application/x-ndjson");
+            exchange.sendResponseHeaders(200, 0);
+            OutputStream out = exchange.getResponseBody();
+            for (int i = 0; i < chunks; i++) {
+                sleep(perChunk);
+                out.write(("{\"type\":\"item\",\"content\":\"parte " + i + " \"}\n").getBytes(StandardCharsets.UTF_8));
+                out.flush();
+            }
+        }
+    }
+
+    private Duration delay() {
+        long jitter = settings.jitter().toMillis();
+        long extra = jitter > 0 ? ThreadLocalRandom.current().nextLong(jitter + 1) : 0;
+        return settings.latency().plusMillis(extra);
+    }
+
+    private boolean fail() {
+        if (settings.errorRate() > 0 && ThreadLocalRandom.current().nextDouble() < settings.errorRate()) {
+            errors.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    private static void sleep(Duration duration) {
+        try {
+            Thread.sleep(duration);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
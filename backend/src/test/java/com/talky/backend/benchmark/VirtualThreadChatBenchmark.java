@@ -0,0 +1,140 @@
+package com.talky.backend.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import com.talky.backend.client.N8nClient;
+import com.talky.backend.client.N8nEndpointPool;
+import com.talky.backend.config.N8nClientConfig;
+import com.talky.backend.config.N8nProperties;
+import com.talky.backend.dto.message.MessageRequestDto;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compara cuántas conversaciones concurrentes sostiene el camino bloqueante del chat
+ * (hilo que espera a {@link N8nClient#chat}) con un pool fijo de hilos de plataforma
+ * (el máximo por defecto de Tomcat) frente a un hilo virtual por request.
+ * <p>
+ * N8N se simula con un servidor local con latencia fija. Solo se ejecuta a demanda:
+ * <pre>
+ * mvn test -Dtest=VirtualThreadChatBenchmark -Dbenchmark=true \
+ *     -Dbenchmark.conversations=2000 -Dbenchmark.messages=3 -Dbenchmark.latencyMs=500
+ * </pre>
+ * Para fijar el presupuesto de heap, añadir {@code -DargLine=-Xmx256m}.
+ */
+@Tag("benchmark")
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+class VirtualThreadChatBenchmark {
+
+    // Máximo de hilos por defecto de Tomcat (server.tomcat.threads.max)
+    private static final int PLATFORM_THREADS = 200;
+
+    private final int conversations = Integer.getInteger("benchmark.conversations", 2000);
+    private final int messagesPerConversation = Integer.getInteger("benchmark.messages", 3);
+    private final int latencyMs = Integer.getInteger("benchmark.latencyMs", 500);
+
+    @Test
+    void platformVersusVirtualThreads() throws Exception {
+        HttpServer stub = startStub();
+        N8nProperties properties = new N8nProperties();
+        properties.setBaseUrl("http://localhost:" + stub.getAddress().getPort());
+        properties.getPool().setMaxConnections(conversations);
+        properties.getPool().setPendingAcquireTimeout(Duration.ofMinutes(1));
+
+        N8nClientConfig config = new N8nClientConfig();
+        ConnectionProvider connectionProvider = config.n8nConnectionProvider(properties);
+        WebClient webClient = config.n8nWebClient(WebClient.builder(), connectionProvider, properties);
+        N8nClient client = new N8nClient(webClient, new ObjectMapper(), properties,
+                new N8nEndpointPool(properties, new SimpleMeterRegistry()),
+                CircuitBreakerRegistry.ofDefaults(),
+                BulkheadRegistry.of(BulkheadConfig.custom().maxConcurrentCalls(Integer.MAX_VALUE).build()));
+
+        try {
+            // Calentamiento para que ambas variantes partan con el pool de conexiones creado
+            run("warm-up", Executors.newVirtualThreadPerTaskExecutor(), client, false);
+
+            System.out.printf("%nConversaciones: %d, mensajes por conversación: %d, latencia N8N: %d ms, heap máx: %d MB%n",
+                    conversations, messagesPerConversation, latencyMs,
+                    Runtime.getRuntime().maxMemory() / (1024 * 1024));
+            System.out.printf("%-20s %12s %12s %14s %12s%n", "modo", "total (ms)", "msg/s", "hilos (pico)", "heap (MB)");
+            run("platform-" + PLATFORM_THREADS, Executors.newFixedThreadPool(PLATFORM_THREADS), client, true);
+            run("virtual", Executors.newVirtualThreadPerTaskExecutor(), client, true);
+        } finally {
+            stub.stop(0);
+            connectionProvider.dispose();
+        }
+    }
+
+    private void run(String name, ExecutorService executor, N8nClient client, boolean report) throws InterruptedException {
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        threads.resetPeakThreadCount();
+        System.gc();
+
+        AtomicInteger failures = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(conversations);
+        long start = System.nanoTime();
+
+        for (int c = 0; c < conversations; c++) {
+            String email = "student" + c + "@talky.test";
+            executor.execute(() -> {
+                try {
+                    // Cada conversación envía sus mensajes en serie, como un estudiante real
+                    for (int m = 0; m < messagesPerConversation; m++) {
+                        client.chat(new MessageRequestDto(email, "pregunta " + m, null)).block();
+                    }
+                } catch (Exception e) {
+                    failures.incrementAndGet();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        long elapsedMs = (System.nanoTime() - start) / 1_000_000;
+        executor.shutdown();
+
+        if (report) {
+            long usedHeapMb = (Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory()) / (1024 * 1024);
+            double throughput = conversations * messagesPerConversation * 1000.0 / Math.max(1, elapsedMs);
+            System.out.printf("%-20s %12d %12.1f %14d %12d%s%n",
+                    name, elapsedMs, throughput, threads.getPeakThreadCount(), usedHeapMb,
+                    failures.get() > 0 ? "  (fallos: " + failures.get() + ")" : "");
+        }
+    }
+
+    private HttpServer startStub() throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 1024);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/webhook/talky-ia", exchange -> {
+            try {
+                Thread.sleep(latencyMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = "{\"respuesta\":\"ok\"}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+        return server;
+    }
+}
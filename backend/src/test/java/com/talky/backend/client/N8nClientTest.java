@@ -0,0 +1,128 @@
+package com.talky.backend.client;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import com.talky.backend.config.N8nClientConfig;
+import com.talky.backend.config.N8nProperties;
+import com.talky.backend.dto.message.MessageRequestDto;
+import com.talky.backend.dto.summary.SummaryRequestDto;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.test.StepVerifier;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class N8nClientTest {
+
+    private HttpServer server;
+    private ConnectionProvider connectionProvider;
+    private N8nClient client;
+    private CircuitBreakerRegistry circuitBreakerRegistry;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/webhook/talky-ia", exchange -> {
+            byte[] body = "{\"respuesta\":\"Hola\"}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.createContext("/webhook/talky-ia-stream", exchange -> {
+            exchange.getResponseHeaders().add("Content-Type", "application/x-ndjson");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                for (String line : new String[]{
+                        "{\"type\":\"begin\"}\n",
+                        "{\"type\":\"item\",\"content\":\"Hola \"}\n",
+                        "{\"type\":\"item\",\"content\":\"mundo\"}\n",
+                        "{\"type\":\"end\"}\n"}) {
+                    out.write(line.getBytes(StandardCharsets.UTF_8));
+                    out.flush();
+                }
+            }
+        });
+        server.createContext("/webhook/talky-ia-stream-plain", exchange -> {
+            exchange.getResponseHeaders().add("Content-Type", "text/plain");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                for (String line : new String[]{"Hola\n", " \n", "mundo\n"}) {
+                    out.write(line.getBytes(StandardCharsets.UTF_8));
+                    out.flush();
+                }
+            }
+        });
+        server.createContext("/webhook/talky-summary", exchange -> {
+            byte[] body = "{\"summary\":\"Resumen\"}".getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+
+        N8nProperties properties = new N8nProperties();
+        properties.setBaseUrl("http://localhost:" + server.getAddress().getPort());
+        properties.setReadTimeout(Duration.ofSeconds(5));
+
+        N8nClientConfig config = new N8nClientConfig();
+        connectionProvider = config.n8nConnectionProvider(properties);
+        WebClient webClient = config.n8nWebClient(WebClient.builder(), connectionProvider, properties);
+        circuitBreakerRegistry = CircuitBreakerRegistry.ofDefaults();
+        client = new N8nClient(webClient, new ObjectMapper(), properties,
+                new N8nEndpointPool(properties, new SimpleMeterRegistry()),
+                circuitBreakerRegistry, BulkheadRegistry.ofDefaults());
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+        connectionProvider.dispose();
+    }
+
+    @Test
+    void chatExtractsRespuestaField() {
+        assertThat(client.chat(new MessageRequestDto("a@b.c", "hola", null)).block()).isEqualTo("Hola");
+    }
+
+    @Test
+    void chatStreamEmitsOnlyTextChunks() {
+        StepVerifier.create(client.chatStream(new MessageRequestDto("a@b.c", "hola", null)))
+                .expectNext("Hola ", "mundo")
+                .verifyComplete();
+    }
+
+    @Test
+    void chatStreamKeepsWhitespaceOnlyChunks() {
+        StepVerifier.create(client.chatStream(new MessageRequestDto("a@b.c", "hola", null), "/webhook/talky-ia-stream-plain"))
+                .expectNext("Hola", " ", "mundo")
+                .verifyComplete();
+    }
+
+    @Test
+    void summarizeReturnsSummaryField() {
+        assertThat(client.summarize(new SummaryRequestDto("[USER] hola")).block()).isEqualTo("Resumen");
+    }
+
+    @Test
+    void openCircuitFailsFastWithoutCallingN8n() {
+        circuitBreakerRegistry.circuitBreaker(N8nClient.CHAT).transitionToOpenState();
+
+        StepVerifier.create(client.chat(new MessageRequestDto("a@b.c", "hola", null)))
+                .expectError(CallNotPermittedException.class)
+                .verify();
+    }
+}
@@ -0,0 +1,120 @@
+package com.talky.backend.client;
+
+import com.sun.net.httpserver.HttpServer;
+import com.talky.backend.config.N8nProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class N8nEndpointPoolTest {
+
+    private final List<HttpServer> servers = new ArrayList<>();
+    private final WebClient webClient = WebClient.create();
+
+    @AfterEach
+    void tearDown() {
+        servers.forEach(server -> server.stop(0));
+    }
+
+    @Test
+    void ejectsFailingEndpointAndKeepsServingFromTheHealthyOne() throws Exception {
+        AtomicInteger failingHits = new AtomicInteger();
+        String failing = stub("fallo", 500, 0, failingHits);
+        String healthy = stub("ok", 200, 0, new AtomicInteger());
+        N8nProperties properties = properties(failing, healthy);
+        N8nEndpointPool pool = new N8nEndpointPool(properties, new SimpleMeterRegistry());
+
+        // Hasta el tercer fallo seguido de la instancia caída
+        for (int i = 0; i < 20 && failingHits.get() < 3; i++) {
+            try {
+                pool.execute(this::get).block();
+            } catch (RuntimeException e) {
+                // esperado mientras se elige la instancia caída
+            }
+        }
+        assertThat(failingHits.get()).isEqualTo(3);
+
+        List<String> answers = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            answers.add(pool.execute(this::get).block());
+        }
+
+        // Ya fuera del reparto: todo lo sirve la instancia sana
+        assertThat(answers).containsOnly("ok");
+        assertThat(failingHits.get()).isEqualTo(3);
+    }
+
+    @Test
+    void hedgedCallReturnsTheFastestEndpoint() throws Exception {
+        String slow = stub("lento", 200, 2000, new AtomicInteger());
+        String fast = stub("rápido", 200, 0, new AtomicInteger());
+        N8nProperties properties = properties(slow, fast);
+        properties.getHedging().setEnabled(true);
+        properties.getHedging().setDefaultDelay(Duration.ofMillis(100));
+        N8nEndpointPool pool = new N8nEndpointPool(properties, new SimpleMeterRegistry());
+
+        for (int i = 0; i < 4; i++) {
+            long start = System.nanoTime();
+            String answer = pool.executeHedged(this::get).block();
+
+            assertThat(answer).isEqualTo("rápido");
+            assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofMillis(1500));
+        }
+    }
+
+    @Test
+    void hedgedCallPropagatesTheOriginalErrorWhenAllEndpointsFail() throws Exception {
+        N8nProperties properties = properties(
+                stub("fallo", 500, 0, new AtomicInteger()),
+                stub("fallo", 500, 0, new AtomicInteger()));
+        properties.getHedging().setEnabled(true);
+        properties.getHedging().setDefaultDelay(Duration.ofMillis(50));
+        N8nEndpointPool pool = new N8nEndpointPool(properties, new SimpleMeterRegistry());
+
+        assertThatThrownBy(() -> pool.executeHedged(this::get).block())
+                .hasMessageContaining("500");
+    }
+
+    private Mono<String> get(String baseUrl) {
+        return webClient.get().uri(baseUrl + "/webhook").retrieve().bodyToMono(String.class);
+    }
+
+    private N8nProperties properties(String... endpoints) {
+        N8nProperties properties = new N8nProperties();
+        properties.setEndpoints(List.of(endpoints));
+        return properties;
+    }
+
+    private String stub(String answer, int status, long delayMs, AtomicInteger hits) throws Exception {
+        HttpServer server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.setExecutor(Executors.newVirtualThreadPerTaskExecutor());
+        server.createContext("/webhook", exchange -> {
+            hits.incrementAndGet();
+            try {
+                Thread.sleep(delayMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            byte[] body = answer.getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(status, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        server.start();
+        servers.add(server);
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+}
@@ -0,0 +1,83 @@
+package com.talky.backend.config;
+
+import com.talky.backend.repository.UserRepository;
+import com.talky.backend.repository.chat.ConversationRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.messaging.Message;
+import org.springframework.messaging.MessageDeliveryException;
+import org.springframework.messaging.simp.stomp.StompCommand;
+import org.springframework.messaging.simp.stomp.StompHeaderAccessor;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.security.authentication.TestingAuthenticationToken;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.*;
+
+class WebSocketAuthInterceptorTest {
+
+    private final ConversationRepository conversationRepository = mock(ConversationRepository.class);
+    private final WebSocketAuthInterceptor interceptor = new WebSocketAuthInterceptor(
+            mock(JwtDecoder.class), mock(UserRepository.class), conversationRepository);
+    private final UUID ownConversation = UUID.randomUUID();
+    private final UUID otherConversation = UUID.randomUUID();
+
+    WebSocketAuthInterceptorTest() {
+        when(conversationRepository.existsByIdAndUserCognitoSub(ownConversation, "sub-1")).thenReturn(true);
+    }
+
+    @Test
+    void allowsOwnConversationTopicUserQueueAndAppSends() {
+        assertThat(interceptor.preSend(frame(StompCommand.SUBSCRIBE, "/topic/conversations/" + ownConversation), null)).isNotNull();
+        assertThat(interceptor.preSend(frame(StompCommand.SUBSCRIBE, "/user/queue/errors"), null)).isNotNull();
+        assertThat(interceptor.preSend(frame(StompCommand.SEND, "/app/conversations/" + ownConversation + "/send"), null)).isNotNull();
+    }
+
+    @Test
+    void rejectsSubscriptionToAnotherUsersConversation() {
+        assertRejected(StompCommand.SUBSCRIBE, "/topic/conversations/" + otherConversation);
+    }
+
+    @Test
+    void rejectsWildcardSubscriptions() {
+        assertRejected(StompCommand.SUBSCRIBE, "/topic/**");
+        assertRejected(StompCommand.SUBSCRIBE, "/topic/conversations/*");
+        assertRejected(StompCommand.SUBSCRIBE, "/topic/conversations/{id}");
+        assertRejected(StompCommand.SUBSCRIBE, "/user/queue/?rrors");
+    }
+
+    @Test
+    void rejectsOtherBrokerDestinations() {
+        assertRejected(StompCommand.SUBSCRIBE, "/topic/anything");
+        assertRejected(StompCommand.SUBSCRIBE, "/queue/errors");
+        assertRejected(StompCommand.SUBSCRIBE, "/topic/conversations/" + ownConversation + "/extra");
+        assertRejected(StompCommand.SUBSCRIBE, "/topic/conversations/not-a-uuid");
+        assertRejected(StompCommand.SUBSCRIBE, null);
+    }
+
+    @Test
+    void rejectsSendOutsideApp() {
+        assertRejected(StompCommand.SEND, "/topic/conversations/" + otherConversation);
+        assertRejected(StompCommand.SEND, "/queue/errors");
+        assertRejected(StompCommand.SEND, "/user/sub-2/queue/errors");
+        assertRejected(StompCommand.SEND, "/app/conversations/*/send");
+    }
+
+    private void assertRejected(StompCommand command, String destination) {
+        assertThatThrownBy(() -> interceptor.preSend(frame(command, destination), null))
+                .isInstanceOf(MessageDeliveryException.class);
+    }
+
+    private Message<byte[]> frame(StompCommand command, String destination) {
+        StompHeaderAccessor accessor = StompHeaderAccessor.create(command);
+        if (destination != null) {
+            accessor.setDestination(destination);
+        }
+        accessor.setUser(new TestingAuthenticationToken("sub-1", null));
+        accessor.setLeaveMutable(true);
+        return MessageBuilder.createMessage(new byte[0], accessor.getMessageHeaders());
+    }
+}
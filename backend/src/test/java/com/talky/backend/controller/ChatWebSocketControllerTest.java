@@ -0,0 +1,88 @@
+package com.talky.backend.controller;
+
+import com.talky.backend.dto.message.MessageRequestDto;
+import com.talky.backend.model.User;
+import com.talky.backend.repository.UserRepository;
+import com.talky.backend.repository.chat.ConversationRepository;
+import com.talky.backend.service.RateLimitService;
+import com.talky.backend.service.UserService;
+import com.talky.backend.service.chat.ConversationContextCache;
+import com.talky.backend.service.chat.ConversationService;
+import com.talky.backend.service.chat.MessageService;
+import com.talky.backend.service.chat.RequestDeadline;
+import com.talky.backend.service.chat.RequestDeadlines;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.security.Principal;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+class ChatWebSocketControllerTest {
+
+    private final MessageService messageService = mock(MessageService.class);
+    private final UserService userService = mock(UserService.class);
+    private final ConversationRepository conversationRepository = mock(ConversationRepository.class);
+    private final RateLimitService rateLimitService = mock(RateLimitService.class);
+    private final RequestDeadlines requestDeadlines = mock(RequestDeadlines.class);
+
+    private final User student = User.builder()
+            .id(UUID.randomUUID())
+            .cognitoSub("sub-alumno")
+            .email("alumno@talky.test")
+            .role(User.Role.STUDENT)
+            .build();
+    private final Principal principal = () -> "sub-alumno";
+    private final UUID conversationId = UUID.randomUUID();
+
+    private ChatWebSocketController controller;
+
+    @BeforeEach
+    void setUp() {
+        ConversationService conversationService = new ConversationService(
+                conversationRepository, mock(UserRepository.class), mock(ConversationContextCache.class));
+        controller = new ChatWebSocketController(
+                messageService, userService, conversationService, rateLimitService, requestDeadlines);
+
+        when(userService.getByCognitoSub("sub-alumno")).thenReturn(Optional.of(student));
+        when(rateLimitService.tryConsume(student)).thenReturn(true);
+        when(requestDeadlines.resolve(eq(student), any())).thenReturn(RequestDeadline.none());
+    }
+
+    @Test
+    void messageToAnotherUsersConversationIsRejected() {
+        when(conversationRepository.existsByIdAndUserCognitoSub(conversationId, "sub-alumno")).thenReturn(false);
+
+        assertThatThrownBy(() -> controller.sendMessage(principal, conversationId, null, request()))
+                .isInstanceOfSatisfying(ResponseStatusException.class,
+                        e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.FORBIDDEN));
+
+        // Ni se consume cupo ni se escribe en la conversación ajena
+        verify(rateLimitService, never()).tryConsume(any());
+        verify(messageService, never()).handleMessage(any(), any());
+    }
+
+    @Test
+    void messageToOwnConversationIsHandled() {
+        when(conversationRepository.existsByIdAndUserCognitoSub(conversationId, "sub-alumno")).thenReturn(true);
+        MessageRequestDto request = request();
+
+        controller.sendMessage(principal, conversationId, null, request);
+
+        verify(messageService).handleMessage(request, RequestDeadline.none());
+        assertThat(request.getConversationId()).isEqualTo(conversationId.toString());
+        assertThat(request.getStudentEmail()).isEqualTo(student.getEmail());
+    }
+
+    private MessageRequestDto request() {
+        return MessageRequestDto.builder().prompt("hola").build();
+    }
+}
@@ -0,0 +1,193 @@
+package com.talky.backend.repository;
+
+import com.talky.backend.TestcontainersConfiguration;
+import com.talky.backend.repository.chat.ConversationRepository;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Contadores desnormalizados de V6 sobre PostgreSQL real: el límite de conversaciones y el
+ * contador de mensajes deben aguantar incrementos concurrentes, y el backfill debe cuadrar con las filas.
+ * <p>
+ * Sin transacción de test: cada hilo hace commit de la suya, como en producción.
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(TestcontainersConfiguration.class)
+@Testcontainers(disabledWithoutDocker = true)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class CountersRepositoryTest {
+
+    private static final int THREADS = 16;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ConversationRepository conversationRepository;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    @Autowired
+    private DataSource dataSource;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void conversationCapHoldsUnderConcurrentReservations() throws Exception {
+        UUID userId = user(jdbc, "");
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+
+        List<Integer> results = concurrently(() -> tx.execute(status -> userRepository.tryIncrementConversationCount(userId, 5)));
+
+        assertThat(results.stream().mapToInt(Integer::intValue).sum()).isEqualTo(5);
+        assertThat(conversationCount(userId)).isEqualTo(5);
+    }
+
+    @Test
+    void messageCounterLosesNoConcurrentIncrements() throws Exception {
+        UUID conversationId = conversation(jdbc, "", user(jdbc, ""));
+        TransactionTemplate tx = new TransactionTemplate(transactionManager);
+        Instant base = Instant.parse("2025-01-01T10:00:00Z");
+        List<Instant> createdAts = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            createdAts.add(base.plusSeconds(i));
+        }
+
+        // Cada hilo suma un mensaje con su fecha; los commits llegan en cualquier orden
+        List<Callable<Integer>> increments = createdAts.stream()
+                .<Callable<Integer>>map(createdAt -> () -> tx.execute(status ->
+                        conversationRepository.incrementMessageCount(conversationId, createdAt)))
+                .toList();
+        concurrently(increments);
+
+        assertThat(jdbc.queryForObject("SELECT message_count FROM conversations WHERE id = ?", Integer.class,
+                conversationId)).isEqualTo(THREADS);
+        // last_message_at nunca retrocede: queda la fecha más reciente aunque su commit no sea el último
+        assertThat(jdbc.queryForObject("SELECT last_message_at FROM conversations WHERE id = ?", Timestamp.class,
+                conversationId).toInstant()).isEqualTo(createdAts.get(THREADS - 1));
+    }
+
+    @Test
+    void v6BackfillMatchesExistingRows() {
+        // Esquema aparte migrado hasta V5, con datos previos a los contadores
+        String schema = "v6_backfill_" + UUID.randomUUID().toString().replace("-", "");
+        migrate(schema, "5");
+
+        String prefix = schema + ".";
+        UUID withConversations = user(jdbc, prefix);
+        UUID withoutConversations = user(jdbc, prefix);
+        UUID busy = conversation(jdbc, prefix, withConversations);
+        UUID empty = conversation(jdbc, prefix, withConversations);
+        Instant last = Instant.parse("2025-01-01T10:00:05Z");
+        for (int i = 0; i < 5; i++) {
+            jdbc.update("INSERT INTO " + prefix + "messages (conversation_id, type, content, created_at) VALUES (?, 'USER', 'hola', ?)",
+                    busy, Timestamp.from(last.minusSeconds(i)));
+        }
+
+        migrate(schema, "6");
+
+        assertThat(jdbc.queryForObject("SELECT conversation_count FROM " + prefix + "users WHERE id = ?",
+                Integer.class, withConversations)).isEqualTo(2);
+        assertThat(jdbc.queryForObject("SELECT conversation_count FROM " + prefix + "users WHERE id = ?",
+                Integer.class, withoutConversations)).isZero();
+        assertThat(jdbc.queryForObject("SELECT message_count FROM " + prefix + "conversations WHERE id = ?",
+                Integer.class, busy)).isEqualTo(5);
+        assertThat(jdbc.queryForObject("SELECT last_message_at FROM " + prefix + "conversations WHERE id = ?",
+                Timestamp.class, busy).toInstant()).isEqualTo(last);
+        assertThat(jdbc.queryForObject("SELECT message_count FROM " + prefix + "conversations WHERE id = ?",
+                Integer.class, empty)).isZero();
+        assertThat(jdbc.queryForObject("SELECT last_message_at FROM " + prefix + "conversations WHERE id = ?",
+                Timestamp.class, empty)).isNull();
+
+        jdbc.execute("DROP SCHEMA " + schema + " CASCADE");
+    }
+
+    private void migrate(String schema, String target) {
+        Flyway.configure()
+                .dataSource(dataSource)
+                .schemas(schema)
+                .locations("classpath:db/migration")
+                .target(target)
+                .load()
+                .migrate();
+    }
+
+    private List<Integer> concurrently(Callable<Integer> task) throws Exception {
+        List<Callable<Integer>> tasks = new ArrayList<>();
+        for (int i = 0; i < THREADS; i++) {
+            tasks.add(task);
+        }
+        return concurrently(tasks);
+    }
+
+    /**
+     * Lanza todas las tareas a la vez (tras una barrera de salida) y espera sus resultados.
+     */
+    private static List<Integer> concurrently(List<Callable<Integer>> tasks) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(tasks.size());
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Integer>> futures = new ArrayList<>();
+            for (Callable<Integer> task : tasks) {
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return task.call();
+                }));
+            }
+            start.countDown();
+
+            List<Integer> results = new ArrayList<>();
+            for (Future<Integer> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private int conversationCount(UUID userId) {
+        return jdbc.queryForObject("SELECT conversation_count FROM users WHERE id = ?", Integer.class, userId);
+    }
+
+    private static UUID user(JdbcTemplate jdbc, String prefix) {
+        UUID id = UUID.randomUUID();
+        jdbc.update("INSERT INTO " + prefix + "users (id, cognito_sub, email, role) VALUES (?, ?, ?, 'STUDENT')",
+                id, "sub-" + id, id + "@talky.test");
+        return id;
+    }
+
+    private static UUID conversation(JdbcTemplate jdbc, String prefix, UUID userId) {
+        UUID id = UUID.randomUUID();
+        jdbc.update("INSERT INTO " + prefix + "conversations (id, user_id, title, mode) VALUES (?, ?, ?, 'STUDENT')",
+                id, userId, "Conversación " + id);
+        return id;
+    }
+}
@@ -0,0 +1,134 @@
+package com.talky.backend.repository.chat;
+
+import com.talky.backend.TestcontainersConfiguration;
+import com.talky.backend.model.chat.Message;
+import com.talky.backend.model.chat.MessageType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Consultas nativas de mensajes sobre PostgreSQL real (migraciones de Flyway incluidas).
+ */
+@DataJpaTest
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Import(TestcontainersConfiguration.class)
+@Testcontainers(disabledWithoutDocker = true)
+class MessageRepositoryTest {
+
+    @Autowired
+    private MessageRepository messageRepository;
+
+    @Autowired
+    private JdbcTemplate jdbc;
+
+    private final Instant base = Instant.parse("2025-01-01T10:00:00Z");
+
+    private UUID conversationId;
+
+    @BeforeEach
+    void setUp() {
+        conversationId = conversation();
+    }
+
+    @Test
+    void deleteAllExceptLatestKeepsExactlyTheNewestNonSummaryMessages() {
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            ids.add(message(conversationId, i % 2 == 0 ? MessageType.USER : MessageType.AI, base.plusSeconds(i)));
+        }
+        UUID summary = message(conversationId, MessageType.SUMMARY, base.plusSeconds(1));
+        UUID otherConversation = message(conversation(), MessageType.USER, base);
+
+        int deleted = messageRepository.deleteAllExceptLatest(conversationId, 4);
+
+        assertThat(deleted).isEqualTo(6);
+        // Quedan los 4 más recientes y el resumen; las demás conversaciones no se tocan
+        assertThat(remainingIds(conversationId)).containsExactlyInAnyOrder(
+                ids.get(6), ids.get(7), ids.get(8), ids.get(9), summary);
+        assertThat(messageRepository.existsById(otherConversation)).isTrue();
+    }
+
+    @Test
+    void deleteAllExceptLatestBreaksTimestampTiesById() {
+        // Todos con la misma fecha: se conservan los de mayor id, igual que en la paginación por keyset
+        for (int i = 0; i < 6; i++) {
+            message(conversationId, MessageType.USER, base);
+        }
+        List<UUID> newestByKeyset = messageRepository.findLatestPage(conversationId, 3).stream()
+                .map(Message::getId)
+                .toList();
+
+        assertThat(messageRepository.deleteAllExceptLatest(conversationId, 3)).isEqualTo(3);
+        assertThat(remainingIds(conversationId)).containsExactlyInAnyOrderElementsOf(newestByKeyset);
+    }
+
+    @Test
+    void deleteAllExceptLatestDoesNothingWhenThereAreFewerMessages() {
+        message(conversationId, MessageType.USER, base);
+        message(conversationId, MessageType.AI, base.plusSeconds(1));
+
+        assertThat(messageRepository.deleteAllExceptLatest(conversationId, 50)).isZero();
+        assertThat(remainingIds(conversationId)).hasSize(2);
+    }
+
+    @Test
+    void keysetPagesBreakTimestampTiesByIdWithoutGapsOrRepeats() {
+        // Ráfaga con la misma fecha en medio: la paginación no puede saltarse ni repetir mensajes
+        List<UUID> all = new ArrayList<>();
+        all.add(message(conversationId, MessageType.USER, base));
+        for (int i = 0; i < 7; i++) {
+            all.add(message(conversationId, MessageType.AI, base.plusSeconds(1)));
+        }
+        all.add(message(conversationId, MessageType.USER, base.plusSeconds(2)));
+
+        List<UUID> seen = new ArrayList<>();
+        List<Message> page = messageRepository.findLatestPage(conversationId, 3);
+        while (!page.isEmpty()) {
+            page.forEach(m -> seen.add(m.getId()));
+            Message oldest = page.get(page.size() - 1);
+            page = messageRepository.findPageBefore(conversationId, oldest.getCreatedAt(), oldest.getId(), 3);
+        }
+
+        assertThat(seen).doesNotHaveDuplicates().containsExactlyInAnyOrderElementsOf(all);
+        // Orden descendente por (created_at, id)
+        List<UUID> expected = jdbc.queryForList(
+                "SELECT id FROM messages WHERE conversation_id = ? ORDER BY created_at DESC, id DESC",
+                UUID.class, conversationId);
+        assertThat(seen).containsExactlyElementsOf(expected);
+    }
+
+    private UUID conversation() {
+        UUID userId = UUID.randomUUID();
+        jdbc.update("INSERT INTO users (id, cognito_sub, email, role) VALUES (?, ?, ?, 'STUDENT')",
+                userId, "sub-" + userId, userId + "@talky.test");
+        UUID id = UUID.randomUUID();
+        jdbc.update("INSERT INTO conversations (id, user_id, title, mode) VALUES (?, ?, 'Conversación', 'STUDENT')",
+                id, userId);
+        return id;
+    }
+
+    private UUID message(UUID conversation, MessageType type, Instant createdAt) {
+        UUID id = UUID.randomUUID();
+        jdbc.update("INSERT INTO messages (id, conversation_id, type, content, created_at) VALUES (?, ?, ?, ?, ?)",
+                id, conversation, type.name(), "mensaje " + id, Timestamp.from(createdAt));
+        return id;
+    }
+
+    private List<UUID> remainingIds(UUID conversation) {
+        return jdbc.queryForList("SELECT id FROM messages WHERE conversation_id = ?", UUID.class, conversation);
+    }
+}
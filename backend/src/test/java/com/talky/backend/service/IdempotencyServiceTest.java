@@ -0,0 +1,162 @@
+package com.talky.backend.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.talky.backend.config.IdempotencyProperties;
+import com.talky.backend.service.idempotency.IdempotencyStore;
+import com.talky.backend.service.idempotency.InMemoryIdempotencyStore;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class IdempotencyServiceTest {
+
+    private final IdempotencyProperties properties = new IdempotencyProperties();
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final IdempotencyService service = new IdempotencyService(
+            properties, new InMemoryIdempotencyStore(properties), objectMapper);
+    private final UUID userId = UUID.randomUUID();
+
+    @Test
+    void replaysCompletedResponseWithoutRunningAgain() {
+        AtomicInteger calls = new AtomicInteger();
+
+        ResponseEntity<String> first = service.execute(userId, "send", "k1", "f", String.class,
+                () -> ResponseEntity.ok("respuesta-" + calls.incrementAndGet()));
+        ResponseEntity<String> second = service.execute(userId, "send", "k1", "f", String.class,
+                () -> ResponseEntity.ok("respuesta-" + calls.incrementAndGet()));
+
+        assertThat(calls.get()).isEqualTo(1);
+        assertThat(second.getBody()).isEqualTo("respuesta-1");
+        assertThat(first.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER)).isNull();
+        assertThat(second.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER)).isEqualTo("true");
+    }
+
+    @Test
+    void coalescesConcurrentDuplicatesOntoInFlightCall() throws Exception {
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<ResponseEntity<String>> original = executor.submit(() ->
+                    service.execute(userId, "send", "k2", "f", String.class, () -> {
+                        calls.incrementAndGet();
+                        started.countDown();
+                        await(release);
+                        return ResponseEntity.ok("respuesta");
+                    }));
+            assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+            Future<ResponseEntity<String>> duplicate = executor.submit(() ->
+                    service.execute(userId, "send", "k2", "f", String.class, () -> {
+                        calls.incrementAndGet();
+                        return ResponseEntity.ok("otra");
+                    }));
+            Thread.sleep(100);
+            assertThat(duplicate.isDone()).isFalse();
+
+            release.countDown();
+            assertThat(original.get(5, TimeUnit.SECONDS).getBody()).isEqualTo("respuesta");
+            assertThat(duplicate.get(5, TimeUnit.SECONDS).getBody()).isEqualTo("respuesta");
+        }
+        assertThat(calls.get()).isEqualTo(1);
+    }
+
+    @Test
+    void doesNotRememberRejectionsOrFailures() {
+        service.execute(userId, "send", "k3", "f", String.class, () -> ResponseEntity.status(429).build());
+        assertThatThrownBy(() -> service.execute(userId, "send", "k4", "f", String.class, () -> {
+            throw new IllegalStateException("fallo");
+        })).isInstanceOf(IllegalStateException.class);
+
+        assertThat(service.execute(userId, "send", "k3", "f", String.class, () -> ResponseEntity.ok("ok")).getStatusCode()).isEqualTo(HttpStatus.OK);
+        assertThat(service.execute(userId, "send", "k4", "f", String.class, () -> ResponseEntity.ok("ok")).getStatusCode()).isEqualTo(HttpStatus.OK);
+    }
+
+    @Test
+    void rejectsKeyReusedWithDifferentRequest() {
+        service.execute(userId, "send", "k5", "f1", String.class, () -> ResponseEntity.ok("ok"));
+
+        assertThatThrownBy(() -> service.execute(userId, "send", "k5", "f2", String.class, () -> ResponseEntity.ok("otra")))
+                .isInstanceOfSatisfying(ResponseStatusException.class,
+                        e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY));
+    }
+
+    @Test
+    void remembersServerErrorsSoARetryDoesNotRunAgain() {
+        AtomicInteger calls = new AtomicInteger();
+        Supplier<ResponseEntity<String>> timesOut = () -> {
+            calls.incrementAndGet();
+            throw new ResponseStatusException(HttpStatus.GATEWAY_TIMEOUT, "tardó demasiado");
+        };
+
+        assertThatThrownBy(() -> service.execute(userId, "send", "k6", "f", String.class, timesOut))
+                .isInstanceOf(ResponseStatusException.class);
+        // El mensaje del usuario ya se guardó: el reintento recibe el mismo 504 sin volver a enviarlo
+        assertThatThrownBy(() -> service.execute(userId, "send", "k6", "f", String.class, timesOut))
+                .isInstanceOfSatisfying(ResponseStatusException.class, e -> {
+                    assertThat(e.getStatusCode()).isEqualTo(HttpStatus.GATEWAY_TIMEOUT);
+                    assertThat(e.getReason()).isEqualTo("tardó demasiado");
+                });
+        assertThat(calls.get()).isEqualTo(1);
+    }
+
+    @Test
+    void replicasSharingTheStoreWaitForTheOriginalCall() throws Exception {
+        // Dos instancias con su propio servicio sobre el mismo store (como con store=postgres)
+        IdempotencyStore shared = new InMemoryIdempotencyStore(properties);
+        IdempotencyService replicaA = new IdempotencyService(properties, shared, objectMapper);
+        IdempotencyService replicaB = new IdempotencyService(properties, shared, objectMapper);
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            Future<ResponseEntity<String>> original = executor.submit(() ->
+                    replicaA.execute(userId, "send", "k7", "f", String.class, () -> {
+                        calls.incrementAndGet();
+                        started.countDown();
+                        await(release);
+                        return ResponseEntity.status(HttpStatus.CREATED).header("Location", "/jobs/1").body("respuesta");
+                    }));
+            assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+            Future<ResponseEntity<String>> retry = executor.submit(() ->
+                    replicaB.execute(userId, "send", "k7", "f", String.class, () -> {
+                        calls.incrementAndGet();
+                        return ResponseEntity.ok("otra");
+                    }));
+            Thread.sleep(300);
+            assertThat(retry.isDone()).isFalse();
+
+            release.countDown();
+            assertThat(original.get(5, TimeUnit.SECONDS).getBody()).isEqualTo("respuesta");
+            ResponseEntity<String> replayed = retry.get(5, TimeUnit.SECONDS);
+            assertThat(replayed.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+            assertThat(replayed.getHeaders().getFirst("Location")).isEqualTo("/jobs/1");
+            assertThat(replayed.getBody()).isEqualTo("respuesta");
+        }
+        assertThat(calls.get()).isEqualTo(1);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package com.talky.backend.service;
+
+import com.talky.backend.TestcontainersConfiguration;
+import com.talky.backend.config.RateLimitConfig;
+import com.talky.backend.config.RateLimitProperties;
+import com.talky.backend.model.User;
+import io.github.bucket4j.distributed.proxy.ProxyManager;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.postgresql.ds.PGSimpleDataSource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Testcontainers(disabledWithoutDocker = true)
+class RateLimitServiceTest {
+
+    @Container
+    static PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>(TestcontainersConfiguration.POSTGRES_IMAGE);
+
+    static PGSimpleDataSource dataSource;
+
+    @BeforeAll
+    static void createTable() throws Exception {
+        dataSource = new PGSimpleDataSource();
+        dataSource.setUrl(postgres.getJdbcUrl());
+        dataSource.setUser(postgres.getUsername());
+        dataSource.setPassword(postgres.getPassword());
+        try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+            statement.execute("CREATE TABLE rate_limit_buckets (id VARCHAR(100) PRIMARY KEY, state BYTEA)");
+        }
+    }
+
+    @Test
+    void limitIsSharedBetweenInstances() {
+        RateLimitProperties properties = new RateLimitProperties();
+        properties.setStore("postgres");
+        properties.getLimits().put(User.Role.STUDENT, 4L);
+        properties.getSync().setMaxUnsyncedTokens(0);
+
+        // Dos "réplicas" con su propio proxy local sobre la misma tabla
+        RateLimitService replicaA = newService(properties);
+        RateLimitService replicaB = newService(properties);
+
+        User student = User.builder().id(UUID.randomUUID()).role(User.Role.STUDENT).build();
+
+        assertThat(replicaA.tryConsume(student)).isTrue();
+        assertThat(replicaB.tryConsume(student)).isTrue();
+        assertThat(replicaA.tryConsume(student)).isTrue();
+        assertThat(replicaB.tryConsume(student)).isTrue();
+        assertThat(replicaA.tryConsume(student)).isFalse();
+        assertThat(replicaB.tryConsume(student)).isFalse();
+    }
+
+    private RateLimitService newService(RateLimitProperties properties) {
+        ProxyManager<String> proxyManager = new RateLimitConfig().rateLimitProxyManager(dataSource);
+        return new RateLimitService(properties, Optional.of(proxyManager), Optional.empty());
+    }
+}
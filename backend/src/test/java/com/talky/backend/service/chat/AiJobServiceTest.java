@@ -0,0 +1,109 @@
+package com.talky.backend.service.chat;
+
+import com.talky.backend.config.ChatProperties;
+import com.talky.backend.model.chat.AiJob;
+import com.talky.backend.model.chat.AiJobStatus;
+import com.talky.backend.model.chat.Conversation;
+import com.talky.backend.model.chat.Message;
+import com.talky.backend.model.chat.MessageType;
+import com.talky.backend.repository.chat.AiJobRepository;
+import com.talky.backend.repository.chat.MessageRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class AiJobServiceTest {
+
+    private final AiJobRepository aiJobRepository = mock(AiJobRepository.class);
+    private final MessageService messageService = mock(MessageService.class);
+    private final ChatProperties chatProperties = new ChatProperties();
+    private final Conversation conversation = Conversation.builder().id(UUID.randomUUID()).build();
+
+    private AiJobService service;
+    private AiJob job;
+
+    @BeforeEach
+    void setUp() {
+        service = new AiJobService(aiJobRepository, mock(MessageRepository.class), messageService, chatProperties,
+                mock(ApplicationEventPublisher.class));
+        job = AiJob.builder()
+                .id(UUID.randomUUID())
+                .conversation(conversation)
+                .studentEmail("alumno@talky.test")
+                .prompt("hola")
+                .status(AiJobStatus.PROCESSING)
+                .attempts(2)
+                .build();
+        when(aiJobRepository.findForUpdate(job.getId())).thenReturn(Optional.of(job));
+        when(messageService.saveMessage(any(), any(), anyString())).thenAnswer(invocation -> Message.builder()
+                .id(UUID.randomUUID())
+                .type(invocation.getArgument(1))
+                .content(invocation.getArgument(2))
+                .build());
+    }
+
+    @Test
+    void completeSavesTheReplyWhileTheReservationIsCurrent() {
+        Message reply = service.complete(job.getId(), 2, conversation, "respuesta");
+
+        assertThat(job.getStatus()).isEqualTo(AiJobStatus.DONE);
+        assertThat(job.getAiMessageId()).isEqualTo(reply.getId());
+    }
+
+    @Test
+    void failedAttemptWaitsWithExponentialBackoff() {
+        assertThat(service.backoff(1)).isEqualTo(Duration.ofSeconds(10));
+        assertThat(service.backoff(3)).isEqualTo(Duration.ofSeconds(40));
+        assertThat(service.backoff(20)).isEqualTo(Duration.ofMinutes(5));
+
+        Instant before = Instant.now();
+        assertThat(service.retry(job.getId(), 2, "N8N caído")).isEmpty();
+
+        assertThat(job.getStatus()).isEqualTo(AiJobStatus.PENDING);
+        assertThat(job.getError()).isEqualTo("N8N caído");
+        assertThat(job.getNextAttemptAt()).isAfterOrEqualTo(before.plusSeconds(20));
+        verify(messageService, never()).saveMessage(any(), any(), anyString());
+    }
+
+    @Test
+    void lastFailedAttemptClosesTheJobWithANoticeForTheUser() {
+        job.setAttempts(chatProperties.getJobs().getMaxAttempts());
+
+        Optional<Message> notice = service.retry(job.getId(), job.getAttempts(), "N8N caído");
+
+        assertThat(notice).hasValueSatisfying(message -> {
+            assertThat(message.getType()).isEqualTo(MessageType.AI);
+            assertThat(message.getContent()).isEqualTo(AiJobService.AI_JOB_FAILED_RESPONSE);
+        });
+        assertThat(job.getStatus()).isEqualTo(AiJobStatus.FAILED);
+        assertThat(job.getAiMessageId()).isEqualTo(notice.get().getId());
+        assertThat(job.getNextAttemptAt()).isNull();
+    }
+
+    @Test
+    void staleWorkerCannotCompleteOrRetryAJobReclaimedByAnother() {
+        // La reserva venció y otro worker la retomó (intento 3)
+        job.setAttempts(3);
+
+        assertThatThrownBy(() -> service.complete(job.getId(), 2, conversation, "respuesta duplicada"))
+                .isInstanceOf(AiJobService.JobLeaseLostException.class);
+        service.retry(job.getId(), 2, "error del worker viejo");
+        service.release(job.getId(), 2);
+
+        verify(messageService, never()).saveMessage(any(), eq(MessageType.AI), anyString());
+        assertThat(job.getStatus()).isEqualTo(AiJobStatus.PROCESSING);
+        assertThat(job.getAttempts()).isEqualTo(3);
+        assertThat(job.getError()).isNull();
+    }
+}
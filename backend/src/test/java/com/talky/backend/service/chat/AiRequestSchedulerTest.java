@@ -0,0 +1,85 @@
+package com.talky.backend.service.chat;
+
+import com.talky.backend.config.AiSchedulerProperties;
+import com.talky.backend.config.AiSchedulerProperties.Priority;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class AiRequestSchedulerTest {
+
+    private AiSchedulerProperties properties;
+    private AiRequestScheduler scheduler;
+
+    @BeforeEach
+    void setUp() {
+        properties = new AiSchedulerProperties();
+        properties.setMaxConcurrent(1);
+        properties.setMaxWait(Duration.ofMillis(200));
+        scheduler = new AiRequestScheduler(properties, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void servesTeachersFirstAndRotatesStudents() {
+        List<String> order = new CopyOnWriteArrayList<>();
+        AiRequestScheduler.Permit busy = scheduler.acquire(Priority.STUDENT_CHAT, "other");
+
+        enqueue(Priority.STUDENT_CHAT, "ana", "ana-1", order);
+        enqueue(Priority.STUDENT_CHAT, "ana", "ana-2", order);
+        enqueue(Priority.STUDENT_CHAT, "ana", "ana-3", order);
+        enqueue(Priority.STUDENT_CHAT, "luis", "luis-1", order);
+        enqueue(Priority.TEACHER_CHAT, "profe", "profe-1", order);
+        assertThat(scheduler.getQueued()).isEqualTo(5);
+
+        busy.close();
+
+        assertThat(order).containsExactly("profe-1", "ana-1", "luis-1", "ana-2", "ana-3");
+        assertThat(scheduler.getInFlight()).isZero();
+        assertThat(scheduler.getQueued()).isZero();
+    }
+
+    @Test
+    void summariesAreNotStarvedByChat() {
+        properties.setMaxPerUser(10);
+        List<String> order = new CopyOnWriteArrayList<>();
+        AiRequestScheduler.Permit busy = scheduler.acquire(Priority.TEACHER_CHAT, "other");
+
+        for (int i = 1; i <= 8; i++) {
+            enqueue(Priority.TEACHER_CHAT, "profe", "chat-" + i, order);
+        }
+        enqueue(Priority.SUMMARY, "summaries", "summary", order);
+
+        busy.close();
+
+        // Con pesos 6 y 1 el resumen entra antes de que termine la cola de chat
+        assertThat(order.indexOf("summary")).isBetween(1, 7);
+    }
+
+    @Test
+    void rejectsAfterMaxWaitAndReleasesTheQueue() {
+        AiRequestScheduler.Permit busy = scheduler.acquire(Priority.STUDENT_CHAT, "ana");
+
+        assertThatThrownBy(() -> scheduler.acquire(Priority.STUDENT_CHAT, "luis"))
+                .isInstanceOf(AiRequestScheduler.RejectedException.class);
+        assertThat(scheduler.getQueued()).isZero();
+
+        busy.close();
+        busy.close();
+        assertThat(scheduler.getInFlight()).isZero();
+    }
+
+    private void enqueue(Priority priority, String user, String label, List<String> order) {
+        scheduler.schedule(priority, user, Flux.defer(() -> {
+            order.add(label);
+            return Flux.just(label);
+        })).subscribe();
+    }
+}
@@ -0,0 +1,128 @@
+package com.talky.backend.service.chat;
+
+import com.talky.backend.config.ChatProperties;
+import com.talky.backend.model.Course;
+import com.talky.backend.model.User;
+import com.talky.backend.model.chat.Conversation;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AnswerCacheTest {
+
+    private final Course course = Course.builder().id(UUID.randomUUID()).build();
+
+    private ChatProperties properties;
+    private SimpleMeterRegistry meterRegistry;
+    private AnswerCache cache;
+
+    @BeforeEach
+    void setUp() {
+        properties = new ChatProperties();
+        properties.getAnswerCache().setEnabled(true);
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new AnswerCache(properties, meterRegistry);
+    }
+
+    @Test
+    void returnsTheAnswerForTheSameQuestionNormalized() {
+        cache.put(conversation(course, "practica"), "¿Qué es un phrasal verb?", "Un verbo con partícula.");
+
+        // Otra conversación del mismo curso y modo; mayúsculas, tildes y puntuación no cuentan
+        assertThat(cache.lookup(conversation(course, "practica"), "que es un PHRASAL verb"))
+                .contains("Un verbo con partícula.");
+    }
+
+    @Test
+    void nearDuplicatesHitOnlyAboveTheSimilarityThreshold() {
+        Conversation conversation = conversation(course, "practica");
+        cache.put(conversation, "cuál es la diferencia entre since y for", "Since marca el inicio; for, la duración.");
+
+        assertThat(cache.lookup(conversation, "cual es la diferencia entre since y for?!")).isPresent();
+        assertThat(cache.lookup(conversation, "cual es la diferencia entre since y fore")).isPresent();
+        assertThat(cache.lookup(conversation, "cómo se forma el pasado simple")).isEmpty();
+
+        // Con umbral 1 solo valen preguntas idénticas tras normalizar
+        properties.getAnswerCache().setSimilarityThreshold(1.0);
+        assertThat(cache.lookup(conversation, "cual es la diferencia entre since y fore")).isEmpty();
+    }
+
+    @Test
+    void answersAreNotSharedAcrossCoursesModesOrStudentsWithoutCourse() {
+        cache.put(conversation(course, "practica"), "qué es el present perfect", "Un tiempo verbal.");
+
+        assertThat(cache.lookup(conversation(Course.builder().id(UUID.randomUUID()).build(), "practica"),
+                "qué es el present perfect")).isEmpty();
+        assertThat(cache.lookup(conversation(course, "examen"), "qué es el present perfect")).isEmpty();
+        assertThat(cache.lookup(conversation(null, "practica"), "qué es el present perfect")).isEmpty();
+    }
+
+    @Test
+    void entriesExpireAfterTheTtl() throws InterruptedException {
+        properties.getAnswerCache().setTtl(Duration.ofMillis(50));
+        cache = new AnswerCache(properties, new SimpleMeterRegistry());
+        Conversation conversation = conversation(course, "practica");
+        cache.put(conversation, "qué significa however", "Sin embargo.");
+        assertThat(cache.lookup(conversation, "qué significa however")).isPresent();
+
+        Thread.sleep(100);
+
+        assertThat(cache.lookup(conversation, "qué significa however")).isEmpty();
+    }
+
+    @Test
+    void eachScopeKeepsOnlyTheMostRecentlyUsedEntries() {
+        properties.getAnswerCache().setMaxEntriesPerScope(2);
+        properties.getAnswerCache().setSimilarityThreshold(1.0);
+        Conversation conversation = conversation(course, "practica");
+        cache.put(conversation, "primera pregunta de gramatica", "uno");
+        cache.put(conversation, "segunda pregunta de vocabulario", "dos");
+
+        // Usar la primera la hace reciente: al entrar una tercera sale la segunda
+        assertThat(cache.lookup(conversation, "primera pregunta de gramatica")).contains("uno");
+        cache.put(conversation, "tercera pregunta de pronunciacion", "tres");
+
+        assertThat(cache.lookup(conversation, "primera pregunta de gramatica")).contains("uno");
+        assertThat(cache.lookup(conversation, "segunda pregunta de vocabulario")).isEmpty();
+        assertThat(cache.lookup(conversation, "tercera pregunta de pronunciacion")).contains("tres");
+    }
+
+    @Test
+    void longPromptsAndBlankAnswersAreNotCached() {
+        properties.getAnswerCache().setMaxPromptLength(20);
+        Conversation conversation = conversation(course, "practica");
+
+        cache.put(conversation, "una pregunta bastante larga que no se repetira", "respuesta");
+        cache.put(conversation, "pregunta corta", " ");
+
+        assertThat(cache.lookup(conversation, "una pregunta bastante larga que no se repetira")).isEmpty();
+        assertThat(cache.lookup(conversation, "pregunta corta")).isEmpty();
+    }
+
+    @Test
+    void countsHitsAndMisses() {
+        Conversation conversation = conversation(course, "practica");
+        cache.put(conversation, "qué es un adverbio", "Modifica al verbo.");
+
+        cache.lookup(conversation, "qué es un adverbio");
+        cache.lookup(conversation, "qué es un sustantivo propio");
+
+        assertThat(meterRegistry.counter("talky.chat.answer-cache.requests", "result", "hit").count()).isEqualTo(1);
+        assertThat(meterRegistry.counter("talky.chat.answer-cache.requests", "result", "miss").count()).isEqualTo(1);
+        assertThat(cache.getHitRatio()).isEqualTo(0.5);
+    }
+
+    private static Conversation conversation(Course course, String mode) {
+        User student = User.builder()
+                .id(UUID.randomUUID())
+                .role(User.Role.STUDENT)
+                .courseAsStudent(course)
+                .build();
+        return Conversation.builder().id(UUID.randomUUID()).user(student).mode(mode).build();
+    }
+}
@@ -0,0 +1,112 @@
+package com.talky.backend.service.chat;
+
+import com.talky.backend.config.ChatProperties;
+import com.talky.backend.model.chat.Conversation;
+import com.talky.backend.model.chat.Message;
+import com.talky.backend.model.chat.MessageType;
+import com.talky.backend.repository.chat.ConversationSummaryRepository;
+import com.talky.backend.repository.chat.MessageRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.*;
+
+class ConversationContextCacheTest {
+
+    private final MessageRepository messageRepository = mock(MessageRepository.class);
+    private final ConversationSummaryRepository summaryRepository = mock(ConversationSummaryRepository.class);
+    private final Conversation conversation = Conversation.builder().id(UUID.randomUUID()).build();
+    private final Instant base = Instant.parse("2025-01-01T10:00:00Z");
+
+    private ConversationContextCache cache;
+
+    @BeforeEach
+    void setUp() {
+        ChatProperties properties = new ChatProperties();
+        properties.getContextCache().setEnabled(true);
+        properties.getContextCache().setWindowSize(3);
+        cache = new ConversationContextCache(properties, messageRepository, summaryRepository, new SimpleMeterRegistry());
+        when(summaryRepository.findTopByConversationOrderByCreatedAtDesc(any())).thenReturn(Optional.empty());
+    }
+
+    @Test
+    void refusesToEnableWithPostgresLockManager() {
+        ChatProperties properties = new ChatProperties();
+        properties.getContextCache().setEnabled(true);
+        properties.setLockManager("postgres");
+
+        assertThatThrownBy(() -> new ConversationContextCache(properties, messageRepository, summaryRepository,
+                new SimpleMeterRegistry()))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("lock-manager=postgres");
+    }
+
+    @Test
+    void loadsOnceAndServesAppendsFromMemory() {
+        // Postgres devuelve del más reciente al más antiguo
+        when(messageRepository.findLatestPage(conversation.getId(), 3))
+                .thenReturn(List.of(message(2, MessageType.AI), message(1, MessageType.USER)));
+
+        assertThat(contents(cache.get(conversation))).containsExactly("m1", "m2");
+        assertThat(cache.get(conversation).complete()).isTrue();
+
+        cache.append(conversation.getId(), message(3, MessageType.USER));
+        cache.append(conversation.getId(), message(4, MessageType.AI));
+
+        ConversationContextCache.Snapshot snapshot = cache.get(conversation);
+        assertThat(contents(snapshot)).containsExactly("m2", "m3", "m4");
+        assertThat(snapshot.complete()).isFalse();
+        verify(messageRepository, times(1)).findLatestPage(any(), anyInt());
+    }
+
+    @Test
+    void replaceSummaryDropsOldSummaryMessages() {
+        when(messageRepository.findLatestPage(conversation.getId(), 3))
+                .thenReturn(List.of(message(2, MessageType.USER), message(1, MessageType.SUMMARY)));
+        cache.get(conversation);
+
+        cache.replaceSummary(conversation.getId(), "nuevo resumen");
+        cache.append(conversation.getId(), message(3, MessageType.SUMMARY));
+
+        ConversationContextCache.Snapshot snapshot = cache.get(conversation);
+        assertThat(contents(snapshot)).containsExactly("m2", "m3");
+        assertThat(snapshot.summary()).isEqualTo("nuevo resumen");
+    }
+
+    @Test
+    void ignoresDuplicateAppendAndConversationsNotInMemory() {
+        Message first = message(1, MessageType.USER);
+        when(messageRepository.findLatestPage(conversation.getId(), 3)).thenReturn(new ArrayList<>(List.of(first)));
+
+        cache.append(conversation.getId(), message(9, MessageType.USER)); // aún no está en memoria
+        cache.get(conversation);
+        cache.append(conversation.getId(), first);
+
+        assertThat(contents(cache.get(conversation))).containsExactly("m1");
+    }
+
+    private Message message(int n, MessageType type) {
+        return Message.builder()
+                .id(new UUID(0, n))
+                .conversation(conversation)
+                .type(type)
+                .content("m" + n)
+                .createdAt(base.plusSeconds(n))
+                .build();
+    }
+
+    private static List<String> contents(ConversationContextCache.Snapshot snapshot) {
+        return snapshot.messages().stream().map(ConversationContextCache.CachedMessage::content).toList();
+    }
+}
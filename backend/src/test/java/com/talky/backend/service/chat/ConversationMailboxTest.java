@@ -0,0 +1,40 @@
+package com.talky.backend.service.chat;
+
+import com.talky.backend.config.ChatProperties;
+import com.talky.backend.service.chat.lock.ConversationLockManager;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class ConversationMailboxTest {
+
+    private final ConversationLockManager lockManager = mock(ConversationLockManager.class);
+    private final UUID conversationId = UUID.randomUUID();
+
+    @Test
+    void lockManagerFailureReleasesTheTurnAndTheSlot() {
+        ChatProperties properties = new ChatProperties();
+        properties.getMailbox().setEnabled(true);
+        properties.getMailbox().setMaxWait(Duration.ofSeconds(1));
+        ConversationMailbox mailbox = new ConversationMailbox(properties, lockManager, new SimpleMeterRegistry());
+        when(lockManager.tryLock(any()))
+                .thenThrow(new IllegalStateException("No se pudo bloquear la conversación"))
+                .thenReturn(true);
+
+        assertThatThrownBy(() -> mailbox.acquire(conversationId)).isInstanceOf(IllegalStateException.class);
+        assertThat(mailbox.getDepth(conversationId)).isZero();
+
+        // El siguiente mensaje obtiene turno enseguida: nada quedó retenido
+        mailbox.acquire(conversationId);
+        assertThat(mailbox.getDepth(conversationId)).isEqualTo(1);
+        mailbox.release(conversationId);
+        assertThat(mailbox.getDepth(conversationId)).isZero();
+    }
+}
@@ -0,0 +1,88 @@
+package com.talky.backend.service.chat;
+
+import com.talky.backend.client.N8nClient;
+import com.talky.backend.config.AiSchedulerProperties;
+import com.talky.backend.config.SummaryProperties;
+import com.talky.backend.model.chat.Conversation;
+import com.talky.backend.model.chat.ConversationSummary;
+import com.talky.backend.model.chat.Message;
+import com.talky.backend.model.chat.MessageType;
+import com.talky.backend.repository.chat.ConversationRepository;
+import com.talky.backend.repository.chat.ConversationSummaryRepository;
+import com.talky.backend.repository.chat.MessageRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class ConversationSummaryServiceTest {
+
+    private final ConversationSummaryRepository summaryRepository = mock(ConversationSummaryRepository.class);
+    private final MessageRepository messageRepository = mock(MessageRepository.class);
+    private final N8nClient n8nClient = mock(N8nClient.class);
+    private final SummaryProperties properties = new SummaryProperties();
+    private final Conversation conversation = Conversation.builder().id(UUID.randomUUID()).build();
+    private final Instant base = Instant.parse("2025-01-01T10:00:00Z");
+
+    private ConversationSummaryService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new ConversationSummaryService(summaryRepository, messageRepository,
+                mock(ConversationRepository.class), mock(ConversationContextCache.class), n8nClient, properties,
+                new AiRequestScheduler(new AiSchedulerProperties(), new SimpleMeterRegistry()));
+        when(n8nClient.isSummaryAvailable()).thenReturn(true);
+        when(summaryRepository.findTopByConversationOrderByCreatedAtDesc(conversation))
+                .thenReturn(Optional.of(ConversationSummary.builder()
+                        .conversation(conversation)
+                        .summary("resumen anterior")
+                        .coveredUntil(base)
+                        .build()));
+        when(messageRepository.findForIncrementalSummary(any(), any(), any())).thenReturn(List.of(
+                message(MessageType.USER, "¿Qué diferencia hay entre since y for?"),
+                message(MessageType.AI, "Since indica el inicio; for, la duración.")));
+    }
+
+    @Test
+    void incrementalSummaryIsEmptyWhenN8nFailsWithoutLocalFallback() {
+        properties.setLocalFallback(false);
+        when(n8nClient.summarize(any())).thenReturn(Mono.error(new IllegalStateException("caído")));
+
+        assertThat(service.generateIncrementalSummary(conversation, base.plusSeconds(60))).isEmpty();
+    }
+
+    @Test
+    void incrementalSummaryIsEmptyWhenN8nReturnsNothingWithoutLocalFallback() {
+        properties.setLocalFallback(false);
+        when(n8nClient.summarize(any())).thenReturn(Mono.empty());
+
+        assertThat(service.generateIncrementalSummary(conversation, base.plusSeconds(60))).isEmpty();
+    }
+
+    @Test
+    void incrementalSummaryUsesLocalFallbackWhenN8nFails() {
+        when(n8nClient.summarize(any())).thenReturn(Mono.error(new IllegalStateException("caído")));
+
+        assertThat(service.generateIncrementalSummary(conversation, base.plusSeconds(60)))
+                .hasValueSatisfying(summary -> assertThat(summary).startsWith(ConversationSummaryService.LOCAL_SUMMARY_PREFIX));
+    }
+
+    private Message message(MessageType type, String content) {
+        return Message.builder()
+                .id(UUID.randomUUID())
+                .conversation(conversation)
+                .type(type)
+                .content(content)
+                .createdAt(base.plusSeconds(30))
+                .build();
+    }
+}
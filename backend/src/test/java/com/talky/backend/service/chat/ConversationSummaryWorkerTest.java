@@ -0,0 +1,63 @@
+package com.talky.backend.service.chat;
+
+import com.talky.backend.client.N8nClient;
+import com.talky.backend.config.SummaryProperties;
+import com.talky.backend.model.chat.Conversation;
+import com.talky.backend.repository.chat.ConversationRepository;
+import com.talky.backend.repository.chat.MessageRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.env.MockEnvironment;
+
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class ConversationSummaryWorkerTest {
+
+    private final ConversationRepository conversationRepository = mock(ConversationRepository.class);
+    private final MessageRepository messageRepository = mock(MessageRepository.class);
+    private final ConversationSummaryService summaryService = mock(ConversationSummaryService.class);
+    private final N8nClient n8nClient = mock(N8nClient.class);
+    private final ChatEventPublisher chatEventPublisher = mock(ChatEventPublisher.class);
+
+    private final ConversationSummaryWorker worker = new ConversationSummaryWorker(conversationRepository,
+            messageRepository, summaryService, new SummaryProperties(), n8nClient, chatEventPublisher,
+            new MockEnvironment());
+
+    @AfterEach
+    void tearDown() {
+        worker.shutdown();
+    }
+
+    @Test
+    void failedSummaryIsNotSavedNorCompacted() throws Exception {
+        Conversation conversation = Conversation.builder()
+                .id(UUID.randomUUID())
+                .messageCount(MessageService.MAX_MESSAGES_PER_CONVERSATION + 1)
+                .build();
+        when(n8nClient.isSummaryAvailable()).thenReturn(true);
+        when(conversationRepository.findById(conversation.getId())).thenReturn(Optional.of(conversation));
+        when(messageRepository.findTopByConversationOrderByCreatedAtDesc(conversation)).thenReturn(Optional.empty());
+        when(summaryService.generateIncrementalSummary(any(), any())).thenReturn(Optional.empty());
+
+        worker.enqueue(conversation.getId());
+        waitUntilIdle();
+
+        // El tramo no se marca como cubierto: se reintentará con el siguiente mensaje
+        verify(summaryService).generateIncrementalSummary(any(), any());
+        verify(summaryService, never()).saveSummary(any(), any(), any());
+        verify(summaryService, never()).saveSummaryAsMessage(any(), any());
+        verify(summaryService, never()).compactMessages(any(), anyInt());
+        verifyNoInteractions(chatEventPublisher);
+    }
+
+    private void waitUntilIdle() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (worker.getPendingCount() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+}
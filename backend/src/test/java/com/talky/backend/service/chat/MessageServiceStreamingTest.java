@@ -0,0 +1,216 @@
+package com.talky.backend.service.chat;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import com.talky.backend.client.N8nClient;
+import com.talky.backend.client.N8nEndpointPool;
+import com.talky.backend.config.AiSchedulerProperties;
+import com.talky.backend.config.ChatProperties.Routing.PromptClass;
+import com.talky.backend.config.DeadlineProperties;
+import com.talky.backend.config.N8nClientConfig;
+import com.talky.backend.config.N8nProperties;
+import com.talky.backend.dto.message.MessageRequestDto;
+import com.talky.backend.dto.message.MessageResponseDto;
+import com.talky.backend.model.User;
+import com.talky.backend.model.chat.Conversation;
+import com.talky.backend.model.chat.Message;
+import com.talky.backend.repository.UserRepository;
+import com.talky.backend.repository.chat.ConversationRepository;
+import com.talky.backend.repository.chat.MessageRepository;
+import com.talky.backend.service.chat.lock.ConversationLockManager;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Schedulers;
+import reactor.netty.resources.ConnectionProvider;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+/**
+ * Streaming de extremo a extremo contra un webhook de N8N simulado (servidor HTTP local).
+ */
+class MessageServiceStreamingTest {
+
+    private final MessageRepository messageRepository = mock(MessageRepository.class);
+    private final ConversationRepository conversationRepository = mock(ConversationRepository.class);
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final ConversationLockManager lockManager = mock(ConversationLockManager.class);
+    private final AnswerCache answerCache = mock(AnswerCache.class);
+    private final TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+    private final PromptContextBuilder promptContextBuilder = mock(PromptContextBuilder.class);
+    private final PromptRouter promptRouter = mock(PromptRouter.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final User student = User.builder()
+            .id(UUID.randomUUID())
+            .email("alumno@talky.test")
+            .role(User.Role.STUDENT)
+            .build();
+    private final Conversation conversation = Conversation.builder().id(UUID.randomUUID()).user(student).build();
+
+    // El webhook lento no termina hasta que el cliente corta la conexión
+    private final CountDownLatch slowClosed = new CountDownLatch(1);
+
+    private HttpServer server;
+    private ConnectionProvider connectionProvider;
+    private MessageService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/webhook/ok", exchange -> {
+            exchange.getResponseHeaders().add("Content-Type", "application/x-ndjson");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                for (String line : new String[]{
+                        "{\"type\":\"begin\"}\n",
+                        "{\"type\":\"item\",\"content\":\"Hola\"}\n",
+                        "{\"type\":\"item\",\"content\":\" \"}\n",
+                        "{\"type\":\"item\",\"content\":\"mundo\"}\n",
+                        "{\"type\":\"end\"}\n"}) {
+                    out.write(line.getBytes(StandardCharsets.UTF_8));
+                    out.flush();
+                }
+            }
+        });
+        server.createContext("/webhook/error", exchange -> {
+            exchange.sendResponseHeaders(500, -1);
+            exchange.close();
+        });
+        server.createContext("/webhook/slow", exchange -> {
+            exchange.getResponseHeaders().add("Content-Type", "application/x-ndjson");
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write("{\"type\":\"item\",\"content\":\"Hola\"}\n".getBytes(StandardCharsets.UTF_8));
+                out.flush();
+                // Sigue escribiendo hasta que el cliente cancela y se rompe la conexión
+                for (int i = 0; i < 100; i++) {
+                    Thread.sleep(100);
+                    out.write("\n".getBytes(StandardCharsets.UTF_8));
+                    out.flush();
+                }
+            } catch (Exception e) {
+                slowClosed.countDown();
+            }
+        });
+        server.start();
+
+        N8nProperties properties = new N8nProperties();
+        properties.setBaseUrl("http://localhost:" + server.getAddress().getPort());
+        properties.setReadTimeout(Duration.ofSeconds(5));
+        N8nClientConfig config = new N8nClientConfig();
+        connectionProvider = config.n8nConnectionProvider(properties);
+        WebClient webClient = config.n8nWebClient(WebClient.builder(), connectionProvider, properties);
+        N8nClient n8nClient = new N8nClient(webClient, new ObjectMapper(), properties,
+                new N8nEndpointPool(properties, meterRegistry),
+                CircuitBreakerRegistry.ofDefaults(), BulkheadRegistry.ofDefaults());
+
+        service = new MessageService(messageRepository, conversationRepository, mock(ConversationSummaryWorker.class),
+                userRepository, n8nClient, lockManager, mock(ConversationMailbox.class), answerCache,
+                Schedulers.immediate(), mock(ChatEventPublisher.class), transactionTemplate,
+                mock(ConversationContextCache.class), promptContextBuilder,
+                new AiRequestScheduler(new AiSchedulerProperties(), meterRegistry),
+                promptRouter, new RequestDeadlines(new DeadlineProperties(), meterRegistry));
+
+        when(userRepository.findByEmail(student.getEmail())).thenReturn(Optional.of(student));
+        when(conversationRepository.findWithUserById(conversation.getId())).thenReturn(Optional.of(conversation));
+        when(conversationRepository.findMessageCountById(any())).thenReturn(Optional.of(1));
+        when(lockManager.tryLock(any())).thenReturn(true);
+        when(transactionTemplate.execute(any()))
+                .thenAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        when(messageRepository.saveAndFlush(any())).thenAnswer(invocation -> {
+            Message message = invocation.getArgument(0);
+            message.setId(UUID.randomUUID());
+            message.setCreatedAt(Instant.now());
+            return message;
+        });
+        when(promptRouter.record(any(), any(Flux.class))).thenAnswer(invocation -> invocation.getArgument(1));
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+        connectionProvider.dispose();
+    }
+
+    @Test
+    void streamsChunksAndSavesTheFullAnswer() {
+        routeTo("/webhook/ok");
+
+        List<ServerSentEvent<MessageResponseDto>> events = stream().collectList().block(Duration.ofSeconds(5));
+
+        // Los fragmentos de solo espacios llegan al cliente y forman parte de la respuesta
+        assertThat(events).extracting(ServerSentEvent::event).containsExactly("chunk", "chunk", "chunk", "done");
+        assertThat(events).extracting(event -> event.data().getContent())
+                .containsExactly("Hola", " ", "mundo", "Hola mundo");
+        assertThat(savedContents()).containsExactly("hola", "Hola mundo");
+        verify(lockManager, timeout(1000)).unlock(conversation.getId());
+    }
+
+    @Test
+    void webhookErrorEndsWithAnErrorEventAndSavesNoAnswer() {
+        routeTo("/webhook/error");
+
+        List<ServerSentEvent<MessageResponseDto>> events = stream().collectList().block(Duration.ofSeconds(5));
+
+        assertThat(events).extracting(ServerSentEvent::event).containsExactly("error");
+        assertThat(savedContents()).containsExactly("hola");
+        verify(lockManager, timeout(1000)).unlock(conversation.getId());
+    }
+
+    @Test
+    void clientCancellationReleasesTheLockAndClosesTheWebhook() throws InterruptedException {
+        routeTo("/webhook/slow");
+
+        // El cliente se desconecta tras el primer fragmento
+        ServerSentEvent<MessageResponseDto> first = stream().next().block(Duration.ofSeconds(5));
+
+        assertThat(first.event()).isEqualTo("chunk");
+        verify(lockManager, timeout(1000)).unlock(conversation.getId());
+        assertThat(slowClosed.await(5, TimeUnit.SECONDS)).isTrue();
+        // La respuesta incompleta no se guarda
+        assertThat(savedContents()).containsExactly("hola");
+    }
+
+    private void routeTo(String chatStreamPath) {
+        when(promptRouter.route(any(), anyString()))
+                .thenReturn(new PromptRouter.Route(PromptClass.COMPLEX, "/webhook/chat", chatStreamPath));
+    }
+
+    private Flux<ServerSentEvent<MessageResponseDto>> stream() {
+        return service.streamMessage(MessageRequestDto.builder()
+                .studentEmail(student.getEmail())
+                .conversationId(conversation.getId().toString())
+                .prompt("hola")
+                .build(), RequestDeadline.none());
+    }
+
+    private List<String> savedContents() {
+        ArgumentCaptor<Message> saved = ArgumentCaptor.forClass(Message.class);
+        verify(messageRepository, atLeastOnce()).saveAndFlush(saved.capture());
+        return saved.getAllValues().stream().map(Message::getContent).toList();
+    }
+}
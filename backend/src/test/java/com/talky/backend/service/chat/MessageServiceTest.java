@@ -0,0 +1,255 @@
+package com.talky.backend.service.chat;
+
+import com.talky.backend.client.N8nClient;
+import com.talky.backend.config.AiSchedulerProperties;
+import com.talky.backend.config.ChatProperties.Routing.PromptClass;
+import com.talky.backend.config.DeadlineProperties;
+import com.talky.backend.dto.message.ChatContextDto;
+import com.talky.backend.dto.message.MessageRequestDto;
+import com.talky.backend.dto.message.MessageResponseDto;
+import com.talky.backend.exception.ConversationLockLostException;
+import com.talky.backend.exception.DeadlineExceededException;
+import com.talky.backend.model.User;
+import com.talky.backend.model.chat.Conversation;
+import com.talky.backend.model.chat.Message;
+import com.talky.backend.repository.UserRepository;
+import com.talky.backend.repository.chat.ConversationRepository;
+import com.talky.backend.repository.chat.MessageRepository;
+import com.talky.backend.service.chat.lock.ConversationLockManager;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.boot.test.system.CapturedOutput;
+import org.springframework.boot.test.system.OutputCaptureExtension;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.transaction.support.TransactionCallback;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.server.ResponseStatusException;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(OutputCaptureExtension.class)
+class MessageServiceTest {
+
+    private final MessageRepository messageRepository = mock(MessageRepository.class);
+    private final ConversationRepository conversationRepository = mock(ConversationRepository.class);
+    private final UserRepository userRepository = mock(UserRepository.class);
+    private final N8nClient n8nClient = mock(N8nClient.class);
+    private final ConversationLockManager lockManager = mock(ConversationLockManager.class);
+    private final ConversationMailbox mailbox = mock(ConversationMailbox.class);
+    private final AnswerCache answerCache = mock(AnswerCache.class);
+    private final TransactionTemplate transactionTemplate = mock(TransactionTemplate.class);
+    private final PromptContextBuilder promptContextBuilder = mock(PromptContextBuilder.class);
+    private final PromptRouter promptRouter = mock(PromptRouter.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final DeadlineProperties deadlineProperties = new DeadlineProperties();
+
+    private final User student = User.builder()
+            .id(UUID.randomUUID())
+            .email("alumno@talky.test")
+            .role(User.Role.STUDENT)
+            .build();
+    private final Conversation conversation = Conversation.builder().id(UUID.randomUUID()).user(student).build();
+
+    private MessageService service;
+
+    @BeforeEach
+    void setUp() {
+        deadlineProperties.setMinCallBudget(Duration.ofMillis(50));
+        service = new MessageService(messageRepository, conversationRepository, mock(ConversationSummaryWorker.class),
+                userRepository, n8nClient, lockManager, mailbox, answerCache, Schedulers.immediate(),
+                mock(ChatEventPublisher.class), transactionTemplate, mock(ConversationContextCache.class),
+                promptContextBuilder, new AiRequestScheduler(new AiSchedulerProperties(), meterRegistry),
+                promptRouter, new RequestDeadlines(deadlineProperties, meterRegistry));
+
+        when(userRepository.findByEmail(student.getEmail())).thenReturn(Optional.of(student));
+        when(conversationRepository.findWithUserById(conversation.getId())).thenReturn(Optional.of(conversation));
+        when(conversationRepository.findMessageCountById(any())).thenReturn(Optional.of(1));
+        when(lockManager.tryLock(any())).thenReturn(true);
+        when(transactionTemplate.execute(any()))
+                .thenAnswer(invocation -> invocation.<TransactionCallback<?>>getArgument(0).doInTransaction(null));
+        when(messageRepository.saveAndFlush(any())).thenAnswer(invocation -> {
+            Message message = invocation.getArgument(0);
+            message.setId(UUID.randomUUID());
+            message.setCreatedAt(Instant.now());
+            return message;
+        });
+        when(promptRouter.route(any(), anyString()))
+                .thenReturn(new PromptRouter.Route(PromptClass.COMPLEX, "/chat", "/chat-stream"));
+        when(promptRouter.record(any(), any(Mono.class))).thenAnswer(invocation -> invocation.getArgument(1));
+        when(promptRouter.record(any(), any(Flux.class))).thenAnswer(invocation -> invocation.getArgument(1));
+        when(n8nClient.getChatFallback()).thenReturn("IA no disponible");
+        when(answerCache.isEnabled()).thenReturn(true);
+    }
+
+    @Test
+    void promptWithContextSkipsTheAnswerCache() {
+        when(promptContextBuilder.build(any(), anyString())).thenReturn(ChatContextDto.builder()
+                .history(List.of(new ChatContextDto.Turn("USER", "hablemos de mi viaje a Londres")))
+                .build());
+        when(n8nClient.chat(any(), anyString())).thenReturn(Mono.just("Claro, ¿cuándo viajas?"));
+
+        assertThat(service.handleMessage(request("¿y qué me recomiendas?"), RequestDeadline.none()).getContent())
+                .isEqualTo("Claro, ¿cuándo viajas?");
+
+        // La respuesta depende del historial: ni se busca ni se comparte con el resto del curso
+        verify(answerCache, never()).lookup(any(), anyString());
+        verify(answerCache, never()).put(any(), anyString(), anyString());
+    }
+
+    @Test
+    void promptWithoutContextIsAnsweredFromTheAnswerCache() {
+        when(promptContextBuilder.build(any(), anyString())).thenReturn(null);
+        when(answerCache.lookup(conversation, "¿qué es un phrasal verb?")).thenReturn(Optional.of("Un verbo con partícula."));
+
+        assertThat(service.handleMessage(request("¿qué es un phrasal verb?"), RequestDeadline.none()).getContent())
+                .isEqualTo("Un verbo con partícula.");
+        verify(n8nClient, never()).chat(any(), anyString());
+    }
+
+    @Test
+    void streamReleasesTheLockWhenPreparingTheCallFails() {
+        when(promptContextBuilder.build(any(), anyString())).thenThrow(new IllegalStateException("sin contexto"));
+
+        assertThatThrownBy(() -> service.streamMessage(request("hola"), RequestDeadline.none()))
+                .isInstanceOf(IllegalStateException.class);
+
+        verify(lockManager).unlock(conversation.getId());
+    }
+
+    @Test
+    void handleMessageAbandonsTheAiSaveWhenTheDeadlineExpiresDuringTheCall() {
+        when(n8nClient.chat(any(), anyString())).thenReturn(Mono.never());
+
+        assertThatThrownBy(() -> service.handleMessage(request("hola"), RequestDeadline.after(Duration.ofMillis(300))))
+                .isInstanceOf(DeadlineExceededException.class);
+
+        // Solo se guardó el mensaje del usuario
+        verify(messageRepository, times(1)).saveAndFlush(any());
+        verify(lockManager).unlock(conversation.getId());
+        assertThat(abandoned("n8n")).isEqualTo(1);
+    }
+
+    @Test
+    void lostLockSkipsTheAiSave() {
+        when(n8nClient.chat(any(), anyString())).thenReturn(Mono.just("respuesta"));
+        doThrow(new ConversationLockLostException()).when(lockManager).checkHeld(conversation.getId());
+
+        assertThatThrownBy(() -> service.handleMessage(request("hola"), RequestDeadline.none()))
+                .isInstanceOf(ConversationLockLostException.class);
+
+        // Otra instancia puede tener la conversación: solo quedó guardado el mensaje del usuario
+        verify(messageRepository, times(1)).saveAndFlush(any());
+        verify(lockManager).unlock(conversation.getId());
+    }
+
+    @Test
+    void streamWithExpiredDeadlineSavesNothing() throws InterruptedException {
+        RequestDeadline expired = RequestDeadline.after(Duration.ofMillis(1));
+        Thread.sleep(5);
+
+        assertThatThrownBy(() -> service.streamMessage(request("hola"), expired))
+                .isInstanceOf(DeadlineExceededException.class);
+
+        verify(messageRepository, never()).saveAndFlush(any());
+        verify(lockManager).unlock(conversation.getId());
+        assertThat(abandoned("lock")).isEqualTo(1);
+    }
+
+    @Test
+    void streamWithoutCallBudgetDoesNotCallN8n() {
+        assertThatThrownBy(() -> service.streamMessage(request("hola"), RequestDeadline.after(Duration.ofMillis(20))))
+                .isInstanceOf(DeadlineExceededException.class);
+
+        verify(n8nClient, never()).chatStream(any(), anyString());
+        verify(lockManager).unlock(conversation.getId());
+        assertThat(abandoned("n8n")).isEqualTo(1);
+    }
+
+    @Test
+    void streamAbandonsTheAiSaveWhenTheDeadlineExpiresMidStream() {
+        when(n8nClient.chatStream(any(), anyString())).thenReturn(Flux.concat(Flux.just("Hola, "), Flux.never()));
+
+        List<ServerSentEvent<MessageResponseDto>> events = service
+                .streamMessage(request("hola"), RequestDeadline.after(Duration.ofMillis(300)))
+                .collectList()
+                .block(Duration.ofSeconds(5));
+
+        assertThat(events).extracting(ServerSentEvent::event).containsExactly("chunk", "error");
+        verify(messageRepository, times(1)).saveAndFlush(any());
+        // doFinally libera después de entregar el final del stream, en el hilo del temporizador
+        verify(lockManager, timeout(1000)).unlock(conversation.getId());
+        assertThat(abandoned("stream")).isEqualTo(1);
+    }
+
+    @Test
+    void malformedCursorIsABadRequest() {
+        for (String cursor : List.of("no-es-un-cursor", "2025-01-01T10:00:00Z", "2025-01-01T10:00:00Z,no-uuid",
+                "ayer," + UUID.randomUUID())) {
+            assertThatThrownBy(() -> service.getMessagesPage(conversation, cursor, 20))
+                    .isInstanceOfSatisfying(ResponseStatusException.class,
+                            e -> assertThat(e.getStatusCode()).isEqualTo(HttpStatus.BAD_REQUEST));
+        }
+        verify(messageRepository, never()).findPageBefore(any(), any(), any(), anyInt());
+    }
+
+    @Test
+    void openCircuitIsLoggedWithoutStackTrace(CapturedOutput output) {
+        when(n8nClient.chat(any(), anyString()))
+                .thenReturn(Mono.error(CallNotPermittedException.createCallNotPermittedException(CircuitBreaker.ofDefaults("n8n"))));
+
+        assertThat(service.handleMessage(request("hola"), RequestDeadline.none()).getContent()).isEqualTo("IA no disponible");
+
+        assertThat(output).contains("N8N no disponible").doesNotContain("\tat ");
+    }
+
+    @Test
+    void expiredDeadlineIsLoggedWithoutStackTrace(CapturedOutput output) {
+        when(n8nClient.chat(any(), anyString())).thenReturn(Mono.never());
+
+        assertThatThrownBy(() -> service.handleMessage(request("hola"), RequestDeadline.after(Duration.ofMillis(300))))
+                .isInstanceOf(DeadlineExceededException.class);
+
+        // Un 504 es rutinario: solo el motivo
+        assertThat(output).contains("Llamada a N8N abandonada").doesNotContain("\tat ");
+    }
+
+    @Test
+    void unexpectedN8nErrorsKeepTheStackTrace(CapturedOutput output) {
+        when(n8nClient.chat(any(), anyString())).thenReturn(Mono.error(new IllegalStateException("respuesta rota")));
+
+        service.handleMessage(request("hola"), RequestDeadline.none());
+
+        assertThat(output).contains("Error llamando a N8N", "java.lang.IllegalStateException: respuesta rota", "\tat ");
+    }
+
+    private double abandoned(String stage) {
+        return meterRegistry.counter("talky.ai.deadline.abandoned", "stage", stage).count();
+    }
+
+    private MessageRequestDto request(String prompt) {
+        return MessageRequestDto.builder()
+                .studentEmail(student.getEmail())
+                .conversationId(conversation.getId().toString())
+                .prompt(prompt)
+                .build();
+    }
+}
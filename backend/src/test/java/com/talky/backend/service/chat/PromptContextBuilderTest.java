@@ -0,0 +1,113 @@
+package com.talky.backend.service.chat;
+
+import com.talky.backend.config.ChatProperties;
+import com.talky.backend.dto.message.ChatContextDto;
+import com.talky.backend.model.chat.Conversation;
+import com.talky.backend.model.chat.MessageType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class PromptContextBuilderTest {
+
+    private final ConversationContextCache contextCache = mock(ConversationContextCache.class);
+    private final Conversation conversation = Conversation.builder().id(UUID.randomUUID()).build();
+    private final Instant base = Instant.parse("2025-01-01T10:00:00Z");
+
+    private ChatProperties properties;
+    private PromptContextBuilder builder;
+
+    @BeforeEach
+    void setUp() {
+        properties = new ChatProperties();
+        properties.getPromptContext().setEnabled(true);
+        builder = new PromptContextBuilder(properties, contextCache);
+    }
+
+    @Test
+    void keepsNewestTurnsWithinTokenBudget() {
+        properties.getPromptContext().setMaxTokens(10);
+        // 4 tokens cada uno: caben los dos más recientes
+        window(null, message(1, MessageType.USER, "uno uno uno uno"),
+                message(2, MessageType.AI, "dos dos dos dos"),
+                message(3, MessageType.USER, "tres tres tres tres"));
+
+        ChatContextDto context = builder.build(conversation, "pregunta nueva");
+
+        assertThat(contents(context)).containsExactly("dos dos dos dos", "tres tres tres tres");
+        assertThat(context.getEstimatedTokens()).isEqualTo(8);
+    }
+
+    @Test
+    void cutsHistoryAtMaxTurns() {
+        properties.getPromptContext().setMaxTurns(2);
+        window(null, message(1, MessageType.USER, "uno"),
+                message(2, MessageType.AI, "dos"),
+                message(3, MessageType.USER, "tres"),
+                message(4, MessageType.AI, "cuatro"));
+
+        assertThat(contents(builder.build(conversation, "pregunta nueva"))).containsExactly("tres", "cuatro");
+    }
+
+    @Test
+    void excludesThePromptJustSaved() {
+        window(null, message(1, MessageType.USER, "hola"),
+                message(2, MessageType.AI, "hola, ¿en qué te ayudo?"),
+                message(3, MessageType.USER, "¿qué es el present perfect?"));
+
+        ChatContextDto context = builder.build(conversation, "¿qué es el present perfect?");
+
+        assertThat(contents(context)).containsExactly("hola", "hola, ¿en qué te ayudo?");
+    }
+
+    @Test
+    void returnsNullWhenOnlyThePromptIsInTheWindow() {
+        window(null, message(1, MessageType.USER, "primera pregunta"));
+
+        assertThat(builder.build(conversation, "primera pregunta")).isNull();
+    }
+
+    @Test
+    void truncatesSummaryToItsOwnBudgetAndSkipsSummaryMessages() {
+        properties.getPromptContext().setSummaryMaxTokens(3);
+        window("el alumno practica los tiempos verbales del pasado",
+                message(1, MessageType.SUMMARY, "resumen anterior"),
+                message(2, MessageType.USER, "sigamos"));
+
+        ChatContextDto context = builder.build(conversation, "pregunta nueva");
+
+        // "alumno" y "sigamos" cuentan 2 tokens cada uno
+        assertThat(context.getSummary()).isEqualTo("el alumno");
+        assertThat(contents(context)).containsExactly("sigamos");
+        assertThat(context.getEstimatedTokens()).isEqualTo(5);
+    }
+
+    @Test
+    void returnsNullWhenDisabled() {
+        properties.getPromptContext().setEnabled(false);
+
+        assertThat(builder.build(conversation, "hola")).isNull();
+    }
+
+    private void window(String summary, ConversationContextCache.CachedMessage... messages) {
+        when(contextCache.get(conversation))
+                .thenReturn(new ConversationContextCache.Snapshot(new ArrayList<>(List.of(messages)), summary, true));
+    }
+
+    private ConversationContextCache.CachedMessage message(int n, MessageType type, String content) {
+        return new ConversationContextCache.CachedMessage(
+                new UUID(0, n), type, content, base.plusSeconds(n));
+    }
+
+    private static List<String> contents(ChatContextDto context) {
+        return context.getHistory().stream().map(ChatContextDto.Turn::getContent).toList();
+    }
+}
@@ -0,0 +1,63 @@
+package com.talky.backend.service.chat;
+
+import com.talky.backend.config.ChatProperties;
+import com.talky.backend.config.ChatProperties.Routing.PromptClass;
+import com.talky.backend.config.N8nProperties;
+import com.talky.backend.model.User;
+import com.talky.backend.model.chat.Conversation;
+import com.talky.backend.repository.GlossaryWordRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+class PromptRouterTest {
+
+    private final ChatProperties chatProperties = new ChatProperties();
+    private final GlossaryWordRepository glossaryWordRepository = mock(GlossaryWordRepository.class);
+    private final PromptRouter router = new PromptRouter(chatProperties, new N8nProperties(),
+            glossaryWordRepository, new SimpleMeterRegistry());
+
+    @Test
+    void classifiesByLengthKeywordsModeAndGlossary() {
+        Set<String> glossary = Set.of("breakfast", "look forward to");
+
+        assertThat(router.classify("hola, ¿qué tal?", "STUDENT", glossary)).isEqualTo(PromptClass.SMALL_TALK);
+        assertThat(router.classify("I had breakfast", "STUDENT", glossary)).isEqualTo(PromptClass.GLOSSARY);
+        assertThat(router.classify("I look forward to the trip", "STUDENT", glossary)).isEqualTo(PromptClass.GLOSSARY);
+        assertThat(router.classify("Explícame la diferencia entre since y for con ejemplos", "STUDENT", glossary))
+                .isEqualTo(PromptClass.COMPLEX);
+        assertThat(router.classify("Quiero practicar una conversación en un restaurante, tú eres el camarero",
+                "STUDENT", glossary)).isEqualTo(PromptClass.SIMPLE);
+
+        String medium = "Prepara una actividad de lectura corta sobre viajes para alumnos de nivel B1 ".repeat(4);
+        assertThat(router.classify(medium, "STUDENT", glossary)).isEqualTo(PromptClass.SIMPLE);
+        assertThat(router.classify(medium, "TEACHER", glossary)).isEqualTo(PromptClass.COMPLEX);
+    }
+
+    @Test
+    void routesToConfiguredWorkflowOrDefaultWebhook() {
+        ChatProperties.Workflow fast = new ChatProperties.Workflow();
+        fast.setChatPath("/webhook/talky-ia-fast");
+        chatProperties.getRouting().getWorkflows().put(PromptClass.SMALL_TALK, fast);
+        when(glossaryWordRepository.findActiveWordsByUserId(any())).thenReturn(List.of());
+        User user = User.builder().id(UUID.randomUUID()).build();
+        Conversation conversation = Conversation.builder().user(user).mode("STUDENT").build();
+
+        PromptRouter.Route shortTurn = router.route(conversation, "ok, gracias");
+        assertThat(shortTurn.chatPath()).isEqualTo("/webhook/talky-ia-fast");
+        assertThat(shortTurn.chatStreamPath()).isEqualTo("/webhook/talky-ia-stream");
+
+        PromptRouter.Route complex = router.route(conversation, "¿Por qué se usa el present perfect aquí y no el pasado simple?");
+        assertThat(complex.promptClass()).isEqualTo(PromptClass.COMPLEX);
+        assertThat(complex.chatPath()).isEqualTo("/webhook/talky-ia");
+
+        // El glosario se consulta una sola vez por usuario
+        verify(glossaryWordRepository, times(1)).findActiveWordsByUserId(user.getId());
+    }
+}
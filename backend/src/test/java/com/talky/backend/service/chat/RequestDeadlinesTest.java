@@ -0,0 +1,46 @@
+package com.talky.backend.service.chat;
+
+import com.talky.backend.config.DeadlineProperties;
+import com.talky.backend.exception.DeadlineExceededException;
+import com.talky.backend.model.User;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class RequestDeadlinesTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final RequestDeadlines deadlines = new RequestDeadlines(new DeadlineProperties(), meterRegistry);
+    private final User student = User.builder().role(User.Role.STUDENT).build();
+
+    @Test
+    void usesHeaderClampedToMaxOrRoleDefault() {
+        assertThat(deadlines.resolve(student, "5000").remaining()).isLessThanOrEqualTo(Duration.ofSeconds(5));
+        assertThat(deadlines.resolve(student, "600000").remaining())
+                .isLessThanOrEqualTo(Duration.ofSeconds(120))
+                .isGreaterThan(Duration.ofSeconds(100));
+        assertThat(deadlines.resolve(student, "abc").remaining())
+                .isLessThanOrEqualTo(Duration.ofSeconds(45))
+                .isGreaterThan(Duration.ofSeconds(40));
+    }
+
+    @Test
+    void abandonsExpiredWorkAndCountsIt() {
+        RequestDeadline expired = deadlines.resolve(student, "1");
+        RequestDeadline tight = RequestDeadline.after(Duration.ofMillis(200));
+
+        assertThatThrownBy(() -> {
+            Thread.sleep(5);
+            deadlines.check(expired, "save");
+        }).isInstanceOf(DeadlineExceededException.class);
+        assertThatThrownBy(() -> deadlines.checkCallBudget(tight)).isInstanceOf(DeadlineExceededException.class);
+        deadlines.check(RequestDeadline.none(), "save");
+
+        assertThat(meterRegistry.counter("talky.ai.deadline.abandoned", "stage", "save").count()).isEqualTo(1);
+        assertThat(meterRegistry.counter("talky.ai.deadline.abandoned", "stage", "n8n").count()).isEqualTo(1);
+    }
+}
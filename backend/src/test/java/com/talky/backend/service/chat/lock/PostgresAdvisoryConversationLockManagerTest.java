@@ -0,0 +1,138 @@
+package com.talky.backend.service.chat.lock;
+
+import com.talky.backend.config.ChatProperties;
+import com.talky.backend.exception.ConversationLockLostException;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.UUID;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class PostgresAdvisoryConversationLockManagerTest {
+
+    private final DataSource dataSource = mock(DataSource.class);
+    private final UUID conversationId = UUID.randomUUID();
+
+    @Test
+    void lostSessionMarksItsLocksAsLostAndIsAborted() throws Exception {
+        AtomicBoolean broken = new AtomicBoolean();
+        Connection first = connection(true, broken);
+        Connection second = connection(true, new AtomicBoolean());
+        when(dataSource.getConnection()).thenReturn(first, second);
+        PostgresAdvisoryConversationLockManager manager = manager(1);
+
+        assertThat(manager.tryLock(conversationId)).isTrue();
+        manager.checkHeld(conversationId);
+
+        // Se cae la sesión: otra conversación de la misma sesión lo detecta al fallar
+        broken.set(true);
+        when(first.isValid(anyInt())).thenReturn(false);
+        assertThatThrownBy(() -> manager.tryLock(UUID.randomUUID())).isInstanceOf(IllegalStateException.class);
+
+        // PostgreSQL liberó el bloqueo: quien procesaba la conversación no debe guardar nada
+        verify(first).abort(any(Executor.class));
+        verify(first, never()).close();
+        assertThatThrownBy(() -> manager.checkHeld(conversationId)).isInstanceOf(ConversationLockLostException.class);
+
+        // Al liberarla no se manda unlock a la sesión nueva y se puede volver a tomar
+        manager.unlock(conversationId);
+        assertThat(manager.tryLock(conversationId)).isTrue();
+        manager.checkHeld(conversationId);
+        verify(second, times(1)).prepareStatement(anyString());
+    }
+
+    @Test
+    void failedQueryOnValidConnectionKeepsTheSession() throws Exception {
+        AtomicBoolean broken = new AtomicBoolean();
+        Connection connection = connection(true, broken);
+        when(dataSource.getConnection()).thenReturn(connection);
+        PostgresAdvisoryConversationLockManager manager = manager(1);
+        assertThat(manager.tryLock(conversationId)).isTrue();
+
+        broken.set(true);
+        assertThatThrownBy(() -> manager.tryLock(UUID.randomUUID())).isInstanceOf(IllegalStateException.class);
+
+        verify(connection, never()).abort(any(Executor.class));
+        manager.checkHeld(conversationId);
+    }
+
+    @Test
+    void connectionIsOnlyValidatedAfterAnError() throws Exception {
+        Connection connection = connection(true, new AtomicBoolean());
+        when(dataSource.getConnection()).thenReturn(connection);
+        PostgresAdvisoryConversationLockManager manager = manager(1);
+
+        for (int i = 0; i < 5; i++) {
+            assertThat(manager.tryLock(conversationId)).isTrue();
+            manager.unlock(conversationId);
+        }
+
+        verify(connection, never()).isValid(anyInt());
+        verify(dataSource, times(1)).getConnection();
+    }
+
+    @Test
+    void lockHeldByAnotherInstanceReleasesTheLocalLock() throws Exception {
+        Connection connection = connection(false, new AtomicBoolean());
+        when(dataSource.getConnection()).thenReturn(connection);
+        PostgresAdvisoryConversationLockManager manager = manager(1);
+
+        assertThat(manager.tryLock(conversationId)).isFalse();
+        assertThat(manager.tryLock(conversationId)).isFalse();
+
+        // Se consultó PostgreSQL las dos veces: el bloqueo en memoria no quedó tomado
+        verify(connection, times(2)).prepareStatement(anyString());
+    }
+
+    @Test
+    void conversationsAreSpreadOverSeveralSessions() throws Exception {
+        when(dataSource.getConnection()).thenAnswer(invocation -> connection(true, new AtomicBoolean()));
+        PostgresAdvisoryConversationLockManager manager = manager(4);
+
+        for (int i = 0; i < 64; i++) {
+            assertThat(manager.tryLock(UUID.randomUUID())).isTrue();
+        }
+
+        // Una conexión por sesión usada, nunca una por conversación
+        verify(dataSource, atLeast(2)).getConnection();
+        verify(dataSource, atMost(4)).getConnection();
+    }
+
+    private PostgresAdvisoryConversationLockManager manager(int sessions) {
+        ChatProperties properties = new ChatProperties();
+        properties.setLockSessions(sessions);
+        return new PostgresAdvisoryConversationLockManager(dataSource, properties);
+    }
+
+    /**
+     * Conexión simulada: responde {@code lockResult} a cada consulta, o falla mientras {@code broken} esté activo.
+     */
+    private static Connection connection(boolean lockResult, AtomicBoolean broken) throws SQLException {
+        Connection connection = mock(Connection.class);
+        when(connection.isValid(anyInt())).thenReturn(true);
+        when(connection.prepareStatement(anyString())).thenAnswer(invocation -> {
+            if (broken.get()) {
+                throw new SQLException("conexión perdida");
+            }
+            PreparedStatement statement = mock(PreparedStatement.class);
+            ResultSet rs = mock(ResultSet.class);
+            when(rs.next()).thenReturn(true);
+            when(rs.getBoolean(1)).thenReturn(lockResult);
+            when(statement.executeQuery()).thenReturn(rs);
+            return statement;
+        });
+        return connection;
+    }
+}
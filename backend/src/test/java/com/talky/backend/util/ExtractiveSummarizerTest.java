@@ -0,0 +1,43 @@
+package com.talky.backend.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ExtractiveSummarizerTest {
+
+    private final List<ExtractiveSummarizer.Passage> passages = List.of(
+            new ExtractiveSummarizer.Passage("USER", "¿Cómo se forma el present perfect en inglés?"),
+            new ExtractiveSummarizer.Passage("AI", "El present perfect se forma con have o has más el participio. "
+                    + "Por ejemplo: I have eaten. Hoy hace buen tiempo en la ciudad."),
+            new ExtractiveSummarizer.Passage("USER", "¿Cuándo uso el present perfect y no el pasado simple?"),
+            new ExtractiveSummarizer.Passage("AI", "Usa present perfect para experiencias sin momento concreto.")
+    );
+
+    @Test
+    void keepsMostRepresentativeSentencesWithinBudget() {
+        String summary = ExtractiveSummarizer.summarize(passages, 30);
+
+        assertThat(TokenEstimator.estimate(summary)).isLessThanOrEqualTo(30 + 10);
+        assertThat(summary).contains("present perfect");
+        // La oración sin relación con el tema es la primera en descartarse
+        assertThat(summary).doesNotContain("buen tiempo");
+    }
+
+    @Test
+    void keepsOriginalOrderAndLabels() {
+        String summary = ExtractiveSummarizer.summarize(passages, 1000);
+
+        assertThat(summary).startsWith("[USER] ¿Cómo se forma");
+        assertThat(summary.indexOf("[AI] El present perfect"))
+                .isLessThan(summary.indexOf("[USER] ¿Cuándo uso"));
+    }
+
+    @Test
+    void emptyWhenNothingFits() {
+        assertThat(ExtractiveSummarizer.summarize(passages, 0)).isEmpty();
+        assertThat(ExtractiveSummarizer.summarize(List.of(), 100)).isEmpty();
+    }
+}
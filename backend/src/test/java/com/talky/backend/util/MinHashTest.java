@@ -0,0 +1,33 @@
+package com.talky.backend.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class MinHashTest {
+
+    private final MinHash minHash = new MinHash(64, 3, 42L);
+
+    @Test
+    void normalizeRemovesAccentsPunctuationAndCase() {
+        assertThat(MinHash.normalize("¿Qué es el  Present Perfect?")).isEqualTo("que es el present perfect");
+    }
+
+    @Test
+    void nearDuplicateQuestionsAreSimilar() {
+        int[] first = minHash.signature(MinHash.normalize("¿Qué es el present perfect?"));
+        int[] second = minHash.signature(MinHash.normalize("que es el present perfect"));
+        int[] third = minHash.signature(MinHash.normalize("que es el present perfect por favor"));
+
+        assertThat(MinHash.similarity(first, second)).isEqualTo(1.0);
+        assertThat(MinHash.similarity(first, third)).isGreaterThan(0.6);
+    }
+
+    @Test
+    void differentQuestionsAreNotSimilar() {
+        int[] first = minHash.signature(MinHash.normalize("¿Qué es el present perfect?"));
+        int[] second = minHash.signature(MinHash.normalize("Cómo se conjuga el verbo to be en pasado"));
+
+        assertThat(MinHash.similarity(first, second)).isLessThan(0.3);
+    }
+}
@@ -0,0 +1,27 @@
+package com.talky.backend.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TokenEstimatorTest {
+
+    @Test
+    void emptyTextHasNoTokens() {
+        assertThat(TokenEstimator.estimate(null)).isZero();
+        assertThat(TokenEstimator.estimate("   ")).isZero();
+    }
+
+    @Test
+    void countsWordsAndPunctuation() {
+        // 4 palabras cortas + "?" + "¿"
+        assertThat(TokenEstimator.estimate("¿Qué es el vino?")).isEqualTo(6);
+    }
+
+    @Test
+    void longWordsCountAsSeveralTokens() {
+        // 17 letras: 1 + 16/4
+        assertThat(TokenEstimator.estimate("internacionalizar")).isEqualTo(5);
+        assertThat(TokenEstimator.estimate("a b c")).isEqualTo(3);
+    }
+}